@@ -0,0 +1,173 @@
+package net.whg.awgenshell.exec;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The registry of execution metrics for all commands run within this JVM.
+ * Metrics are kept for each command, by name, and for each module, and are
+ * exposed as JMX MBeans under the <code>net.whg.awgenshell</code> domain. The
+ * metrics of a command include the time of any commands it runs, while module
+ * metrics only count commands which were not run by another command, so no
+ * time is counted twice.
+ * Recording is disabled by default. While disabled, executing a command only
+ * costs a single check of {@link #isEnabled()}.
+ *
+ * @author TheDudeFromCI
+ * @see CommandStats
+ */
+public final class CommandMetrics
+{
+	private static final Logger logger = LoggerFactory.getLogger(CommandMetrics.class);
+	private static final String DOMAIN = "net.whg.awgenshell";
+	private static final CommandMetrics INSTANCE = new CommandMetrics();
+
+	/**
+	 * Gets the metrics registry for this JVM.
+	 *
+	 * @return The metrics registry.
+	 */
+	public static CommandMetrics getInstance()
+	{
+		return INSTANCE;
+	}
+
+	private final ConcurrentMap<String, CommandStats> modules = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, CommandStats> commands = new ConcurrentHashMap<>();
+	private final ThreadLocal<int[]> depth = ThreadLocal.withInitial(() -> new int[1]);
+	private volatile boolean enabled;
+
+	private CommandMetrics()
+	{}
+
+	/**
+	 * Checks whether command executions are currently being recorded.
+	 *
+	 * @return True if executions are recorded, false otherwise.
+	 */
+	public boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	/**
+	 * Sets whether command executions should be recorded. Metrics which have
+	 * already been recorded are kept when recording is disabled.
+	 *
+	 * @param enabled
+	 *     - Whether or not executions should be recorded.
+	 */
+	public void setEnabled(boolean enabled)
+	{
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Marks the start of a command execution on the current thread. Each call
+	 * must be followed by a call to {@link #exit()} once the command finishes.
+	 *
+	 * @return True if the command is being run by another command on this thread,
+	 *     false if it is a top level command.
+	 */
+	public boolean enter()
+	{
+		return depth.get()[0]++ > 0;
+	}
+
+	/**
+	 * Marks the end of a command execution on the current thread.
+	 */
+	public void exit()
+	{
+		depth.get()[0]--;
+	}
+
+	/**
+	 * Gets the metrics of a module, creating them if needed.
+	 *
+	 * @param module
+	 *     - The name of the module.
+	 * @return The module metrics.
+	 */
+	public CommandStats getModuleStats(String module)
+	{
+		return modules.computeIfAbsent(module, name ->
+		{
+			CommandStats stats = new CommandStats(name, null);
+			register(stats, "type=Modules,name=" + ObjectName.quote(name));
+			return stats;
+		});
+	}
+
+	/**
+	 * Gets the metrics of a command, creating them if needed. Commands with the
+	 * same name within modules with the same name share their metrics, even
+	 * across shell environments.
+	 *
+	 * @param module
+	 *     - The name of the module the command belongs to.
+	 * @param command
+	 *     - The name of the command.
+	 * @return The command metrics.
+	 */
+	public CommandStats getCommandStats(String module, String command)
+	{
+		return commands.computeIfAbsent(module + ':' + command, key ->
+		{
+			CommandStats stats = new CommandStats(command, getModuleStats(module));
+			register(stats, "type=Commands,module=" + ObjectName.quote(module) + ",name=" + ObjectName.quote(command));
+			return stats;
+		});
+	}
+
+	private static void register(CommandStats stats, String properties)
+	{
+		try
+		{
+			ManagementFactory.getPlatformMBeanServer().registerMBean(stats, new ObjectName(DOMAIN + ":" + properties));
+		}
+		catch (JMException | SecurityException e)
+		{
+			logger.warn("Failed to register metrics MBean: " + properties, e);
+		}
+	}
+
+	/**
+	 * Gets the metrics of all commands which have been recorded.
+	 *
+	 * @return A new list containing the metrics of each command.
+	 */
+	public List<CommandStats> getCommands()
+	{
+		return new ArrayList<>(commands.values());
+	}
+
+	/**
+	 * Gets the metrics of all modules which have been recorded.
+	 *
+	 * @return A new list containing the metrics of each module.
+	 */
+	public List<CommandStats> getModules()
+	{
+		return new ArrayList<>(modules.values());
+	}
+
+	/**
+	 * Forgets all recorded executions of all commands and modules.
+	 */
+	public void reset()
+	{
+		for (CommandStats stats : commands.values())
+			stats.reset();
+
+		for (CommandStats stats : modules.values())
+			stats.reset();
+	}
+}
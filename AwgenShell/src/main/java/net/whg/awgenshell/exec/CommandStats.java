@@ -0,0 +1,144 @@
+package net.whg.awgenshell.exec;
+
+import java.util.concurrent.atomic.LongAdder;
+import net.whg.awgenshell.util.LatencyHistogram;
+
+/**
+ * The execution metrics of a single command, or of all commands within a
+ * module. Executions may be recorded from many threads at once without
+ * locking.
+ *
+ * @author TheDudeFromCI
+ * @see CommandMetrics
+ */
+public class CommandStats implements CommandStatsMBean
+{
+	private final String name;
+	private final CommandStats module;
+	private final LongAdder invocations = new LongAdder();
+	private final LongAdder errors = new LongAdder();
+	private final LatencyHistogram latency = new LatencyHistogram();
+
+	/**
+	 * Creates a new, empty set of command metrics.
+	 *
+	 * @param name
+	 *     - The name of the command or module.
+	 * @param module
+	 *     - The metrics of the module the command belongs to, which top level
+	 *     executions are also recorded into, or null if these are the metrics of
+	 *     a module.
+	 */
+	CommandStats(String name, CommandStats module)
+	{
+		this.name = name;
+		this.module = module;
+	}
+
+	/**
+	 * Records a single execution of the command.
+	 *
+	 * @param nanos
+	 *     - The time the execution took, in nanoseconds.
+	 * @param error
+	 *     - Whether or not the command did not exit normally.
+	 * @param nested
+	 *     - Whether or not the command was run by another command, such as the
+	 *     body of a for loop. The time of nested commands is already part of the
+	 *     time of the command which ran them, so they are not recorded into the
+	 *     module metrics.
+	 */
+	public void record(long nanos, boolean error, boolean nested)
+	{
+		invocations.increment();
+		latency.record(nanos);
+
+		if (error)
+			errors.increment();
+
+		if (module != null && !nested)
+			module.record(nanos, error, false);
+	}
+
+	@Override
+	public String getName()
+	{
+		return name;
+	}
+
+	/**
+	 * Gets the name of the module the command belongs to.
+	 *
+	 * @return The module name, or null if these are the metrics of a module.
+	 */
+	public String getModuleName()
+	{
+		return module == null ? null : module.getName();
+	}
+
+	/**
+	 * Gets the histogram the execution times of the command are recorded into.
+	 *
+	 * @return The latency histogram.
+	 */
+	public LatencyHistogram getLatency()
+	{
+		return latency;
+	}
+
+	@Override
+	public long getInvocations()
+	{
+		return invocations.sum();
+	}
+
+	@Override
+	public long getErrors()
+	{
+		return errors.sum();
+	}
+
+	@Override
+	public long getTotalTime()
+	{
+		return latency.getTotal();
+	}
+
+	@Override
+	public double getMeanTime()
+	{
+		return latency.getMean();
+	}
+
+	@Override
+	public long getP50Time()
+	{
+		return latency.getPercentile(50);
+	}
+
+	@Override
+	public long getP90Time()
+	{
+		return latency.getPercentile(90);
+	}
+
+	@Override
+	public long getP99Time()
+	{
+		return latency.getPercentile(99);
+	}
+
+	@Override
+	public long getMaxTime()
+	{
+		return latency.getMax();
+	}
+
+	@Override
+	public void reset()
+	{
+		invocations.reset();
+		errors.reset();
+		latency.reset();
+	}
+}
@@ -0,0 +1,80 @@
+package net.whg.awgenshell.exec;
+
+/**
+ * The management interface used to expose the metrics of a command, or of all
+ * commands within a module, through JMX.
+ *
+ * @author TheDudeFromCI
+ * @see CommandStats
+ */
+public interface CommandStatsMBean
+{
+	/**
+	 * Gets the name of the command or module these metrics are for.
+	 *
+	 * @return The name.
+	 */
+	String getName();
+
+	/**
+	 * Gets the number of times the command has been executed.
+	 *
+	 * @return The number of invocations.
+	 */
+	long getInvocations();
+
+	/**
+	 * Gets the number of times the command did not exit normally, or threw an
+	 * exception.
+	 *
+	 * @return The number of errors.
+	 */
+	long getErrors();
+
+	/**
+	 * Gets the total time spent executing the command.
+	 *
+	 * @return The total time, in nanoseconds.
+	 */
+	long getTotalTime();
+
+	/**
+	 * Gets the mean time taken to execute the command.
+	 *
+	 * @return The mean time, in nanoseconds.
+	 */
+	double getMeanTime();
+
+	/**
+	 * Gets the time which half of the executions of the command took at most.
+	 *
+	 * @return The median time, in nanoseconds.
+	 */
+	long getP50Time();
+
+	/**
+	 * Gets the time which 90% of the executions of the command took at most.
+	 *
+	 * @return The 90th percentile time, in nanoseconds.
+	 */
+	long getP90Time();
+
+	/**
+	 * Gets the time which 99% of the executions of the command took at most.
+	 *
+	 * @return The 99th percentile time, in nanoseconds.
+	 */
+	long getP99Time();
+
+	/**
+	 * Gets the longest time taken to execute the command.
+	 *
+	 * @return The longest time, in nanoseconds.
+	 */
+	long getMaxTime();
+
+	/**
+	 * Forgets all recorded executions.
+	 */
+	void reset();
+}
@@ -12,6 +12,7 @@ import net.whg.awgenshell.lang.IfCommand;
 import net.whg.awgenshell.lang.PrintCommand;
 import net.whg.awgenshell.lang.RandomCommand;
 import net.whg.awgenshell.lang.SetCommand;
+import net.whg.awgenshell.lang.StatsCommand;
 import net.whg.awgenshell.lang.WhileCommand;
 
 /**
@@ -24,7 +25,7 @@ public class Module
 {
 	static Module newLangModule()
 	{
-		Module m = new Module();
+		Module m = new Module("lang");
 
 		m.loadCommand(new PrintCommand());
 		m.loadCommand(new RandomCommand());
@@ -37,11 +38,44 @@ public class Module
 		m.loadCommand(new CalcCommand());
 		m.loadCommand(new ArrayCommand());
 		m.loadCommand(new ExecCommand());
+		m.loadCommand(new StatsCommand());
 
 		return m;
 	}
 
+	private final String name;
 	private List<CommandHandler> commands = new ArrayList<>();
+	private int version;
+
+	/**
+	 * Creates a new, empty module named "default".
+	 */
+	public Module()
+	{
+		this("default");
+	}
+
+	/**
+	 * Creates a new, empty module.
+	 *
+	 * @param name
+	 *     - The name of this module, which the metrics of its commands are grouped
+	 *     by.
+	 */
+	public Module(String name)
+	{
+		this.name = name;
+	}
+
+	/**
+	 * Gets the name of this module.
+	 *
+	 * @return The name.
+	 */
+	public String getName()
+	{
+		return name;
+	}
 
 	/**
 	 * Gets a command handler with the given name.
@@ -76,6 +110,18 @@ public class Module
 		return null;
 	}
 
+	/**
+	 * Checks whether the given command handler is loaded into this module.
+	 *
+	 * @param command
+	 *     - The command handler.
+	 * @return True if the command is loaded into this module, false otherwise.
+	 */
+	public boolean hasCommand(CommandHandler command)
+	{
+		return commands.contains(command);
+	}
+
 	/**
 	 * Loads a new command into this module.
 	 *
@@ -91,5 +137,17 @@ public class Module
 			return;
 
 		commands.add(command);
+		version++;
+	}
+
+	/**
+	 * Gets the current version of this module. The version is increased each time
+	 * a new command is loaded into this module.
+	 *
+	 * @return The version of this module.
+	 */
+	int getVersion()
+	{
+		return version;
 	}
 }
@@ -8,6 +8,7 @@ import net.whg.awgenshell.arg.Variable;
 import net.whg.awgenshell.parse.CommandParseException;
 import net.whg.awgenshell.parse.CommandParser;
 import net.whg.awgenshell.parse.Input;
+import net.whg.awgenshell.parse.InputCache;
 
 /**
  * This class represents a virtual environment to execute commands within.
@@ -20,6 +21,7 @@ public class ShellEnvironment
 
 	private List<Variable> variables = new ArrayList<>();
 	private List<Module> modules = new ArrayList<>();
+	private InputCache inputCache = new InputCache();
 	private CommandSender sender;
 
 	/**
@@ -53,6 +55,23 @@ public class ShellEnvironment
 		return v;
 	}
 
+	/**
+	 * Gets a variable within this environment, without creating it.
+	 *
+	 * @param variable
+	 *     - The name of the variable.
+	 * @return The variable within this environment with the given name, or null if
+	 *     there is no variable with the given name.
+	 */
+	public Variable findVariable(String variable)
+	{
+		for (Variable v : variables)
+			if (v.getName().equals(variable))
+				return v;
+
+		return null;
+	}
+
 	/**
 	 * Gets a list of all variables within this environment.
 	 *
@@ -101,10 +120,46 @@ public class ShellEnvironment
 	 */
 	public void runCommandNoisy(String line)
 	{
-		Input in = CommandParser.parse(this, line);
+		int registryVersion = getRegistryVersion();
+
+		Input in = inputCache.get(line, registryVersion);
+		if (in == null || in.isExecuting())
+		{
+			in = CommandParser.parse(this, line);
+			inputCache.put(line, in, registryVersion);
+		}
+
 		in.execute(false);
 	}
 
+	/**
+	 * Gets the cache of parsed inputs used by this environment when running
+	 * commands.
+	 *
+	 * @return The input cache.
+	 */
+	public InputCache getInputCache()
+	{
+		return inputCache;
+	}
+
+	/**
+	 * Gets the current version of the command registry for this environment. This
+	 * value changes whenever a module is loaded or a command is added to a loaded
+	 * module.
+	 *
+	 * @return The command registry version.
+	 */
+	private int getRegistryVersion()
+	{
+		int version = modules.size();
+
+		for (Module m : modules)
+			version += m.getVersion();
+
+		return version;
+	}
+
 	/**
 	 * Loads a command module to this shell environment.
 	 *
@@ -145,6 +200,22 @@ public class ShellEnvironment
 		return null;
 	}
 
+	/**
+	 * Gets the loaded module which contains the given command handler.
+	 *
+	 * @param command
+	 *     - The command handler.
+	 * @return The module, or null if the command is not in any loaded module.
+	 */
+	public Module getModule(CommandHandler command)
+	{
+		for (Module m : modules)
+			if (m.hasCommand(command))
+				return m;
+
+		return null;
+	}
+
 	/**
 	 * Gets the command sender for this shell environment.
 	 *
@@ -14,6 +14,9 @@ import net.whg.awgenshell.util.template.CommandTemplateBuilder;
  */
 public class AppendCommand extends BaseCommand
 {
+	private static final int FLAG_NEWLINE = 0;
+	private static final int FLAG_SEPERATOR = 1;
+
 	public AppendCommand()
 	{
 		super(new CommandTemplateBuilder().name("append").alias("add").alias("join").alias("concat").perm("lang.append")
@@ -22,9 +25,9 @@ public class AppendCommand extends BaseCommand
 					String seperator = "";
 					for (CommandFlag f : flags)
 					{
-						if (f.getName().equals("-n"))
+						if (f.getOrdinal() == FLAG_NEWLINE)
 							seperator = "\n";
-						else if (f.getName().equals("-s"))
+						else if (f.getOrdinal() == FLAG_SEPERATOR)
 							seperator = f.getValues()[0];
 					}
 
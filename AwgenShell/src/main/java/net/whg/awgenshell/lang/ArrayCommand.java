@@ -18,7 +18,7 @@ public class ArrayCommand implements CommandHandler
 {
 	private static final String[] ALIASES = {};
 
-	private static final PermissionNode PERMS = new PermissionNode("lang.array");
+	private static final PermissionNode PERMS = PermissionNode.of("lang.array");
 
 	@Override
 	public String getName()
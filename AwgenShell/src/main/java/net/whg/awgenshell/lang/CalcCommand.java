@@ -1,22 +1,165 @@
 package net.whg.awgenshell.lang;
 
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import ch.obermuhlner.math.big.BigFloat;
+import net.whg.awgenshell.exec.ShellEnvironment;
+import net.whg.awgenshell.lang.equation.CompiledEquation;
+import net.whg.awgenshell.lang.equation.EquationMode;
 import net.whg.awgenshell.lang.equation.EquationSolver;
+import net.whg.awgenshell.lang.equation.FormatOptions;
 import net.whg.awgenshell.lang.equation.Val;
 import net.whg.awgenshell.util.CommandResult;
 import net.whg.awgenshell.util.template.BaseCommand;
 import net.whg.awgenshell.util.template.CommandFlag;
 import net.whg.awgenshell.util.template.CommandTemplateBuilder;
+import net.whg.awgenshell.util.template.FlagSet;
 
 /**
- * Caclulates the value of a mathmatical formula given as an input. Supports
- * basic mathmatical functions: add, subtract, multiply, divide, raise to a
- * power, sqrt, sin, cos, tan, floor, ceil, and round.
+ * Caclulates the value of a mathmatical formula given as an input, which may
+ * refer to shell variables. Formulas are solved with exact precision, or with
+ * double precision using the -d flag, or adaptively using the -a flag. The
+ * -over flag solves the formula once for each line of a variable. The -f, -p,
+ * and -e flags insert commas, round, and use scientific notation for answers.
  *
  * @author TheDudeFromCI
  */
 public class CalcCommand extends BaseCommand
 {
+	private static final int FLAG_FORMAT = 0;
+	private static final int FLAG_DOUBLE = 1;
+	private static final int FLAG_ADAPTIVE = 2;
+	private static final int FLAG_OVER = 3;
+	private static final int FLAG_PRECISION = 4;
+	private static final int FLAG_SCIENTIFIC = 5;
+
+	private static final int MAX_COMPILED_FORMULAS = 256;
+
 	private static EquationSolver solver = new EquationSolver();
+	private static Map<String, CompiledEquation> compiled = new LinkedHashMap<String, CompiledEquation>(16, 0.75f,
+			true)
+	{
+		private static final long serialVersionUID = 2151530463346453237L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, CompiledEquation> eldest)
+		{
+			return size() > MAX_COMPILED_FORMULAS;
+		}
+	};
+
+	private static Map<ShellEnvironment, ShellBindings> bindings = new WeakHashMap<>();
+
+	private static ShellBindings getBindings(ShellEnvironment env)
+	{
+		synchronized (bindings)
+		{
+			ShellBindings b = bindings.get(env);
+
+			if (b == null)
+				bindings.put(env, b = new ShellBindings(env));
+
+			return b;
+		}
+	}
+
+	private static CompiledEquation compile(String formula)
+	{
+		synchronized (compiled)
+		{
+			CompiledEquation equation = compiled.get(formula);
+
+			if (equation == null)
+			{
+				equation = solver.compile(formula);
+				compiled.put(formula, equation);
+			}
+
+			return equation;
+		}
+	}
+
+	private static FormatOptions getFormatOptions(FlagSet flags)
+	{
+		FormatOptions options = FormatOptions.DEFAULT.withCommas(flags.has(FLAG_FORMAT))
+				.withScientific(flags.has(FLAG_SCIENTIFIC));
+
+		if (flags.has(FLAG_PRECISION))
+		{
+			String value = flags.getValues(FLAG_PRECISION)[0];
+
+			try
+			{
+				int precision = Integer.parseInt(value);
+				if (precision < 1)
+					throw new NumberFormatException();
+
+				options = options.withPrecision(precision);
+			}
+			catch (NumberFormatException e)
+			{
+				throw new IllegalArgumentException("Not a valid precision: " + value);
+			}
+		}
+
+		return options;
+	}
+
+	/**
+	 * Solves a formula once for each line of the variables given with the -over
+	 * flag, using a single columnar evaluation.
+	 */
+	private static String calculateOver(ShellEnvironment shell, CompiledEquation equation, FlagSet flags,
+			EquationMode mode, FormatOptions options) throws IOException
+	{
+		ShellBindings b = getBindings(shell);
+		boolean exact = mode != EquationMode.DOUBLE;
+
+		Map<String, double[]> doubles = new HashMap<>();
+		Map<String, BigFloat[]> exacts = new HashMap<>();
+
+		for (CommandFlag flag : flags)
+		{
+			if (flag.getOrdinal() != FLAG_OVER)
+				continue;
+
+			String name = flag.getValues()[0];
+			if (name.startsWith("$"))
+				name = name.substring(1);
+
+			if (exact)
+				exacts.put(name, b.getExactColumn(name, solver.getContext()));
+			else
+				doubles.put(name, b.getDoubleColumn(name));
+		}
+
+		StringBuilder sb = new StringBuilder();
+
+		if (exact)
+		{
+			for (BigFloat x : solver.solveExactColumns(equation, exacts, b))
+			{
+				new Val(x).formatTo(sb, options);
+				sb.append('\n');
+			}
+		}
+		else
+		{
+			for (double x : solver.solveColumns(equation, doubles, b))
+			{
+				Val.ofDouble(x).formatTo(sb, options);
+				sb.append('\n');
+			}
+		}
+
+		if (sb.length() > 0)
+			sb.setLength(sb.length() - 1);
+
+		return sb.toString();
+	}
 
 	public CalcCommand()
 	{
@@ -25,20 +168,27 @@ public class CalcCommand extends BaseCommand
 				{
 					try
 					{
-						boolean comma = false;
+						FormatOptions options = getFormatOptions(flags);
+
+						EquationMode mode = solver.getMode();
+						if (flags.has(FLAG_ADAPTIVE))
+							mode = EquationMode.ADAPTIVE;
+						else if (flags.has(FLAG_DOUBLE))
+							mode = EquationMode.DOUBLE;
 
-						for (CommandFlag flag : flags)
-							if (flag.getName().equals("-f"))
-								comma = true;
+						CompiledEquation equation = compile(args[0].getLast());
+						if (flags.has(FLAG_OVER))
+							return new CommandResult(calculateOver(shell, equation, flags, mode, options), true, false);
 
-						Val v = solver.parse(args[0].getLast());
-						return new CommandResult(v.format(comma), true, false);
+						Val v = equation.evaluate(getBindings(shell), mode);
+						return new CommandResult(v.format(options), true, false);
 					}
 					catch (Exception exception)
 					{
 						shell.getCommandSender().println("Failed to parse equation! " + exception.getMessage());
 						return CommandResult.ERROR;
 					}
-				}).flag("-f", 0).finishSubCommand().build());
+				}).flag("-f", 0).flag("-d", 0).flag("-a", 0).flag("-over", 1).flag("-p", 1).flag("-e", 0)
+				.finishSubCommand().build());
 	}
 }
@@ -19,7 +19,7 @@ public class ExecCommand implements CommandHandler
 		"execute"
 	};
 
-	private static final PermissionNode PERMS = new PermissionNode("lang.exec");
+	private static final PermissionNode PERMS = PermissionNode.of("lang.exec");
 
 	@Override
 	public String getName()
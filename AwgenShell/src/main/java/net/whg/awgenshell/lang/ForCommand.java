@@ -25,9 +25,9 @@ public class ForCommand extends BaseCommand
 				{
 					Variable var = ((VariableArgument) inputs[0].getArgument()).getVariable();
 
-					int i1 = Integer.valueOf(inputs[1].getLast());
-					int i2 = Integer.valueOf(inputs[2].getLast());
-					int i3 = Integer.valueOf(inputs[3].getLast());
+					int i1 = inputs[1].getInt();
+					int i2 = inputs[2].getInt();
+					int i3 = inputs[3].getInt();
 					boolean goingUp = i3 >= 0;
 
 					boolean called = false;
@@ -45,8 +45,8 @@ public class ForCommand extends BaseCommand
 				{
 					Variable var = ((VariableArgument) inputs[0].getArgument()).getVariable();
 
-					int i1 = Integer.valueOf(inputs[1].getLast());
-					int i2 = Integer.valueOf(inputs[2].getLast());
+					int i1 = inputs[1].getInt();
+					int i2 = inputs[2].getInt();
 
 					boolean called = false;
 					String lastVal = "";
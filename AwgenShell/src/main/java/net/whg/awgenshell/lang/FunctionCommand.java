@@ -22,7 +22,7 @@ public class FunctionCommand implements CommandHandler
 		"func", "def", "run"
 	};
 
-	private static final PermissionNode PERMS = new PermissionNode("lang.function");
+	private static final PermissionNode PERMS = PermissionNode.of("lang.function");
 
 	private Map<ShellEnvironment, Map<String, ArgumentValue>> functions = new HashMap<>();
 
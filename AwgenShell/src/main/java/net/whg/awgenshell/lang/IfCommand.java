@@ -17,7 +17,7 @@ public class IfCommand implements CommandHandler
 {
 	private static final String[] ALIASES = {};
 
-	private static final PermissionNode PERMS = new PermissionNode("lang.if");
+	private static final PermissionNode PERMS = PermissionNode.of("lang.if");
 
 	@Override
 	public String getName()
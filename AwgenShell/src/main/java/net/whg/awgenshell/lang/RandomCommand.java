@@ -24,7 +24,7 @@ public class RandomCommand implements CommandHandler
 {
 	private static final String[] ALIASES = {};
 
-	private static final PermissionNode PERMS = new PermissionNode("lang.random");
+	private static final PermissionNode PERMS = PermissionNode.of("lang.random");
 
 	@Override
 	public String getName()
@@ -16,7 +16,7 @@ public class SetCommand implements CommandHandler
 {
 	private static final String[] ALIASES = {};
 
-	private static final PermissionNode PERMS = new PermissionNode("lang.set");
+	private static final PermissionNode PERMS = PermissionNode.of("lang.set");
 
 	@Override
 	public String getName()
@@ -0,0 +1,229 @@
+package net.whg.awgenshell.lang;
+
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+import ch.obermuhlner.math.big.BigFloat;
+import net.whg.awgenshell.arg.Variable;
+import net.whg.awgenshell.exec.ShellEnvironment;
+import net.whg.awgenshell.lang.equation.Aggregate;
+import net.whg.awgenshell.lang.equation.EquationBindings;
+import net.whg.awgenshell.lang.equation.EquationContext;
+import net.whg.awgenshell.lang.equation.EquationParserException;
+import net.whg.awgenshell.lang.equation.Val;
+
+/**
+ * Binds the variables of a shell environment to equations. The parsed number of
+ * each variable is remembered until the value of the variable changes, so
+ * evaluating an equation within a loop only parses each variable once per
+ * change.
+ *
+ * @author TheDudeFromCI
+ */
+class ShellBindings implements EquationBindings
+{
+	/**
+	 * The last parsed value of a single variable.
+	 *
+	 * @author TheDudeFromCI
+	 */
+	private static class Binding
+	{
+		private final Variable variable;
+		private String text;
+		private Val exact;
+		private EquationContext exactContext;
+		private Val approximate;
+
+		private Binding(Variable variable)
+		{
+			this.variable = variable;
+		}
+	}
+
+	private final WeakReference<ShellEnvironment> env;
+	private final Map<String, Binding> bindings = new HashMap<>();
+
+	/**
+	 * Creates a new set of bindings for the given environment.
+	 *
+	 * @param env
+	 *     - The environment to look up variables from.
+	 */
+	ShellBindings(ShellEnvironment env)
+	{
+		// Bindings are stored weakly by their environment, so they must not keep it
+		// alive themselves.
+		this.env = new WeakReference<>(env);
+	}
+
+	private Variable findVariable(String name)
+	{
+		ShellEnvironment shell = env.get();
+		return shell == null ? null : shell.findVariable(name);
+	}
+
+	@Override
+	public Val getValue(String name, boolean exact)
+	{
+		return getValue(name, exact, EquationContext.DEFAULT);
+	}
+
+	@Override
+	public Val getValue(String name, boolean exact, EquationContext context)
+	{
+		Binding b = bindings.get(name);
+		if (b == null)
+		{
+			Variable variable = findVariable(name);
+			if (variable == null)
+				return null;
+
+			bindings.put(name, b = new Binding(variable));
+		}
+
+		String text = b.variable.getValue();
+		if (text != b.text)
+		{
+			b.text = text;
+			b.exact = null;
+			b.approximate = null;
+		}
+
+		try
+		{
+			if (exact)
+			{
+				if (b.exact == null || b.exactContext != context)
+				{
+					b.exact = Val.valueOf(text.trim(), context);
+					b.exactContext = context;
+				}
+
+				return b.exact;
+			}
+
+			if (b.approximate == null)
+				b.approximate = Val.ofDouble(Double.parseDouble(text));
+
+			return b.approximate;
+		}
+		catch (NumberFormatException e)
+		{
+			throw new EquationParserException("Variable $" + name + " is not a number!");
+		}
+	}
+
+	/**
+	 * Streams a variable which contains one number per line into the aggregate,
+	 * one line at a time, without splitting the variable into a list first.
+	 */
+	@Override
+	public boolean aggregate(String name, boolean exact, Aggregate aggregate)
+	{
+		Variable variable = findVariable(name);
+		if (variable == null)
+			return false;
+
+		String text = variable.getValue();
+
+		try
+		{
+			int start = 0;
+			while (true)
+			{
+				int end = text.indexOf('\n', start);
+				String line = text.substring(start, end == -1 ? text.length() : end).trim();
+
+				// Ignore a trailing line break.
+				if (end == -1 && start > 0 && line.isEmpty())
+					break;
+
+				if (exact)
+					aggregate.add(Val.valueOf(line, aggregate.getContext()));
+				else
+					aggregate.add(Double.parseDouble(line));
+
+				if (end == -1)
+					break;
+
+				start = end + 1;
+			}
+		}
+		catch (NumberFormatException e)
+		{
+			throw new EquationParserException("Variable $" + name + " is not a list of numbers!");
+		}
+
+		return true;
+	}
+
+	/**
+	 * Reads a variable which contains one number per line as a column of double
+	 * precision numbers.
+	 *
+	 * @param name
+	 *     - The name of the variable.
+	 * @return The column.
+	 * @throws EquationParserException
+	 *     - If the variable does not exist, or contains a line which is not a
+	 *     number.
+	 */
+	double[] getDoubleColumn(String name)
+	{
+		String[] lines = getLines(name);
+		double[] column = new double[lines.length];
+
+		try
+		{
+			for (int i = 0; i < lines.length; i++)
+				column[i] = Double.parseDouble(lines[i]);
+		}
+		catch (NumberFormatException e)
+		{
+			throw new EquationParserException("Variable $" + name + " is not a list of numbers!");
+		}
+
+		return column;
+	}
+
+	/**
+	 * Reads a variable which contains one number per line as a column of exact
+	 * precision numbers.
+	 *
+	 * @param name
+	 *     - The name of the variable.
+	 * @param context
+	 *     - The precision to read each number with.
+	 * @return The column.
+	 * @throws EquationParserException
+	 *     - If the variable does not exist, or contains a line which is not a
+	 *     number.
+	 */
+	BigFloat[] getExactColumn(String name, EquationContext context)
+	{
+		String[] lines = getLines(name);
+		BigFloat[] column = new BigFloat[lines.length];
+
+		try
+		{
+			for (int i = 0; i < lines.length; i++)
+				column[i] = Val.valueOf(lines[i].trim(), context).bigValue();
+		}
+		catch (NumberFormatException e)
+		{
+			throw new EquationParserException("Variable $" + name + " is not a list of numbers!");
+		}
+
+		return column;
+	}
+
+	private String[] getLines(String name)
+	{
+		Variable variable = findVariable(name);
+		if (variable == null)
+			throw new EquationParserException("Unknown variable: $" + name);
+
+		return variable.getValue().split("\\r?\\n");
+	}
+}
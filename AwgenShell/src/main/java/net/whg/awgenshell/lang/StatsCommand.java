@@ -0,0 +1,94 @@
+package net.whg.awgenshell.lang;
+
+import java.util.List;
+import java.util.Locale;
+import net.whg.awgenshell.exec.CommandMetrics;
+import net.whg.awgenshell.exec.CommandStats;
+import net.whg.awgenshell.util.CommandResult;
+import net.whg.awgenshell.util.template.BaseCommand;
+import net.whg.awgenshell.util.template.CommandTemplateBuilder;
+
+/**
+ * Shows how often each command has been run, how often it failed, and how long
+ * it took, with the commands which took the most time in total listed first.
+ * The time of a command includes the time of any commands it runs, such as the
+ * body of a for loop. The -m flag shows the same metrics for each module
+ * instead, counting only commands which were not run by another command, so no
+ * time is counted twice. Metrics are not recorded until they are turned on
+ * with <code>stats on</code>, and may be turned off again with
+ * <code>stats off</code>, or cleared with <code>stats reset</code>. The same
+ * metrics are also available through JMX.
+ *
+ * @author TheDudeFromCI
+ */
+public class StatsCommand extends BaseCommand
+{
+	private static final int FLAG_MODULES = 0;
+
+	private static String formatTime(double nanos)
+	{
+		return String.format(Locale.ROOT, "%.3fms", nanos / 1000000);
+	}
+
+	private static String formatStats(List<CommandStats> list)
+	{
+		list.removeIf(s -> s.getInvocations() == 0);
+		list.sort((a, b) -> Long.compare(b.getTotalTime(), a.getTotalTime()));
+
+		StringBuilder sb = new StringBuilder();
+		for (CommandStats s : list)
+		{
+			if (sb.length() > 0)
+				sb.append('\n');
+
+			if (s.getModuleName() != null)
+				sb.append(s.getModuleName()).append('.');
+
+			sb.append(s.getName()).append(": ");
+			sb.append(s.getInvocations()).append(" calls, ");
+			sb.append(s.getErrors()).append(" errors, ");
+			sb.append(formatTime(s.getTotalTime())).append(" total, ");
+			sb.append(formatTime(s.getMeanTime())).append(" mean, ");
+			sb.append(formatTime(s.getP50Time())).append(" p50, ");
+			sb.append(formatTime(s.getP90Time())).append(" p90, ");
+			sb.append(formatTime(s.getP99Time())).append(" p99, ");
+			sb.append(formatTime(s.getMaxTime())).append(" max");
+		}
+
+		return sb.toString();
+	}
+
+	public StatsCommand()
+	{
+		super(new CommandTemplateBuilder().name("stats").alias("metrics").perm("lang.stats")
+				.subcommand("on", (shell, args, flags) ->
+				{
+					CommandMetrics.getInstance().setEnabled(true);
+					return CommandResult.SUCCESS;
+				}).finishSubCommand().subcommand("off", (shell, args, flags) ->
+				{
+					CommandMetrics.getInstance().setEnabled(false);
+					return CommandResult.SUCCESS;
+				}).finishSubCommand().subcommand("reset", (shell, args, flags) ->
+				{
+					CommandMetrics.getInstance().reset();
+					return CommandResult.SUCCESS;
+				}).finishSubCommand().subcommand("%-", (shell, args, flags) ->
+				{
+					CommandMetrics metrics = CommandMetrics.getInstance();
+					String stats = formatStats(flags.has(FLAG_MODULES) ? metrics.getModules() : metrics.getCommands());
+
+					if (stats.isEmpty())
+					{
+						if (metrics.isEnabled())
+							shell.getCommandSender().println("No commands have been recorded yet.");
+						else
+							shell.getCommandSender().println("Command metrics are off. Use 'stats on' to record them.");
+
+						return CommandResult.SUCCESS;
+					}
+
+					return new CommandResult(stats, true, false);
+				}).flag("-m", 0).finishSubCommand().build());
+	}
+}
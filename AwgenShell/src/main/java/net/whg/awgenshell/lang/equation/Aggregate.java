@@ -0,0 +1,262 @@
+package net.whg.awgenshell.lang.equation;
+
+/**
+ * A running summary of a sequence of real numbers, which are added one at a
+ * time without being kept. While every number added is exact, the sum and the
+ * sum of squares are kept exactly, and integers stay as longs for as long as
+ * they fit. Once a double precision number is added, the summary continues in
+ * double precision, using compensated summation for the sum and Welford's
+ * method for the variance, so rounding errors do not grow with the number of
+ * values.
+ *
+ * @author TheDudeFromCI
+ * @see IAggregateFunction
+ */
+public final class Aggregate
+{
+	private final EquationContext context;
+	private long count;
+	private boolean exact = true;
+
+	// Exact state
+	private Val sum = Val.ZERO;
+	private Val sumOfSquares = Val.ZERO;
+	private Val min;
+	private Val max;
+
+	// Double precision state
+	private double total;
+	private double compensation;
+	private double mean;
+	private double m2;
+	private double minDouble;
+	private double maxDouble;
+
+	/**
+	 * Creates a new, empty aggregate which solves exact numbers with the default
+	 * precision.
+	 */
+	public Aggregate()
+	{
+		this(EquationContext.DEFAULT);
+	}
+
+	/**
+	 * Creates a new, empty aggregate.
+	 *
+	 * @param context
+	 *     - The precision to solve exact numbers with.
+	 */
+	public Aggregate(EquationContext context)
+	{
+		this.context = context;
+	}
+
+	/**
+	 * Gets the precision exact numbers are solved with.
+	 *
+	 * @return The precision context.
+	 */
+	public EquationContext getContext()
+	{
+		return context;
+	}
+
+	/**
+	 * Adds a value to this aggregate. Lists, vectors, and matrices add each of
+	 * their elements.
+	 *
+	 * @param x
+	 *     - The value to add.
+	 * @throws EquationParserException
+	 *     - If the value is, or contains, a complex number.
+	 */
+	public void add(Val x)
+	{
+		if (x.type == Val.LIST || x.type == Val.VECTOR || x.type == Val.MATRIX)
+		{
+			for (int i = 0; i < x.size; i++)
+				add(x.get(i));
+
+			return;
+		}
+
+		if (x.type != Val.NUMBER)
+			throw new EquationParserException("Only real numbers may be aggregated!");
+
+		if (!exact || !x.isExact())
+		{
+			add(x.doubleValue());
+			return;
+		}
+
+		count++;
+		sum = Val.add(sum, x, context);
+		sumOfSquares = Val.add(sumOfSquares, Val.mul(x, x, context), context);
+
+		if (min == null || compare(x, min) < 0)
+			min = x;
+
+		if (max == null || compare(x, max) > 0)
+			max = x;
+	}
+
+	/**
+	 * Adds a double precision number to this aggregate. All further numbers are
+	 * solved in double precision.
+	 *
+	 * @param x
+	 *     - The number to add.
+	 */
+	public void add(double x)
+	{
+		if (exact)
+			toDouble();
+
+		count++;
+
+		// Neumaier's variant of Kahan summation, which also compensates when the
+		// new number is larger than the running total.
+		double t = total + x;
+		if (Math.abs(total) >= Math.abs(x))
+			compensation += total - t + x;
+		else
+			compensation += x - t + total;
+		total = t;
+
+		double delta = x - mean;
+		mean += delta / count;
+		m2 += delta * (x - mean);
+
+		if (count == 1)
+		{
+			minDouble = x;
+			maxDouble = x;
+		}
+		else
+		{
+			minDouble = Math.min(minDouble, x);
+			maxDouble = Math.max(maxDouble, x);
+		}
+	}
+
+	/**
+	 * Continues the exact state of this aggregate in double precision.
+	 */
+	private void toDouble()
+	{
+		exact = false;
+
+		if (count == 0)
+			return;
+
+		Val n = Val.valueOf(count);
+		total = sum.doubleValue();
+		mean = Val.div(sum, n, context).doubleValue();
+		m2 = Val.sub(sumOfSquares, Val.div(Val.mul(sum, sum, context), n, context), context).doubleValue();
+		minDouble = min.doubleValue();
+		maxDouble = max.doubleValue();
+
+		sum = null;
+		sumOfSquares = null;
+		min = null;
+		max = null;
+	}
+
+	private static int compare(Val a, Val b)
+	{
+		if (a.isIntegral() && b.isIntegral())
+			return Long.compare(a.integerValue(), b.integerValue());
+
+		return a.bigValue().compareTo(b.bigValue());
+	}
+
+	/**
+	 * Gets the number of numbers which have been added.
+	 *
+	 * @return The count.
+	 */
+	public long getCount()
+	{
+		return count;
+	}
+
+	/**
+	 * Gets the sum of all numbers which have been added.
+	 *
+	 * @return The sum, or zero if no numbers have been added.
+	 */
+	public Val getSum()
+	{
+		return exact ? sum : Val.ofDouble(total + compensation);
+	}
+
+	/**
+	 * Gets the smallest number which has been added.
+	 *
+	 * @return The smallest number.
+	 * @throws EquationParserException
+	 *     - If no numbers have been added.
+	 */
+	public Val getMin()
+	{
+		requireNotEmpty();
+		return exact ? min : Val.ofDouble(minDouble);
+	}
+
+	/**
+	 * Gets the largest number which has been added.
+	 *
+	 * @return The largest number.
+	 * @throws EquationParserException
+	 *     - If no numbers have been added.
+	 */
+	public Val getMax()
+	{
+		requireNotEmpty();
+		return exact ? max : Val.ofDouble(maxDouble);
+	}
+
+	/**
+	 * Gets the mean of all numbers which have been added.
+	 *
+	 * @return The mean.
+	 * @throws EquationParserException
+	 *     - If no numbers have been added.
+	 */
+	public Val getMean()
+	{
+		requireNotEmpty();
+
+		if (!exact)
+			return Val.ofDouble((total + compensation) / count);
+
+		return Val.div(sum, Val.valueOf(count), context);
+	}
+
+	/**
+	 * Gets the population variance of all numbers which have been added, which is
+	 * the mean of the squared distance of each number from the mean.
+	 *
+	 * @return The variance.
+	 * @throws EquationParserException
+	 *     - If no numbers have been added.
+	 */
+	public Val getVariance()
+	{
+		requireNotEmpty();
+
+		if (!exact)
+			return Val.ofDouble(m2 / count);
+
+		Val n = Val.valueOf(count);
+		Val squares = Val.sub(sumOfSquares, Val.div(Val.mul(sum, sum, context), n, context), context);
+		return Val.div(squares, n, context);
+	}
+
+	private void requireNotEmpty()
+	{
+		if (count == 0)
+			throw new EquationParserException("Cannot aggregate an empty list!");
+	}
+}
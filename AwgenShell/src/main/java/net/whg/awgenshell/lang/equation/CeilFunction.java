@@ -1,5 +1,6 @@
 package net.whg.awgenshell.lang.equation;
 
+import java.util.function.DoubleUnaryOperator;
 import ch.obermuhlner.math.big.BigFloat;
 
 public class CeilFunction implements IEquationFunction
@@ -10,6 +11,18 @@ public class CeilFunction implements IEquationFunction
 		return "ceil";
 	}
 
+	@Override
+	public boolean isElementWise()
+	{
+		return true;
+	}
+
+	@Override
+	public DoubleUnaryOperator getDoubleFunction()
+	{
+		return Math::ceil;
+	}
+
 	@Override
 	public Val solve(Val x)
 	{
@@ -26,7 +39,13 @@ public class CeilFunction implements IEquationFunction
 			throw new EquationParserException(
 					"Only number types, vectors of numbers, or lists of number types are supported here!");
 
-		BigFloat a = x.value;
+		if (x.isIntegral())
+			return x;
+
+		if (!x.isExact())
+			return Val.ofDouble(Math.ceil(x.doubleValue()));
+
+		BigFloat a = x.bigValue();
 		a = a.isNegative() ? a.getIntegralPart()
 				: a.getFractionalPart().isZero() ? a.getIntegralPart() : a.getIntegralPart().add(1);
 
@@ -0,0 +1,178 @@
+package net.whg.awgenshell.lang.equation;
+
+import java.util.Arrays;
+import java.util.Map;
+import ch.obermuhlner.math.big.BigFloat;
+
+/**
+ * The inputs of a single columnar evaluation of a compiled equation, where the
+ * equation is solved once for each row, and each variable is given as a column
+ * containing one value per row. Columns are given either in double precision or
+ * in exact precision, which is also the precision the equation is solved with.
+ * Variables without a column are looked up once as a single number, which is
+ * used for every row.
+ *
+ * @author TheDudeFromCI
+ */
+class ColumnBatch
+{
+	private final int rows;
+	private final Map<String, double[]> doubles;
+	private final Map<String, BigFloat[]> exact;
+	private final EquationBindings scalars;
+	private final EquationContext context;
+	private final int parallelThreshold;
+
+	/**
+	 * Creates a new column batch.
+	 *
+	 * @param rows
+	 *     - The number of rows to solve.
+	 * @param doubles
+	 *     - The double precision columns, or null if solving in exact precision.
+	 * @param exact
+	 *     - The exact precision columns, or null if solving in double precision.
+	 * @param scalars
+	 *     - The bindings to look up variables which have no column from.
+	 * @param context
+	 *     - The precision of the equation being solved.
+	 * @param parallelThreshold
+	 *     - The parallel threshold to use for rows which are solved one at a time.
+	 */
+	ColumnBatch(int rows, Map<String, double[]> doubles, Map<String, BigFloat[]> exact, EquationBindings scalars,
+			EquationContext context, int parallelThreshold)
+	{
+		this.rows = rows;
+		this.doubles = doubles;
+		this.exact = exact;
+		this.scalars = scalars;
+		this.context = context;
+		this.parallelThreshold = parallelThreshold;
+	}
+
+	/**
+	 * Gets the number of rows within this batch.
+	 *
+	 * @return The number of rows.
+	 */
+	int getRows()
+	{
+		return rows;
+	}
+
+	/**
+	 * Gets the precision of the equation being solved.
+	 *
+	 * @return The precision context.
+	 */
+	EquationContext getContext()
+	{
+		return context;
+	}
+
+	/**
+	 * Checks if this batch is solved in exact precision.
+	 *
+	 * @return True if this batch is solved in exact precision, false if it is
+	 *     solved in double precision.
+	 */
+	boolean isExact()
+	{
+		return exact != null;
+	}
+
+	/**
+	 * Gets the double precision column of the given variable. If the variable has
+	 * no column, its single value is repeated for every row.
+	 *
+	 * @param name
+	 *     - The name of the variable.
+	 * @return The column. This array must not be modified.
+	 * @throws EquationParserException
+	 *     - If there is no column or number for the given variable.
+	 */
+	double[] getDoubles(String name)
+	{
+		double[] column = doubles.get(name);
+		if (column != null)
+			return column;
+
+		column = new double[rows];
+		Arrays.fill(column, getScalar(name, false).doubleValue());
+		return column;
+	}
+
+	/**
+	 * Gets the exact precision column of the given variable. If the variable has
+	 * no column, its single value is repeated for every row.
+	 *
+	 * @param name
+	 *     - The name of the variable.
+	 * @return The column. This array must not be modified.
+	 * @throws EquationParserException
+	 *     - If there is no column or number for the given variable.
+	 */
+	BigFloat[] getExact(String name)
+	{
+		BigFloat[] column = exact.get(name);
+		if (column != null)
+			return column;
+
+		column = new BigFloat[rows];
+		Arrays.fill(column, getScalar(name, true).bigValue());
+		return column;
+	}
+
+	private Val getScalar(String name, boolean exact)
+	{
+		Val value = scalars.getValue(name, exact, context);
+
+		if (value == null)
+			throw new EquationParserException("Unknown variable: $" + name);
+
+		if (value.type != Val.NUMBER)
+			throw new EquationParserException("Variable $" + name + " is not a number!");
+
+		return value;
+	}
+
+	/**
+	 * Creates an evaluation for solving a single row of this batch, for nodes
+	 * which can not be solved a column at a time.
+	 *
+	 * @param row
+	 *     - The index of the row.
+	 * @return The evaluation.
+	 */
+	Evaluation row(int row)
+	{
+		EquationBindings bindings;
+		if (exact != null)
+			bindings = (name, e) -> exact.containsKey(name) ? new Val(exact.get(name)[row])
+					: scalars.getValue(name, e, context);
+		else
+			bindings = (name, e) -> doubles.containsKey(name) ? Val.ofDouble(doubles.get(name)[row])
+					: scalars.getValue(name, e, context);
+
+		EquationMode mode = exact != null ? EquationMode.EXACT : EquationMode.DOUBLE;
+		return new Evaluation(mode, bindings, context, parallelThreshold);
+	}
+
+	/**
+	 * Checks that a value solved for a single row is a number, as each row of a
+	 * batch results in a single number.
+	 *
+	 * @param x
+	 *     - The value to check.
+	 * @return The given value.
+	 * @throws EquationParserException
+	 *     - If the value is not a number.
+	 */
+	static Val requireNumber(Val x)
+	{
+		if (x.type != Val.NUMBER)
+			throw new EquationParserException("Each row must result in a single number!");
+
+		return x;
+	}
+}
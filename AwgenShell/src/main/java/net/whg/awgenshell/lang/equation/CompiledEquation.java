@@ -0,0 +1,284 @@
+package net.whg.awgenshell.lang.equation;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToIntFunction;
+import ch.obermuhlner.math.big.BigFloat;
+
+/**
+ * An equation which has been parsed ahead of time by an equation solver. A
+ * compiled equation is immutable and has all of its functions resolved, so it
+ * can be evaluated any number of times without being parsed again, and may be
+ * shared between threads.
+ *
+ * @author TheDudeFromCI
+ */
+public class CompiledEquation
+{
+	private final EquationSolver solver;
+	private final EquationContext context;
+	private final String source;
+	private final EquationNode root;
+	private final AtomicInteger calls = new AtomicInteger();
+	private volatile GeneratedFormula generated;
+	private volatile boolean generatable = true;
+
+	/**
+	 * Creates a new compiled equation.
+	 *
+	 * @param solver
+	 *     - The solver which compiled this equation.
+	 * @param context
+	 *     - The precision this equation was compiled with.
+	 * @param source
+	 *     - The equation string this equation was compiled from.
+	 * @param root
+	 *     - The root node of the equation.
+	 */
+	CompiledEquation(EquationSolver solver, EquationContext context, String source, EquationNode root)
+	{
+		this.solver = solver;
+		this.context = context;
+		this.source = source;
+		this.root = root;
+	}
+
+	/**
+	 * Gets the equation string this equation was compiled from.
+	 *
+	 * @return The source equation.
+	 */
+	public String getSource()
+	{
+		return source;
+	}
+
+	/**
+	 * Gets the precision exact numbers within this equation were compiled with.
+	 *
+	 * @return The precision context.
+	 */
+	public EquationContext getContext()
+	{
+		return context;
+	}
+
+	/**
+	 * Solves this equation without any variables.
+	 *
+	 * @param mode
+	 *     - The precision mode to solve this equation with.
+	 * @return The answer to the equation.
+	 * @throws EquationParserException
+	 *     - If the equation could not be solved.
+	 */
+	public Val evaluate(EquationMode mode)
+	{
+		return evaluate(EquationBindings.NONE, mode);
+	}
+
+	/**
+	 * Solves this equation.
+	 *
+	 * @param bindings
+	 *     - The bindings to look up variables from.
+	 * @param mode
+	 *     - The precision mode to solve this equation with.
+	 * @return The answer to the equation.
+	 * @throws EquationParserException
+	 *     - If the equation could not be solved, or uses a variable which is not
+	 *     bound.
+	 */
+	public Val evaluate(EquationBindings bindings, EquationMode mode)
+	{
+		if (mode == EquationMode.DOUBLE)
+		{
+			Val v = evaluateGenerated(bindings);
+			if (v != null)
+				return v;
+		}
+
+		int parallelThreshold = solver.getParallelThreshold();
+
+		if (mode == EquationMode.ADAPTIVE)
+		{
+			try
+			{
+				return root.evaluate(new Evaluation(EquationMode.ADAPTIVE, bindings, context, parallelThreshold));
+			}
+			catch (Evaluation.PrecisionLossException e)
+			{
+				return root.evaluate(new Evaluation(EquationMode.EXACT, bindings, context, parallelThreshold));
+			}
+		}
+
+		return root.evaluate(new Evaluation(mode, bindings, context, parallelThreshold));
+	}
+
+	/**
+	 * Solves this equation using the generated class, generating it once this
+	 * equation has been solved often enough.
+	 *
+	 * @return The answer, or null if this equation has not been generated, or can
+	 *     not be solved by the generated class with the given bindings.
+	 */
+	private Val evaluateGenerated(EquationBindings bindings)
+	{
+		GeneratedFormula formula = generated;
+		if (formula == null)
+		{
+			int threshold = solver.getCompileThreshold();
+			if (!generatable || threshold == 0 || calls.incrementAndGet() < threshold)
+				return null;
+
+			synchronized (this)
+			{
+				formula = generated;
+				if (formula == null && generatable)
+				{
+					Evaluation constants = new Evaluation(EquationMode.DOUBLE, EquationBindings.NONE, context,
+							solver.getParallelThreshold());
+
+					formula = FormulaGenerator.generate(root, constants);
+					generated = formula;
+					generatable = formula != null;
+				}
+			}
+
+			if (formula == null)
+				return null;
+		}
+
+		return formula.evaluate(bindings);
+	}
+
+	/**
+	 * Checks if this equation has been generated into a JVM class.
+	 *
+	 * @return True if this equation is solved in double precision by a generated
+	 *     class, false otherwise.
+	 * @see EquationSolver#setCompileThreshold(int)
+	 */
+	public boolean isGenerated()
+	{
+		return generated != null;
+	}
+
+	/**
+	 * Solves this equation once for each row of the given columns in double
+	 * precision. Each variable is given as a column, which contains the value of
+	 * that variable for each row. This is much faster than solving the equation
+	 * for each row separately, as each operation is applied to a whole column at
+	 * once.
+	 *
+	 * @param columns
+	 *     - The columns of each variable, by variable name. All columns must have
+	 *     the same length.
+	 * @return The answer for each row. If no columns are given, a single row is
+	 *     solved.
+	 * @throws EquationParserException
+	 *     - If the equation could not be solved, uses a variable which has no
+	 *     column, or does not result in a number.
+	 * @throws IllegalArgumentException
+	 *     - If the columns do not all have the same length.
+	 */
+	public double[] evaluateColumns(Map<String, double[]> columns)
+	{
+		return evaluateColumns(columns, EquationBindings.NONE);
+	}
+
+	/**
+	 * Solves this equation once for each row of the given columns in double
+	 * precision. Variables which have no column are looked up from the given
+	 * bindings instead, and have the same value for every row.
+	 *
+	 * @param columns
+	 *     - The columns of each variable, by variable name. All columns must have
+	 *     the same length.
+	 * @param bindings
+	 *     - The bindings to look up variables which have no column from.
+	 * @return The answer for each row. If no columns are given, a single row is
+	 *     solved.
+	 * @throws EquationParserException
+	 *     - If the equation could not be solved, uses a variable which has neither
+	 *     a column nor a number, or does not result in a number.
+	 * @throws IllegalArgumentException
+	 *     - If the columns do not all have the same length.
+	 * @see #evaluateColumns(Map)
+	 */
+	public double[] evaluateColumns(Map<String, double[]> columns, EquationBindings bindings)
+	{
+		int rows = getRows(columns.values(), c -> c.length);
+		return root.evaluateDoubles(
+				new ColumnBatch(rows, columns, null, bindings, context, solver.getParallelThreshold()));
+	}
+
+	/**
+	 * Solves this equation once for each row of the given columns in exact
+	 * precision. Each variable is given as a column, which contains the value of
+	 * that variable for each row.
+	 *
+	 * @param columns
+	 *     - The columns of each variable, by variable name. All columns must have
+	 *     the same length.
+	 * @return The answer for each row. If no columns are given, a single row is
+	 *     solved.
+	 * @throws EquationParserException
+	 *     - If the equation could not be solved, uses a variable which has no
+	 *     column, or does not result in a number.
+	 * @throws IllegalArgumentException
+	 *     - If the columns do not all have the same length.
+	 * @see #evaluateColumns(Map)
+	 */
+	public BigFloat[] evaluateExactColumns(Map<String, BigFloat[]> columns)
+	{
+		return evaluateExactColumns(columns, EquationBindings.NONE);
+	}
+
+	/**
+	 * Solves this equation once for each row of the given columns in exact
+	 * precision. Variables which have no column are looked up from the given
+	 * bindings instead, and have the same value for every row.
+	 *
+	 * @param columns
+	 *     - The columns of each variable, by variable name. All columns must have
+	 *     the same length.
+	 * @param bindings
+	 *     - The bindings to look up variables which have no column from.
+	 * @return The answer for each row. If no columns are given, a single row is
+	 *     solved.
+	 * @throws EquationParserException
+	 *     - If the equation could not be solved, uses a variable which has neither
+	 *     a column nor a number, or does not result in a number.
+	 * @throws IllegalArgumentException
+	 *     - If the columns do not all have the same length.
+	 * @see #evaluateColumns(Map, EquationBindings)
+	 */
+	public BigFloat[] evaluateExactColumns(Map<String, BigFloat[]> columns, EquationBindings bindings)
+	{
+		int rows = getRows(columns.values(), c -> c.length);
+		return root.evaluateExact(
+				new ColumnBatch(rows, null, columns, bindings, context, solver.getParallelThreshold()));
+	}
+
+	private static <T> int getRows(Collection<T> columns, ToIntFunction<T> length)
+	{
+		int rows = -1;
+		for (T column : columns)
+		{
+			if (rows != -1 && length.applyAsInt(column) != rows)
+				throw new IllegalArgumentException("All columns must have the same length!");
+
+			rows = length.applyAsInt(column);
+		}
+
+		return rows == -1 ? 1 : rows;
+	}
+
+	@Override
+	public String toString()
+	{
+		return source;
+	}
+}
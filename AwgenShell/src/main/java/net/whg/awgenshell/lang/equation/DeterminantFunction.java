@@ -0,0 +1,16 @@
+package net.whg.awgenshell.lang.equation;
+
+public class DeterminantFunction implements IEquationFunction
+{
+	@Override
+	public String getName()
+	{
+		return "det";
+	}
+
+	@Override
+	public Val solve(Val x)
+	{
+		return Val.determinant(x);
+	}
+}
@@ -0,0 +1,78 @@
+package net.whg.awgenshell.lang.equation;
+
+/**
+ * Provides the values of named variables while evaluating a compiled equation.
+ * Variables are written within an equation as a dollar sign followed by a name,
+ * such as <code>$x * 2</code>, and are looked up each time the equation is
+ * evaluated.
+ *
+ * @author TheDudeFromCI
+ */
+public interface EquationBindings
+{
+	/**
+	 * A constant for bindings which contain no variables.
+	 */
+	EquationBindings NONE = (name, exact) -> null;
+
+	/**
+	 * Gets the value of the variable with the given name.
+	 *
+	 * @param name
+	 *     - The name of the variable, without the dollar sign.
+	 * @param exact
+	 *     - Whether or not the equation is being solved in exact precision. If
+	 *     false, a double precision number may be returned instead.
+	 * @return The value of the variable, or null if there is no variable with the
+	 *     given name.
+	 * @throws EquationParserException
+	 *     - If the variable exists, but does not contain a valid value.
+	 */
+	Val getValue(String name, boolean exact);
+
+	/**
+	 * Gets the value of the variable with the given name, reading exact numbers
+	 * with the precision of the equation being solved, so a variable does not
+	 * raise the precision of the rest of the equation. By default, this calls
+	 * {@link #getValue(String, boolean)}.
+	 *
+	 * @param name
+	 *     - The name of the variable, without the dollar sign.
+	 * @param exact
+	 *     - Whether or not the equation is being solved in exact precision. If
+	 *     false, a double precision number may be returned instead.
+	 * @param context
+	 *     - The precision exact numbers are read with.
+	 * @return The value of the variable, or null if there is no variable with the
+	 *     given name.
+	 * @throws EquationParserException
+	 *     - If the variable exists, but does not contain a valid value.
+	 */
+	default Val getValue(String name, boolean exact, EquationContext context)
+	{
+		return getValue(name, exact);
+	}
+
+	/**
+	 * Adds each number of a variable to the given aggregate, without creating a
+	 * value for the variable first. This is used by aggregate functions whose
+	 * argument is a single variable, such as <code>sum($x)</code>. By default, no
+	 * variables are streamed, and the variable is looked up using
+	 * {@link #getValue(String, boolean)} instead.
+	 *
+	 * @param name
+	 *     - The name of the variable, without the dollar sign.
+	 * @param exact
+	 *     - Whether or not the equation is being solved in exact precision.
+	 * @param aggregate
+	 *     - The aggregate to add each number to.
+	 * @return True if the numbers of the variable were added, false if the
+	 *     variable should be looked up normally.
+	 * @throws EquationParserException
+	 *     - If the variable exists, but does not contain valid numbers.
+	 */
+	default boolean aggregate(String name, boolean exact, Aggregate aggregate)
+	{
+		return false;
+	}
+}
@@ -0,0 +1,171 @@
+package net.whg.awgenshell.lang.equation;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import ch.obermuhlner.math.big.BigFloat;
+
+/**
+ * The precision exact numbers are solved with, along with a table of constants
+ * which have been calculated to that precision. Only one context exists for
+ * each precision, so the constants of a precision are only calculated once.
+ * Operations on exact numbers are done using the highest precision of the two
+ * numbers, so numbers created by solvers using a lower precision are faster to
+ * solve.
+ *
+ * @author TheDudeFromCI
+ */
+public final class EquationContext
+{
+	/**
+	 * The number of significant digits exact numbers are solved with by default.
+	 */
+	public static final int DEFAULT_PRECISION = 128;
+
+	private static final Map<Integer, EquationContext> CONTEXTS = new ConcurrentHashMap<>();
+
+	/**
+	 * The context which is used by default, with a precision of
+	 * {@link #DEFAULT_PRECISION}.
+	 */
+	public static final EquationContext DEFAULT = of(DEFAULT_PRECISION);
+
+	/**
+	 * Gets the context for the given precision.
+	 *
+	 * @param precision
+	 *     - The number of significant digits.
+	 * @return The context.
+	 * @throws IllegalArgumentException
+	 *     - If the precision is less than 1.
+	 */
+	public static EquationContext of(int precision)
+	{
+		if (precision < 1)
+			throw new IllegalArgumentException("Precision must be at least 1!");
+
+		EquationContext context = CONTEXTS.get(precision);
+		if (context == null)
+			context = CONTEXTS.computeIfAbsent(precision, EquationContext::new);
+
+		return context;
+	}
+
+	/**
+	 * Gets the context which has the same precision as the given number.
+	 *
+	 * @param x
+	 *     - The number.
+	 * @return The context.
+	 */
+	public static EquationContext of(BigFloat x)
+	{
+		return of(x.getContext().getPrecision());
+	}
+
+	private final BigFloat.Context context;
+	private final BigFloat half;
+	private final BigFloat pi;
+	private final BigFloat e;
+
+	private EquationContext(int precision)
+	{
+		context = BigFloat.context(precision);
+		half = context.valueOf("0.5");
+		pi = context.pi();
+		e = context.e();
+	}
+
+	/**
+	 * Gets the number of significant digits of this context.
+	 *
+	 * @return The precision.
+	 */
+	public int getPrecision()
+	{
+		return context.getPrecision();
+	}
+
+	/**
+	 * Gets the BigFloat context of this precision.
+	 *
+	 * @return The BigFloat context.
+	 */
+	public BigFloat.Context getContext()
+	{
+		return context;
+	}
+
+	/**
+	 * Gets the number 0.5.
+	 *
+	 * @return One half.
+	 */
+	public BigFloat getHalf()
+	{
+		return half;
+	}
+
+	/**
+	 * Gets the number pi, calculated to the precision of this context.
+	 *
+	 * @return Pi.
+	 */
+	public BigFloat getPi()
+	{
+		return pi;
+	}
+
+	/**
+	 * Gets the number e, calculated to the precision of this context.
+	 *
+	 * @return E.
+	 */
+	public BigFloat getE()
+	{
+		return e;
+	}
+
+	/**
+	 * Creates a number with the precision of this context.
+	 *
+	 * @param value
+	 *     - The value as a long.
+	 * @return The number.
+	 */
+	public BigFloat valueOf(long value)
+	{
+		return context.valueOf(value);
+	}
+
+	/**
+	 * Creates a number with the precision of this context.
+	 *
+	 * @param value
+	 *     - The value as a double.
+	 * @return The number.
+	 */
+	public BigFloat valueOf(double value)
+	{
+		return context.valueOf(value);
+	}
+
+	/**
+	 * Creates a number with the precision of this context.
+	 *
+	 * @param value
+	 *     - The string to parse into a number.
+	 * @return The number.
+	 * @throws NumberFormatException
+	 *     - If the string is not a valid number.
+	 */
+	public BigFloat valueOf(String value)
+	{
+		return context.valueOf(value);
+	}
+
+	@Override
+	public String toString()
+	{
+		return "EquationContext(" + getPrecision() + ")";
+	}
+}
@@ -0,0 +1,30 @@
+package net.whg.awgenshell.lang.equation;
+
+/**
+ * The precision an equation solver uses for numbers while solving equations.
+ *
+ * @author TheDudeFromCI
+ */
+public enum EquationMode
+{
+	/**
+	 * Integers are stored as longs for as long as they fit, and all other numbers
+	 * are stored as BigFloats, with the precision given by
+	 * {@link EquationSolver#setPrecision(int)}. This is the most accurate mode,
+	 * but also the slowest.
+	 */
+	EXACT,
+
+	/**
+	 * All numbers are stored as primitive doubles. This is the fastest mode, but
+	 * results are limited to double precision.
+	 */
+	DOUBLE,
+
+	/**
+	 * Equations are solved in double precision first, and are solved again in
+	 * exact precision if any intermediate value becomes too large to be stored
+	 * exactly, or if a subtraction loses most of its precision.
+	 */
+	ADAPTIVE
+}
@@ -0,0 +1,682 @@
+package net.whg.awgenshell.lang.equation;
+
+import java.util.Arrays;
+import java.util.function.DoubleUnaryOperator;
+import ch.obermuhlner.math.big.BigFloat;
+
+/**
+ * A single node within a compiled equation. Nodes are immutable, and may be
+ * evaluated any number of times, from any number of threads.
+ *
+ * @author TheDudeFromCI
+ */
+abstract class EquationNode
+{
+	/**
+	 * Evaluates this node.
+	 *
+	 * @param e
+	 *     - The current evaluation.
+	 * @return The value of this node.
+	 * @throws EquationParserException
+	 *     - If this node could not be evaluated.
+	 */
+	abstract Val evaluate(Evaluation e);
+
+	/**
+	 * Evaluates this node for every row of a double precision batch. By default,
+	 * each row is evaluated on its own.
+	 *
+	 * @param b
+	 *     - The current batch.
+	 * @return The value of this node for each row.
+	 * @throws EquationParserException
+	 *     - If this node could not be evaluated, or does not result in a number.
+	 */
+	double[] evaluateDoubles(ColumnBatch b)
+	{
+		double[] column = new double[b.getRows()];
+		for (int i = 0; i < column.length; i++)
+			column[i] = ColumnBatch.requireNumber(evaluate(b.row(i))).doubleValue();
+
+		return column;
+	}
+
+	/**
+	 * Evaluates this node for every row of an exact precision batch. By default,
+	 * each row is evaluated on its own.
+	 *
+	 * @param b
+	 *     - The current batch.
+	 * @return The value of this node for each row.
+	 * @throws EquationParserException
+	 *     - If this node could not be evaluated, or does not result in a number.
+	 */
+	BigFloat[] evaluateExact(ColumnBatch b)
+	{
+		BigFloat[] column = new BigFloat[b.getRows()];
+		for (int i = 0; i < column.length; i++)
+			column[i] = ColumnBatch.requireNumber(evaluate(b.row(i))).bigValue();
+
+		return column;
+	}
+
+	/**
+	 * Checks if this node results in the same value every time it is evaluated,
+	 * regardless of the bindings, so it may be solved once ahead of time.
+	 * Defaults to false.
+	 *
+	 * @return True if this node is constant, false otherwise.
+	 */
+	boolean isConstant()
+	{
+		return false;
+	}
+
+	/**
+	 * Writes the instructions which solve this node in double precision, for a
+	 * generated formula. Constant nodes are solved by the generator instead. By
+	 * default, nodes can not be generated.
+	 *
+	 * @param g
+	 *     - The formula generator.
+	 * @return True if the instructions were written, false if this node can not be
+	 *     solved using only double precision numbers.
+	 */
+	boolean generate(FormulaGenerator g)
+	{
+		return false;
+	}
+
+	private static double[] fill(ColumnBatch b, double value)
+	{
+		double[] column = new double[b.getRows()];
+		Arrays.fill(column, value);
+		return column;
+	}
+
+	private static BigFloat[] fill(ColumnBatch b, BigFloat value)
+	{
+		BigFloat[] column = new BigFloat[b.getRows()];
+		Arrays.fill(column, value);
+		return column;
+	}
+
+	/**
+	 * A number literal, which is stored in both exact and double precision.
+	 *
+	 * @author TheDudeFromCI
+	 */
+	static class Literal extends EquationNode
+	{
+		private final Val exact;
+		private final Val approximate;
+		private final boolean precise;
+
+		/**
+		 * Creates a new literal node.
+		 *
+		 * @param exact
+		 *     - The literal in exact precision.
+		 * @param approximate
+		 *     - The literal in double precision.
+		 * @param precise
+		 *     - Whether or not the double precision value may be used in adaptive
+		 *     mode.
+		 */
+		Literal(Val exact, Val approximate, boolean precise)
+		{
+			this.exact = exact;
+			this.approximate = approximate;
+			this.precise = precise;
+		}
+
+		@Override
+		Val evaluate(Evaluation e)
+		{
+			switch (e.getMode())
+			{
+				case EXACT:
+					return exact;
+
+				case ADAPTIVE:
+					if (!precise)
+						throw Evaluation.PRECISION_LOSS;
+
+					return e.verify(approximate);
+
+				default:
+					return approximate;
+			}
+		}
+
+		@Override
+		double[] evaluateDoubles(ColumnBatch b)
+		{
+			if (approximate.type != Val.NUMBER)
+				return super.evaluateDoubles(b);
+
+			return fill(b, approximate.doubleValue());
+		}
+
+		@Override
+		BigFloat[] evaluateExact(ColumnBatch b)
+		{
+			if (exact.type != Val.NUMBER)
+				return super.evaluateExact(b);
+
+			return fill(b, exact.withContext(b.getContext()).bigValue());
+		}
+
+		@Override
+		boolean isConstant()
+		{
+			return true;
+		}
+	}
+
+	/**
+	 * A constant value, which is the same in every precision mode.
+	 *
+	 * @author TheDudeFromCI
+	 */
+	static class Constant extends EquationNode
+	{
+		private final Val value;
+
+		Constant(Val value)
+		{
+			this.value = value;
+		}
+
+		@Override
+		Val evaluate(Evaluation e)
+		{
+			return value;
+		}
+
+		@Override
+		double[] evaluateDoubles(ColumnBatch b)
+		{
+			if (value.type != Val.NUMBER)
+				return super.evaluateDoubles(b);
+
+			return fill(b, value.doubleValue());
+		}
+
+		@Override
+		BigFloat[] evaluateExact(ColumnBatch b)
+		{
+			if (value.type != Val.NUMBER)
+				return super.evaluateExact(b);
+
+			return fill(b, value.bigValue());
+		}
+
+		@Override
+		boolean isConstant()
+		{
+			return true;
+		}
+	}
+
+	/**
+	 * A named variable, which is looked up from the bindings of each evaluation.
+	 *
+	 * @author TheDudeFromCI
+	 */
+	static class Variable extends EquationNode
+	{
+		private final String name;
+
+		Variable(String name)
+		{
+			this.name = name;
+		}
+
+		@Override
+		Val evaluate(Evaluation e)
+		{
+			boolean exact = e.getMode() == EquationMode.EXACT;
+
+			Val v = e.getBindings().getValue(name, exact, e.getContext());
+			if (v == null)
+				throw new EquationParserException("Unknown variable: $" + name);
+
+			if (v.type == Val.NUMBER && v.isExact() != exact)
+				v = exact ? new Val(e.getContext().valueOf(v.doubleValue())) : Val.ofDouble(v.doubleValue());
+
+			return e.verify(v);
+		}
+
+		@Override
+		double[] evaluateDoubles(ColumnBatch b)
+		{
+			return b.getDoubles(name);
+		}
+
+		@Override
+		BigFloat[] evaluateExact(ColumnBatch b)
+		{
+			return b.getExact(name);
+		}
+
+		@Override
+		boolean generate(FormulaGenerator g)
+		{
+			g.variable(name);
+			return true;
+		}
+	}
+
+	/**
+	 * A negated value.
+	 *
+	 * @author TheDudeFromCI
+	 */
+	static class Negate extends EquationNode
+	{
+		private final EquationNode value;
+
+		Negate(EquationNode value)
+		{
+			this.value = value;
+		}
+
+		@Override
+		Val evaluate(Evaluation e)
+		{
+			return Val.mul(value.evaluate(e), Val.NEGATIVE_ONE, e.getContext());
+		}
+
+		@Override
+		double[] evaluateDoubles(ColumnBatch b)
+		{
+			double[] x = value.evaluateDoubles(b);
+			double[] column = new double[x.length];
+
+			for (int i = 0; i < column.length; i++)
+				column[i] = -x[i];
+
+			return column;
+		}
+
+		@Override
+		BigFloat[] evaluateExact(ColumnBatch b)
+		{
+			BigFloat[] x = value.evaluateExact(b);
+			BigFloat[] column = new BigFloat[x.length];
+
+			for (int i = 0; i < column.length; i++)
+				column[i] = BigFloat.negate(x[i]);
+
+			return column;
+		}
+
+		@Override
+		boolean isConstant()
+		{
+			return value.isConstant();
+		}
+
+		@Override
+		boolean generate(FormulaGenerator g)
+		{
+			if (!g.write(value))
+				return false;
+
+			g.negate();
+			return true;
+		}
+	}
+
+	/**
+	 * An operation between two values.
+	 *
+	 * @author TheDudeFromCI
+	 */
+	static class Operation extends EquationNode
+	{
+		static final int ADD = 0;
+		static final int SUBTRACT = 1;
+		static final int MULTIPLY = 2;
+		static final int DIVIDE = 3;
+		static final int MODULUS = 4;
+		static final int POWER = 5;
+
+		private final int operator;
+		private final EquationNode left;
+		private final EquationNode right;
+
+		Operation(int operator, EquationNode left, EquationNode right)
+		{
+			this.operator = operator;
+			this.left = left;
+			this.right = right;
+		}
+
+		@Override
+		Val evaluate(Evaluation e)
+		{
+			Val a = left.evaluate(e);
+			Val b = right.evaluate(e);
+
+			if (a.type == Val.VECTOR && e.isParallel(a))
+			{
+				Val v = evaluateParallel(e, a, b);
+				if (v != null)
+					return e.verify(v);
+			}
+
+			switch (operator)
+			{
+				case ADD:
+					return e.verifySum(Val.add(a, b, e.getContext()), a, b);
+
+				case SUBTRACT:
+					return e.verifySum(Val.sub(a, b, e.getContext()), a, b);
+
+				case MULTIPLY:
+					return e.verify(Val.mul(a, b, e.getContext()));
+
+				case DIVIDE:
+					return e.verify(Val.div(a, b, e.getContext()));
+
+				case MODULUS:
+					return e.verify(Val.mod(a, b, e.getContext()));
+
+				default:
+					return e.verify(Val.pow(a, b, e.getContext()));
+			}
+		}
+
+		@Override
+		double[] evaluateDoubles(ColumnBatch b)
+		{
+			double[] x = left.evaluateDoubles(b);
+			double[] y = right.evaluateDoubles(b);
+			double[] column = new double[x.length];
+
+			switch (operator)
+			{
+				case ADD:
+					for (int i = 0; i < column.length; i++)
+						column[i] = x[i] + y[i];
+					break;
+
+				case SUBTRACT:
+					for (int i = 0; i < column.length; i++)
+						column[i] = x[i] - y[i];
+					break;
+
+				case MULTIPLY:
+					for (int i = 0; i < column.length; i++)
+						column[i] = x[i] * y[i];
+					break;
+
+				case DIVIDE:
+					for (int i = 0; i < column.length; i++)
+						column[i] = x[i] / y[i];
+					break;
+
+				case MODULUS:
+					for (int i = 0; i < column.length; i++)
+						column[i] = x[i] % y[i];
+					break;
+
+				default:
+					for (int i = 0; i < column.length; i++)
+						column[i] = Math.pow(x[i], y[i]);
+					break;
+			}
+
+			return column;
+		}
+
+		@Override
+		BigFloat[] evaluateExact(ColumnBatch b)
+		{
+			BigFloat[] x = left.evaluateExact(b);
+			BigFloat[] y = right.evaluateExact(b);
+			BigFloat[] column = new BigFloat[x.length];
+
+			switch (operator)
+			{
+				case ADD:
+					for (int i = 0; i < column.length; i++)
+						column[i] = x[i].add(y[i]);
+					break;
+
+				case SUBTRACT:
+					for (int i = 0; i < column.length; i++)
+						column[i] = x[i].subtract(y[i]);
+					break;
+
+				case MULTIPLY:
+					for (int i = 0; i < column.length; i++)
+						column[i] = x[i].multiply(y[i]);
+					break;
+
+				case DIVIDE:
+					for (int i = 0; i < column.length; i++)
+						column[i] = x[i].divide(y[i]);
+					break;
+
+				case MODULUS:
+					for (int i = 0; i < column.length; i++)
+						column[i] = x[i].remainder(y[i]);
+					break;
+
+				default:
+					for (int i = 0; i < column.length; i++)
+						column[i] = x[i].pow(y[i]);
+					break;
+			}
+
+			return column;
+		}
+
+		@Override
+		boolean isConstant()
+		{
+			return left.isConstant() && right.isConstant();
+		}
+
+		@Override
+		boolean generate(FormulaGenerator g)
+		{
+			if (!g.write(left) || !g.write(right))
+				return false;
+
+			g.operation(operator);
+			return true;
+		}
+
+		/**
+		 * Evaluates an element-wise operation on a large vector in parallel.
+		 *
+		 * @return The resulting vector, or null if this operation is not element-wise
+		 *     for the given values.
+		 */
+		private Val evaluateParallel(Evaluation e, Val a, Val b)
+		{
+			boolean vectors = b.type == Val.VECTOR;
+			if (b.type != Val.NUMBER && b.type != Val.COMPLEX_NUMBER && !vectors)
+				return null;
+
+			if (vectors && a.size != b.size)
+				return null;
+
+			EquationContext c = e.getContext();
+
+			switch (operator)
+			{
+				case ADD:
+					return new Val(Val.VECTOR, e.parallel(a.size, i -> Val.add(a.get(i), vectors ? b.get(i) : b, c)));
+
+				case SUBTRACT:
+					return new Val(Val.VECTOR, e.parallel(a.size, i -> Val.sub(a.get(i), vectors ? b.get(i) : b, c)));
+
+				case MULTIPLY:
+					if (vectors)
+						return null;
+
+					return new Val(Val.VECTOR, e.parallel(a.size, i -> Val.mul(a.get(i), b, c)));
+
+				default:
+					return null;
+			}
+		}
+	}
+
+	/**
+	 * A function call.
+	 *
+	 * @author TheDudeFromCI
+	 */
+	static class Function extends EquationNode
+	{
+		private final IEquationFunction function;
+		private final FunctionMemo memo;
+		private final EquationNode argument;
+
+		/**
+		 * Creates a new function node.
+		 *
+		 * @param function
+		 *     - The function to call.
+		 * @param memo
+		 *     - The memo to look up results from, or null if the function is not
+		 *     pure.
+		 * @param argument
+		 *     - The argument of the function.
+		 */
+		Function(IEquationFunction function, FunctionMemo memo, EquationNode argument)
+		{
+			this.function = function;
+			this.memo = memo;
+			this.argument = argument;
+		}
+
+		private Val solve(Val x)
+		{
+			return memo == null ? function.solve(x) : memo.solve(x);
+		}
+
+		@Override
+		Val evaluate(Evaluation e)
+		{
+			if (function instanceof IAggregateFunction)
+				return e.verify(aggregate(e, (IAggregateFunction) function));
+
+			Val v = argument.evaluate(e);
+
+			// Integers have no precision of their own, so functions would otherwise
+			// solve them with the default precision.
+			Val x = e.getContext() == EquationContext.DEFAULT ? v : v.withContext(e.getContext());
+
+			if (function.isElementWise() && (x.type == Val.LIST || x.type == Val.VECTOR))
+			{
+				if (e.isParallel(x))
+					return e.verify(new Val(x.type, e.parallel(x.size, i -> solve(x.get(i)))));
+
+				// Elements are solved here, so each element can be looked up in the memo.
+				if (memo != null)
+				{
+					Val[] elements = new Val[x.size];
+					for (int i = 0; i < elements.length; i++)
+						elements[i] = solve(x.get(i));
+
+					return e.verify(new Val(x.type, elements));
+				}
+			}
+
+			return e.verify(solve(x));
+		}
+
+		private Val aggregate(Evaluation e, IAggregateFunction function)
+		{
+			Aggregate aggregate = new Aggregate(e.getContext());
+			boolean exact = e.getMode() == EquationMode.EXACT;
+
+			// Variables may be streamed into the aggregate without being parsed into a
+			// list first.
+			if (argument instanceof Variable
+					&& e.getBindings().aggregate(((Variable) argument).name, exact, aggregate))
+				return function.result(aggregate);
+
+			aggregate.add(argument.evaluate(e));
+			return function.result(aggregate);
+		}
+
+		@Override
+		double[] evaluateDoubles(ColumnBatch b)
+		{
+			double[] x = argument.evaluateDoubles(b);
+			double[] column = new double[x.length];
+
+			for (int i = 0; i < column.length; i++)
+				column[i] = ColumnBatch.requireNumber(function.solve(Val.ofDouble(x[i]))).doubleValue();
+
+			return column;
+		}
+
+		@Override
+		BigFloat[] evaluateExact(ColumnBatch b)
+		{
+			BigFloat[] x = argument.evaluateExact(b);
+			BigFloat[] column = new BigFloat[x.length];
+
+			for (int i = 0; i < column.length; i++)
+				column[i] = ColumnBatch.requireNumber(function.solve(new Val(x[i]))).bigValue();
+
+			return column;
+		}
+
+		@Override
+		boolean isConstant()
+		{
+			return function.isPure() && argument.isConstant();
+		}
+
+		@Override
+		boolean generate(FormulaGenerator g)
+		{
+			DoubleUnaryOperator f = function.getDoubleFunction();
+			if (f == null)
+				return false;
+
+			g.beginFunction(f);
+			if (!g.write(argument))
+				return false;
+
+			g.endFunction();
+			return true;
+		}
+	}
+
+	/**
+	 * A list of values.
+	 *
+	 * @author TheDudeFromCI
+	 */
+	static class List extends EquationNode
+	{
+		private final EquationNode[] elements;
+
+		List(EquationNode[] elements)
+		{
+			this.elements = elements;
+		}
+
+		@Override
+		Val evaluate(Evaluation e)
+		{
+			Val[] values = new Val[elements.length];
+			for (int i = 0; i < values.length; i++)
+				values[i] = elements[i].evaluate(e);
+
+			return new Val(Val.LIST, values);
+		}
+	}
+}
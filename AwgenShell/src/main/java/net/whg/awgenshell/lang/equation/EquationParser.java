@@ -0,0 +1,236 @@
+package net.whg.awgenshell.lang.equation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parses a single equation string into a tree of equation nodes using
+ * recursive descent. A new parser is used for each equation.
+ *
+ * @author TheDudeFromCI
+ * @author Boann (https://stackoverflow.com/a/26227947/1610708)
+ */
+class EquationParser
+{
+	private static final int MAX_DOUBLE_DIGITS = 15;
+
+	private final EquationSolver solver;
+	private final EquationContext context;
+	private final String str;
+	private int pos;
+	private int ch;
+
+	/**
+	 * Creates a new equation parser.
+	 *
+	 * @param solver
+	 *     - The solver to look up functions from.
+	 * @param context
+	 *     - The precision to parse exact numbers and constants with.
+	 * @param str
+	 *     - The equation to parse.
+	 */
+	EquationParser(EquationSolver solver, EquationContext context, String str)
+	{
+		this.solver = solver;
+		this.context = context;
+		this.str = str;
+	}
+
+	/**
+	 * Parses the equation.
+	 *
+	 * @return The root node of the equation.
+	 * @throws EquationParserException
+	 *     - If the equation could not be parsed.
+	 */
+	EquationNode parse()
+	{
+		pos = -1;
+
+		nextChar();
+		EquationNode x = parseExpressionList();
+
+		if (pos < str.length())
+			throw new EquationParserException("Unexpected: " + (char) ch);
+
+		return x;
+	}
+
+	private void nextChar()
+	{
+		ch = ++pos < str.length() ? str.charAt(pos) : -1;
+	}
+
+	private boolean eat(int charToEat)
+	{
+		while (ch == ' ')
+			nextChar();
+
+		if (ch == charToEat)
+		{
+			nextChar();
+			return true;
+		}
+
+		return false;
+	}
+
+	private int peek()
+	{
+		return pos + 1 < str.length() ? str.charAt(pos + 1) : -1;
+	}
+
+	private EquationNode parseExpression()
+	{
+		EquationNode x = parseTerm();
+
+		while (true)
+		{
+			if (eat('+'))
+				x = new EquationNode.Operation(EquationNode.Operation.ADD, x, parseTerm());
+			else if (eat('-'))
+				x = new EquationNode.Operation(EquationNode.Operation.SUBTRACT, x, parseTerm());
+			else
+				return x;
+		}
+	}
+
+	private EquationNode parseTerm()
+	{
+		EquationNode x = parseFactor();
+
+		while (true)
+		{
+			if (eat('*'))
+				x = new EquationNode.Operation(EquationNode.Operation.MULTIPLY, x, parseFactor());
+			else if (eat('/'))
+				x = new EquationNode.Operation(EquationNode.Operation.DIVIDE, x, parseFactor());
+			else if (eat('%'))
+				x = new EquationNode.Operation(EquationNode.Operation.MODULUS, x, parseFactor());
+			else
+				return x;
+		}
+	}
+
+	private EquationNode parseExpressionList()
+	{
+		List<EquationNode> elements = new ArrayList<>();
+
+		do
+			elements.add(parseExpression());
+		while (eat(','));
+
+		if (elements.size() == 1)
+			return elements.get(0);
+
+		return new EquationNode.List(elements.toArray(new EquationNode[elements.size()]));
+	}
+
+	private EquationNode parseNumber(String numStr, boolean imaginary)
+	{
+		Val exact;
+		Val approximate;
+		try
+		{
+			exact = Val.valueOf(numStr, context);
+			approximate = Val.ofDouble(Double.parseDouble(numStr));
+		}
+		catch (NumberFormatException e)
+		{
+			throw new EquationParserException("Not a valid number: " + numStr);
+		}
+
+		if (imaginary)
+		{
+			exact = new Val(Val.COMPLEX_NUMBER, Val.ZERO, exact);
+			approximate = new Val(Val.COMPLEX_NUMBER, Val.ZERO, approximate);
+		}
+
+		int digits = 0;
+		for (int i = 0; i < numStr.length(); i++)
+			if (numStr.charAt(i) != '.' && (digits > 0 || numStr.charAt(i) != '0'))
+				digits++;
+
+		return new EquationNode.Literal(exact, approximate, digits <= MAX_DOUBLE_DIGITS);
+	}
+
+	private EquationNode parseFactor()
+	{
+		if (eat('+'))
+			return parseFactor();
+
+		if (eat('-'))
+			return new EquationNode.Negate(parseFactor());
+
+		EquationNode x;
+		int startPos = pos;
+
+		if (eat('('))
+		{
+			x = parseExpressionList();
+			eat(')');
+		}
+		else if (ch >= '0' && ch <= '9' || ch == '.')
+		{
+			while (ch >= '0' && ch <= '9' || ch == '.')
+				nextChar();
+
+			String numStr = str.substring(startPos, pos);
+
+			boolean imaginary = ch == 'i';
+			if (imaginary)
+				nextChar();
+
+			x = parseNumber(numStr, imaginary);
+		}
+		else if (ch == 'i' && !(peek() >= 'a' && peek() <= 'z' || peek() == '_'))
+		{
+			nextChar();
+			x = new EquationNode.Constant(Val.I_COMPLEX);
+		}
+		else if (ch >= 'a' && ch <= 'z' || ch == '_')
+		{
+			while (ch >= 'a' && ch <= 'z' || ch == '_')
+				nextChar();
+
+			String func = str.substring(startPos, pos);
+
+			if (func.equals("pi"))
+				x = new EquationNode.Literal(new Val(context.getPi()), Val.ofDouble(Math.PI), true);
+			else if (func.equals("e"))
+				x = new EquationNode.Literal(new Val(context.getE()), Val.ofDouble(Math.E), true);
+			else
+			{
+				x = parseFactor();
+
+				IEquationFunction function = solver.getFunction(func);
+				if (function != null)
+					x = new EquationNode.Function(function, solver.getMemo(function), x);
+				else
+					throw new EquationParserException("Unknown function: " + func);
+			}
+		}
+		else if (ch == '$')
+		{
+			nextChar();
+
+			if (!(ch >= 'a' && ch <= 'z' || ch >= 'A' && ch <= 'Z'))
+				throw new EquationParserException("Not a valid variable name!");
+
+			while (ch >= 'a' && ch <= 'z' || ch >= 'A' && ch <= 'Z' || ch >= '0' && ch <= '9' || ch == '_')
+				nextChar();
+
+			x = new EquationNode.Variable(str.substring(startPos + 1, pos));
+		}
+		else if (ch == -1)
+			throw new EquationParserException("Unexpected: End of Line");
+		else
+			throw new EquationParserException("Unexpected: '" + (char) ch + "'");
+
+		if (eat('^'))
+			x = new EquationNode.Operation(EquationNode.Operation.POWER, x, parseFactor());
+
+		return x;
+	}
+}
@@ -1,30 +1,63 @@
 package net.whg.awgenshell.lang.equation;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import ch.obermuhlner.math.big.BigFloat;
 
 /**
  * This class parses a string into a mathmatical equation and solves it.
  *
  * @author TheDudeFromCI
- * @author Boann (https://stackoverflow.com/a/26227947/1610708)
  */
 public class EquationSolver
 {
+	/**
+	 * The default number of elements a list or vector needs to contain before
+	 * element-wise operations on it are split across multiple threads.
+	 */
+	public static final int DEFAULT_PARALLEL_THRESHOLD = 10000;
+
+	/**
+	 * The default number of results which are remembered for each pure function.
+	 */
+	public static final int DEFAULT_MEMO_SIZE = 256;
+
+	/**
+	 * The default number of times an equation is solved in double precision
+	 * before it is generated into bytecode.
+	 */
+	public static final int DEFAULT_COMPILE_THRESHOLD = 1000;
+
 	private final ArrayList<IEquationFunction> functions = new ArrayList<>();
-	private String str;
-	private int pos;
-	private int ch;
+	private final Map<String, IEquationFunction> functionsByName = new HashMap<>();
+	private final Map<IEquationFunction, FunctionMemo> memos = new HashMap<>();
+	private int memoSize = DEFAULT_MEMO_SIZE;
+	private EquationMode mode = EquationMode.EXACT;
+	private volatile int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+	private volatile int compileThreshold = DEFAULT_COMPILE_THRESHOLD;
+	private EquationContext context = EquationContext.DEFAULT;
 
 	public EquationSolver()
 	{
 		addFunction(new CeilFunction());
 		addFunction(new ComplexFunction());
 		addFunction(new CosFunction());
+		addFunction(new DeterminantFunction());
 		addFunction(new FloorFunction());
+		addFunction(new InverseFunction());
+		addFunction(new MatrixFunction());
+		addFunction(new MaxFunction());
+		addFunction(new MeanFunction());
+		addFunction(new MinFunction());
 		addFunction(new RoundFunction());
 		addFunction(new SinFunction());
 		addFunction(new SqrtFunction());
+		addFunction(new SumFunction());
 		addFunction(new TanFunction());
+		addFunction(new TransposeFunction());
+		addFunction(new VarianceFunction());
 		addFunction(new VectorFunction());
 	}
 
@@ -43,6 +76,13 @@ public class EquationSolver
 			return;
 
 		functions.add(function);
+
+		String name = function.getName();
+		if (name != null)
+			functionsByName.putIfAbsent(name.toLowerCase(Locale.ROOT), function);
+
+		if (function.isPure())
+			memos.put(function, new FunctionMemo(function, memoSize));
 	}
 
 	/**
@@ -56,181 +96,354 @@ public class EquationSolver
 	 */
 	public IEquationFunction getFunction(String name)
 	{
-		for (IEquationFunction func : functions)
-			if (func.getName().equalsIgnoreCase(name))
-				return func;
-		return null;
+		IEquationFunction function = functionsByName.get(name);
+		if (function != null)
+			return function;
+
+		return functionsByName.get(name.toLowerCase(Locale.ROOT));
 	}
 
 	/**
-	 * Gets the number of functions currently within this solver.
+	 * Gets the memo which remembers the results of the function with the given
+	 * name, which can be used to check how often remembered results are used.
 	 *
-	 * @return The number of functions.
+	 * @param name
+	 *     - The name of the function.
+	 * @return The memo of the function, or null if there is no function with the
+	 *     given name, or the function is not pure.
+	 * @see IEquationFunction#isPure()
 	 */
-	public int getFunctionCount()
+	public FunctionMemo getMemo(String name)
 	{
-		return functions.size();
+		IEquationFunction function = getFunction(name);
+		return function == null ? null : memos.get(function);
 	}
 
 	/**
-	 * Parses the given string into a BigFloat representation.
+	 * Gets the memo which remembers the results of the given function.
 	 *
-	 * @param str
-	 *     - The string to parse and solve.
-	 * @return A list of BigFloats representing the answer. If the equation is
-	 *     seperated by commas, each section of the eqution is solved and returned.
-	 *     Useful for handling vector math.
-	 * @throws EquationParserException
-	 *     - If the given equation could not be parsed.
+	 * @param function
+	 *     - The function.
+	 * @return The memo of the function, or null if the function is not pure.
 	 */
-	public Val parse(String str)
+	FunctionMemo getMemo(IEquationFunction function)
 	{
-		this.str = str;
-		pos = -1;
+		return memos.get(function);
+	}
 
-		nextChar();
-		Val x = parseExpressionList();
+	/**
+	 * Gets the maximum number of results which are remembered for each pure
+	 * function.
+	 *
+	 * @return The memo size.
+	 */
+	public int getMemoSize()
+	{
+		return memoSize;
+	}
 
-		if (pos < str.length())
-			throw new EquationParserException("Unexpected: " + (char) ch);
+	/**
+	 * Sets the maximum number of results which are remembered for each pure
+	 * function. The least recently used results are forgotten first. This also
+	 * applies to equations which have already been compiled by this solver.
+	 * Defaults to {@link #DEFAULT_MEMO_SIZE}.
+	 *
+	 * @param memoSize
+	 *     - The new memo size. If 0, no results are remembered.
+	 * @throws IllegalArgumentException
+	 *     - If the memo size is negative.
+	 */
+	public void setMemoSize(int memoSize)
+	{
+		if (memoSize < 0)
+			throw new IllegalArgumentException("Memo size cannot be negative!");
 
-		return x;
+		this.memoSize = memoSize;
+
+		for (FunctionMemo memo : memos.values())
+			memo.setCapacity(memoSize);
 	}
 
-	private void nextChar()
+	/**
+	 * Gets the number of functions currently within this solver.
+	 *
+	 * @return The number of functions.
+	 */
+	public int getFunctionCount()
 	{
-		ch = ++pos < str.length() ? str.charAt(pos) : -1;
+		return functions.size();
 	}
 
-	private boolean eat(int charToEat)
+	/**
+	 * Gets the precision mode this solver uses by default.
+	 *
+	 * @return The default precision mode.
+	 */
+	public EquationMode getMode()
 	{
-		while (ch == ' ')
-			nextChar();
+		return mode;
+	}
 
-		if (ch == charToEat)
-		{
-			nextChar();
-			return true;
-		}
+	/**
+	 * Sets the precision mode this solver uses by default. Defaults to
+	 * {@link EquationMode#EXACT}.
+	 *
+	 * @param mode
+	 *     - The new default precision mode.
+	 */
+	public void setMode(EquationMode mode)
+	{
+		if (mode == null)
+			throw new IllegalArgumentException("Mode cannot be null!");
 
-		return false;
+		this.mode = mode;
 	}
 
-	private int peek()
+	/**
+	 * Gets the precision this solver uses for exact numbers.
+	 *
+	 * @return The precision context.
+	 */
+	public EquationContext getContext()
 	{
-		return pos + 1 < str.length() ? str.charAt(pos + 1) : -1;
+		return context;
 	}
 
-	private Val parseExpression()
+	/**
+	 * Gets the number of significant digits this solver uses for exact numbers.
+	 *
+	 * @return The precision.
+	 */
+	public int getPrecision()
 	{
-		Val x = parseTerm();
-
-		while (true)
-		{
-			if (eat('+'))
-				x = Val.add(x, parseTerm());
-			else if (eat('-'))
-				x = Val.sub(x, parseTerm());
-			else
-				return x;
-		}
+		return context.getPrecision();
 	}
 
-	private Val parseTerm()
+	/**
+	 * Sets the number of significant digits this solver uses for exact numbers.
+	 * Lower precisions are faster to solve. Only applies to equations which are
+	 * compiled afterwards. Defaults to {@link EquationContext#DEFAULT_PRECISION}.
+	 *
+	 * @param precision
+	 *     - The new precision.
+	 * @throws IllegalArgumentException
+	 *     - If the precision is less than 1.
+	 */
+	public void setPrecision(int precision)
 	{
-		Val x = parseFactor();
+		context = EquationContext.of(precision);
+	}
 
-		while (true)
-		{
-			if (eat('*'))
-				x = Val.mul(x, parseFactor());
-			else if (eat('/'))
-				x = Val.div(x, parseFactor());
-			else if (eat('%'))
-				x = Val.mod(x, parseFactor());
-			else
-				return x;
-		}
+	/**
+	 * Gets the number of elements a list or vector needs to contain before
+	 * element-wise operations on it are split across multiple threads.
+	 *
+	 * @return The parallel threshold.
+	 */
+	public int getParallelThreshold()
+	{
+		return parallelThreshold;
 	}
 
-	private Val parseExpressionList()
+	/**
+	 * Sets the number of elements a list or vector needs to contain before
+	 * element-wise operations on it, such as functions applied to each element or
+	 * adding two vectors, are split across the common fork-join pool. The results
+	 * are always assembled in order. This also applies to equations which have
+	 * already been compiled by this solver. Defaults to
+	 * {@link #DEFAULT_PARALLEL_THRESHOLD}.
+	 *
+	 * @param parallelThreshold
+	 *     - The new parallel threshold. Use Integer.MAX_VALUE to never evaluate in
+	 *     parallel.
+	 * @throws IllegalArgumentException
+	 *     - If the threshold is less than 1.
+	 */
+	public void setParallelThreshold(int parallelThreshold)
 	{
-		Val x = Val.EMPTY_LIST;
+		if (parallelThreshold < 1)
+			throw new IllegalArgumentException("Parallel threshold must be at least 1!");
 
-		do
-			x = Val.append(x, parseExpression());
-		while (eat(','));
+		this.parallelThreshold = parallelThreshold;
+	}
 
-		if (x.size == 1)
-			return x.get(0);
+	/**
+	 * Gets the number of times an equation is solved in double precision before it
+	 * is generated into bytecode.
+	 *
+	 * @return The compile threshold, or 0 if equations are never generated.
+	 */
+	public int getCompileThreshold()
+	{
+		return compileThreshold;
+	}
+
+	/**
+	 * Sets the number of times a compiled equation is solved in double precision
+	 * before it is generated into a JVM class, which solves the equation using
+	 * only primitive arithmetic, with its constant parts solved ahead of time.
+	 * Generated equations give the same answers as solving them normally. Only
+	 * equations made of numbers, variables, operators, and functions which have a
+	 * double precision function can be generated. This also applies to equations
+	 * which have already been compiled by this solver. Defaults to
+	 * {@link #DEFAULT_COMPILE_THRESHOLD}.
+	 *
+	 * @param compileThreshold
+	 *     - The new compile threshold. If 0, equations are never generated.
+	 * @throws IllegalArgumentException
+	 *     - If the threshold is negative.
+	 * @see IEquationFunction#getDoubleFunction()
+	 */
+	public void setCompileThreshold(int compileThreshold)
+	{
+		if (compileThreshold < 0)
+			throw new IllegalArgumentException("Compile threshold cannot be negative!");
 
-		return x;
+		this.compileThreshold = compileThreshold;
 	}
 
-	private Val parseFactor()
+	/**
+	 * Parses the given string into a BigFloat representation, using the default
+	 * precision mode of this solver.
+	 *
+	 * @param str
+	 *     - The string to parse and solve.
+	 * @return A list of BigFloats representing the answer. If the equation is
+	 *     seperated by commas, each section of the eqution is solved and returned.
+	 *     Useful for handling vector math.
+	 * @throws EquationParserException
+	 *     - If the given equation could not be parsed.
+	 */
+	public Val parse(String str)
 	{
-		if (eat('+'))
-			return parseFactor();
+		return parse(str, mode);
+	}
 
-		if (eat('-'))
-			return Val.mul(parseFactor(), Val.NEGATIVE_ONE);
+	/**
+	 * Parses the given string into a value, using the given precision mode.
+	 *
+	 * @param str
+	 *     - The string to parse and solve.
+	 * @param mode
+	 *     - The precision mode to solve the equation with.
+	 * @return The answer to the equation.
+	 * @throws EquationParserException
+	 *     - If the given equation could not be parsed.
+	 * @see #parse(String)
+	 */
+	public Val parse(String str, EquationMode mode)
+	{
+		return compile(str).evaluate(mode);
+	}
 
-		Val x;
-		int startPos = pos;
+	/**
+	 * Solves the given equation once for each row of the given columns in double
+	 * precision. This should be preferred over solving the same equation many
+	 * times with different variables.
+	 *
+	 * @param equation
+	 *     - The equation to solve.
+	 * @param columns
+	 *     - The columns of each variable, by variable name. All columns must have
+	 *     the same length.
+	 * @return The answer for each row.
+	 * @throws EquationParserException
+	 *     - If the equation could not be solved for any row.
+	 * @throws IllegalArgumentException
+	 *     - If the columns do not all have the same length.
+	 * @see CompiledEquation#evaluateColumns(Map)
+	 */
+	public double[] solveColumns(CompiledEquation equation, Map<String, double[]> columns)
+	{
+		return equation.evaluateColumns(columns);
+	}
 
-		if (eat('('))
-		{
-			x = parseExpressionList();
-			eat(')');
-		}
-		else if (ch >= '0' && ch <= '9' || ch == '.')
-		{
-			while (ch >= '0' && ch <= '9' || ch == '.')
-				nextChar();
+	/**
+	 * Solves the given equation once for each row of the given columns in double
+	 * precision. Variables which have no column are looked up from the given
+	 * bindings instead.
+	 *
+	 * @param equation
+	 *     - The equation to solve.
+	 * @param columns
+	 *     - The columns of each variable, by variable name. All columns must have
+	 *     the same length.
+	 * @param bindings
+	 *     - The bindings to look up variables which have no column from.
+	 * @return The answer for each row.
+	 * @throws EquationParserException
+	 *     - If the equation could not be solved for any row.
+	 * @throws IllegalArgumentException
+	 *     - If the columns do not all have the same length.
+	 * @see CompiledEquation#evaluateColumns(Map, EquationBindings)
+	 */
+	public double[] solveColumns(CompiledEquation equation, Map<String, double[]> columns,
+			EquationBindings bindings)
+	{
+		return equation.evaluateColumns(columns, bindings);
+	}
 
-			String numStr = str.substring(startPos, pos);
-			try
-			{
-				x = new Val(numStr);
-			}
-			catch (NumberFormatException e)
-			{
-				throw new EquationParserException("Not a valid number: " + numStr);
-			}
+	/**
+	 * Solves the given equation once for each row of the given columns in exact
+	 * precision.
+	 *
+	 * @param equation
+	 *     - The equation to solve.
+	 * @param columns
+	 *     - The columns of each variable, by variable name. All columns must have
+	 *     the same length.
+	 * @return The answer for each row.
+	 * @throws EquationParserException
+	 *     - If the equation could not be solved for any row.
+	 * @throws IllegalArgumentException
+	 *     - If the columns do not all have the same length.
+	 * @see CompiledEquation#evaluateExactColumns(Map)
+	 */
+	public BigFloat[] solveExactColumns(CompiledEquation equation, Map<String, BigFloat[]> columns)
+	{
+		return equation.evaluateExactColumns(columns);
+	}
 
-			if (ch == 'i')
-			{
-				nextChar();
-				x = new Val(Val.COMPLEX_NUMBER, Val.ZERO, x);
-			}
-		}
-		else if (ch == 'i' && !(peek() >= 'a' && peek() <= 'z' || peek() == '_'))
-		{
-			nextChar();
-			x = Val.I_COMPLEX;
-		}
-		else if (ch >= 'a' && ch <= 'z' || ch == '_')
-		{
-			while (ch >= 'a' && ch <= 'z' || ch == '_')
-				nextChar();
+	/**
+	 * Solves the given equation once for each row of the given columns in exact
+	 * precision. Variables which have no column are looked up from the given
+	 * bindings instead.
+	 *
+	 * @param equation
+	 *     - The equation to solve.
+	 * @param columns
+	 *     - The columns of each variable, by variable name. All columns must have
+	 *     the same length.
+	 * @param bindings
+	 *     - The bindings to look up variables which have no column from.
+	 * @return The answer for each row.
+	 * @throws EquationParserException
+	 *     - If the equation could not be solved for any row.
+	 * @throws IllegalArgumentException
+	 *     - If the columns do not all have the same length.
+	 * @see CompiledEquation#evaluateExactColumns(Map, EquationBindings)
+	 */
+	public BigFloat[] solveExactColumns(CompiledEquation equation, Map<String, BigFloat[]> columns,
+			EquationBindings bindings)
+	{
+		return equation.evaluateExactColumns(columns, bindings);
+	}
 
-			String func = str.substring(startPos, pos);
-			x = parseFactor();
-
-			IEquationFunction function = getFunction(func);
-			if (function != null)
-				x = function.solve(x);
-			else
-				throw new EquationParserException("Unknown function: " + func);
-		}
-		else if (ch == -1)
-			throw new EquationParserException("Unexpected: End of Line");
-		else
-			throw new EquationParserException("Unexpected: '" + (char) ch + "'");
-
-		if (eat('^'))
-			x = Val.pow(x, parseFactor());
-
-		return x;
+	/**
+	 * Parses the given string into a compiled equation, which can be solved any
+	 * number of times without being parsed again. Functions are resolved while
+	 * compiling, so functions added to this solver afterwards are not visible to
+	 * the compiled equation.
+	 *
+	 * @param str
+	 *     - The string to parse.
+	 * @return The compiled equation.
+	 * @throws EquationParserException
+	 *     - If the given equation could not be parsed.
+	 */
+	public CompiledEquation compile(String str)
+	{
+		EquationContext context = this.context;
+		return new CompiledEquation(this, context, str, new EquationParser(this, context, str).parse());
 	}
 }
@@ -0,0 +1,208 @@
+package net.whg.awgenshell.lang.equation;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+/**
+ * The state of a single evaluation of a compiled equation. Compiled equations
+ * are immutable, so everything which may change between evaluations is kept
+ * here instead.
+ *
+ * @author TheDudeFromCI
+ */
+class Evaluation
+{
+	/**
+	 * Thrown while solving an equation in adaptive mode if a double precision
+	 * value can no longer be trusted.
+	 *
+	 * @author TheDudeFromCI
+	 */
+	static class PrecisionLossException extends RuntimeException
+	{
+		private static final long serialVersionUID = 3614398526470419256L;
+
+		private PrecisionLossException()
+		{
+			super("Precision lost!", null, false, false);
+		}
+	}
+
+	static final PrecisionLossException PRECISION_LOSS = new PrecisionLossException();
+
+	private static final double MAX_EXACT_DOUBLE = 0x1p53;
+	private static final double CANCELLATION_LIMIT = 0x1p-20;
+
+	private final EquationMode mode;
+	private final EquationBindings bindings;
+	private final EquationContext context;
+	private final int parallelThreshold;
+
+	/**
+	 * Creates a new evaluation.
+	 *
+	 * @param mode
+	 *     - The precision mode to evaluate with. Adaptive evaluations are solved in
+	 *     double precision, with every value being verified.
+	 * @param bindings
+	 *     - The bindings to look up variables from.
+	 * @param context
+	 *     - The precision to create exact numbers with.
+	 * @param parallelThreshold
+	 *     - The number of elements a list or vector needs to contain before
+	 *     element-wise operations on it are evaluated in parallel.
+	 */
+	Evaluation(EquationMode mode, EquationBindings bindings, EquationContext context, int parallelThreshold)
+	{
+		this.mode = mode;
+		this.bindings = bindings;
+		this.context = context;
+		this.parallelThreshold = parallelThreshold;
+	}
+
+	/**
+	 * Gets the precision mode of this evaluation.
+	 *
+	 * @return The precision mode.
+	 */
+	EquationMode getMode()
+	{
+		return mode;
+	}
+
+	/**
+	 * Gets the bindings variables are looked up from.
+	 *
+	 * @return The variable bindings.
+	 */
+	EquationBindings getBindings()
+	{
+		return bindings;
+	}
+
+	/**
+	 * Gets the precision exact numbers are created with.
+	 *
+	 * @return The precision context.
+	 */
+	EquationContext getContext()
+	{
+		return context;
+	}
+
+	/**
+	 * Checks if element-wise operations on the given value should be evaluated in
+	 * parallel.
+	 *
+	 * @param x
+	 *     - The value to check.
+	 * @return True if the value is a list or vector with at least as many elements
+	 *     as the parallel threshold, false otherwise.
+	 */
+	boolean isParallel(Val x)
+	{
+		return (x.type == Val.LIST || x.type == Val.VECTOR) && x.size >= parallelThreshold;
+	}
+
+	/**
+	 * Evaluates each element of a list or vector on the common fork-join pool.
+	 *
+	 * @param size
+	 *     - The number of elements.
+	 * @param element
+	 *     - The function which evaluates the element at the given index.
+	 * @return The evaluated elements, in order.
+	 */
+	Val[] parallel(int size, IntFunction<Val> element)
+	{
+		Val[] elements = new Val[size];
+		AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+		// Failures are rethrown as is, as the pool would otherwise wrap exceptions
+		// thrown by other threads.
+		IntStream.range(0, size).parallel().forEach(i ->
+		{
+			if (failure.get() != null)
+				return;
+
+			try
+			{
+				elements[i] = element.apply(i);
+			}
+			catch (RuntimeException e)
+			{
+				failure.compareAndSet(null, e);
+			}
+		});
+
+		if (failure.get() != null)
+			throw failure.get();
+
+		return elements;
+	}
+
+	/**
+	 * Checks if the given value can still be trusted while solving in adaptive
+	 * mode.
+	 *
+	 * @param x
+	 *     - The value to check.
+	 * @return The given value.
+	 * @throws PrecisionLossException
+	 *     - If the value can not be trusted.
+	 */
+	Val verify(Val x)
+	{
+		if (mode == EquationMode.ADAPTIVE && !isPrecise(x))
+			throw PRECISION_LOSS;
+
+		return x;
+	}
+
+	/**
+	 * Same as {@link #verify(Val)}, but also checks if the given sum or
+	 * difference cancelled out most of the precision of its operands.
+	 *
+	 * @param x
+	 *     - The result of the sum.
+	 * @param a
+	 *     - The first operand.
+	 * @param b
+	 *     - The second operand.
+	 * @return The result of the sum.
+	 * @throws PrecisionLossException
+	 *     - If the value can not be trusted.
+	 */
+	Val verifySum(Val x, Val a, Val b)
+	{
+		if (mode == EquationMode.ADAPTIVE && !x.isExact() && a.type == Val.NUMBER && b.type == Val.NUMBER)
+		{
+			double result = Math.abs(x.doubleValue());
+			double operands = Math.max(Math.abs(a.doubleValue()), Math.abs(b.doubleValue()));
+
+			if (result != 0 && result < operands * CANCELLATION_LIMIT)
+				throw PRECISION_LOSS;
+		}
+
+		return verify(x);
+	}
+
+	private static boolean isPrecise(Val x)
+	{
+		if (x.type != Val.NUMBER)
+		{
+			for (int i = 0; i < x.size; i++)
+				if (!isPrecise(x.get(i)))
+					return false;
+
+			return true;
+		}
+
+		if (x.isExact())
+			return true;
+
+		double d = Math.abs(x.doubleValue());
+		return d == 0 || d >= Double.MIN_NORMAL && d <= MAX_EXACT_DOUBLE;
+	}
+}
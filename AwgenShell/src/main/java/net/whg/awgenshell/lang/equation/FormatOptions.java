@@ -0,0 +1,108 @@
+package net.whg.awgenshell.lang.equation;
+
+/**
+ * An immutable set of options describing how values are formatted into text.
+ *
+ * @author TheDudeFromCI
+ * @see Val#formatTo(Appendable, FormatOptions)
+ */
+public final class FormatOptions
+{
+	/**
+	 * The default options. Numbers are written without commas, with their full
+	 * precision, in plain notation unless they are very large or very small.
+	 */
+	public static final FormatOptions DEFAULT = new FormatOptions(false, 0, false);
+
+	/**
+	 * The default options, with commas inserted after every three digits.
+	 */
+	public static final FormatOptions COMMAS = new FormatOptions(true, 0, false);
+
+	private final boolean commas;
+	private final int precision;
+	private final boolean scientific;
+
+	private FormatOptions(boolean commas, int precision, boolean scientific)
+	{
+		this.commas = commas;
+		this.precision = precision;
+		this.scientific = scientific;
+	}
+
+	/**
+	 * Checks whether commas are inserted after every three digits of the integer
+	 * part of a number.
+	 *
+	 * @return True if commas are inserted, false otherwise.
+	 */
+	public boolean hasCommas()
+	{
+		return commas;
+	}
+
+	/**
+	 * Gets the number of significant digits numbers are rounded to.
+	 *
+	 * @return The number of significant digits, or 0 if numbers are written with
+	 *     their full precision.
+	 */
+	public int getPrecision()
+	{
+		return precision;
+	}
+
+	/**
+	 * Checks whether numbers are always written in scientific notation.
+	 *
+	 * @return True if numbers are written in scientific notation, false
+	 *     otherwise.
+	 */
+	public boolean isScientific()
+	{
+		return scientific;
+	}
+
+	/**
+	 * Creates a copy of these options with the given comma setting.
+	 *
+	 * @param commas
+	 *     - Whether or not commas should be inserted after every three digits.
+	 * @return The new options.
+	 */
+	public FormatOptions withCommas(boolean commas)
+	{
+		return new FormatOptions(commas, precision, scientific);
+	}
+
+	/**
+	 * Creates a copy of these options with the given precision.
+	 *
+	 * @param precision
+	 *     - The number of significant digits numbers are rounded to, or 0 to write
+	 *     numbers with their full precision.
+	 * @return The new options.
+	 * @throws IllegalArgumentException
+	 *     - If the precision is negative.
+	 */
+	public FormatOptions withPrecision(int precision)
+	{
+		if (precision < 0)
+			throw new IllegalArgumentException("Precision cannot be negative!");
+
+		return new FormatOptions(commas, precision, scientific);
+	}
+
+	/**
+	 * Creates a copy of these options with the given notation.
+	 *
+	 * @param scientific
+	 *     - Whether or not numbers should always be written in scientific
+	 *     notation.
+	 * @return The new options.
+	 */
+	public FormatOptions withScientific(boolean scientific)
+	{
+		return new FormatOptions(commas, precision, scientific);
+	}
+}
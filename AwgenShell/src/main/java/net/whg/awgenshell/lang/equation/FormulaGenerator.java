@@ -0,0 +1,509 @@
+package net.whg.awgenshell.lang.equation;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Generates a JVM class which solves a compiled equation in double precision.
+ * The generated class implements <code>ToDoubleFunction&lt;double[]&gt;</code>,
+ * taking the value of each variable and returning the answer, using only
+ * primitive arithmetic. Parts of the equation which do not depend on any
+ * variable, including pure functions of constants, are solved once while
+ * generating and written as a single constant. Other functions are called
+ * through their double precision function. <br>
+ * <br>
+ * The generated code contains no branches, so the class file needs no stack
+ * map frames, and can be written directly without a bytecode library.
+ *
+ * @author TheDudeFromCI
+ * @see IEquationFunction#getDoubleFunction()
+ */
+final class FormulaGenerator
+{
+	private static final String PACKAGE = "net/whg/awgenshell/lang/equation/generated/";
+	private static final String FUNCTIONS_DESCRIPTOR = "[Ljava/util/function/DoubleUnaryOperator;";
+	private static final AtomicInteger NEXT_ID = new AtomicInteger();
+
+	private static final int ALOAD_0 = 0x2a;
+	private static final int ALOAD_1 = 0x2b;
+	private static final int ALOAD_2 = 0x2c;
+	private static final int ASTORE_2 = 0x4d;
+	private static final int ICONST_0 = 0x03;
+	private static final int BIPUSH = 0x10;
+	private static final int SIPUSH = 0x11;
+	private static final int LDC_W = 0x13;
+	private static final int LDC2_W = 0x14;
+	private static final int DALOAD = 0x31;
+	private static final int AALOAD = 0x32;
+	private static final int DADD = 0x63;
+	private static final int DSUB = 0x67;
+	private static final int DMUL = 0x6b;
+	private static final int DDIV = 0x6f;
+	private static final int DREM = 0x73;
+	private static final int DNEG = 0x77;
+	private static final int DRETURN = 0xaf;
+	private static final int RETURN = 0xb1;
+	private static final int GETFIELD = 0xb4;
+	private static final int PUTFIELD = 0xb5;
+	private static final int INVOKESPECIAL = 0xb7;
+	private static final int INVOKESTATIC = 0xb8;
+	private static final int INVOKEINTERFACE = 0xb9;
+	private static final int CHECKCAST = 0xc0;
+
+	private static final int CONSTANT_UTF8 = 1;
+	private static final int CONSTANT_INTEGER = 3;
+	private static final int CONSTANT_DOUBLE = 6;
+	private static final int CONSTANT_CLASS = 7;
+	private static final int CONSTANT_FIELD = 9;
+	private static final int CONSTANT_METHOD = 10;
+	private static final int CONSTANT_INTERFACE_METHOD = 11;
+	private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+	/**
+	 * Generates a class for the given equation.
+	 *
+	 * @param root
+	 *     - The root node of the equation.
+	 * @param constants
+	 *     - The evaluation used to solve the constant parts of the equation. Must
+	 *     be in double precision, with no bindings.
+	 * @return The generated formula, or null if the equation can not be solved
+	 *     using only double precision numbers.
+	 */
+	static GeneratedFormula generate(EquationNode root, Evaluation constants)
+	{
+		// Equations without variables are always solved the same way, and are
+		// left to the interpreter so their answers keep their precision.
+		if (root.isConstant())
+			return null;
+
+		FormulaGenerator g = new FormulaGenerator(constants);
+		if (!g.write(root))
+			return null;
+
+		try
+		{
+			Class<?> type = new Loader().define(g.className.replace('/', '.'), g.toClassFile());
+			DoubleUnaryOperator[] functions = g.functions.toArray(new DoubleUnaryOperator[g.functions.size()]);
+
+			@SuppressWarnings("unchecked")
+			ToDoubleFunction<double[]> function = (ToDoubleFunction<double[]>) type
+					.getConstructor(DoubleUnaryOperator[].class).newInstance((Object) functions);
+
+			return new GeneratedFormula(g.variables.toArray(new String[g.variables.size()]), function);
+		}
+		catch (ReflectiveOperationException | LinkageError | IllegalStateException e)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * Defines each generated class within its own class loader, so the class can
+	 * be unloaded along with its equation.
+	 *
+	 * @author TheDudeFromCI
+	 */
+	private static class Loader extends ClassLoader
+	{
+		private Loader()
+		{
+			super(FormulaGenerator.class.getClassLoader());
+		}
+
+		private Class<?> define(String name, byte[] bytes)
+		{
+			return defineClass(name, bytes, 0, bytes.length);
+		}
+	}
+
+	private final Evaluation constants;
+	private final String className = PACKAGE + "Formula" + NEXT_ID.incrementAndGet();
+	private final List<String> variables = new ArrayList<>();
+	private final List<DoubleUnaryOperator> functions = new ArrayList<>();
+	private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+	private final Map<String, Integer> poolIndices = new HashMap<>();
+	private final ByteArrayOutputStream code = new ByteArrayOutputStream();
+	private int poolSize = 1;
+	private int stack;
+	private int maxStack;
+
+	private FormulaGenerator(Evaluation constants)
+	{
+		this.constants = constants;
+	}
+
+	/**
+	 * Writes the instructions which solve the given node, leaving the answer on
+	 * the stack. Constant nodes are solved right away.
+	 *
+	 * @param node
+	 *     - The node to write.
+	 * @return True if the node was written, false if the node can not be solved
+	 *     using only double precision numbers.
+	 */
+	boolean write(EquationNode node)
+	{
+		if (!node.isConstant())
+			return node.generate(this);
+
+		Val v;
+		try
+		{
+			v = node.evaluate(constants);
+		}
+		catch (EquationParserException e)
+		{
+			return false;
+		}
+
+		if (v.type != Val.NUMBER)
+			return false;
+
+		op(LDC2_W);
+		u2(code, doubleConstant(v.doubleValue()));
+		push(2);
+		return true;
+	}
+
+	/**
+	 * Writes the instructions which load the value of a variable.
+	 *
+	 * @param name
+	 *     - The name of the variable.
+	 */
+	void variable(String name)
+	{
+		int index = variables.indexOf(name);
+		if (index == -1)
+		{
+			index = variables.size();
+			variables.add(name);
+		}
+
+		op(ALOAD_2);
+		push(1);
+		pushInt(index);
+		op(DALOAD);
+		push(-2);
+		push(2);
+	}
+
+	/**
+	 * Writes the instruction which negates the number on the stack.
+	 */
+	void negate()
+	{
+		op(DNEG);
+	}
+
+	/**
+	 * Writes the instructions which apply an operation to the two numbers on the
+	 * stack.
+	 *
+	 * @param operator
+	 *     - The operator, as defined within {@link EquationNode.Operation}.
+	 */
+	void operation(int operator)
+	{
+		switch (operator)
+		{
+			case EquationNode.Operation.ADD:
+				op(DADD);
+				break;
+
+			case EquationNode.Operation.SUBTRACT:
+				op(DSUB);
+				break;
+
+			case EquationNode.Operation.MULTIPLY:
+				op(DMUL);
+				break;
+
+			case EquationNode.Operation.DIVIDE:
+				op(DDIV);
+				break;
+
+			case EquationNode.Operation.MODULUS:
+				op(DREM);
+				break;
+
+			default:
+				op(INVOKESTATIC);
+				u2(code, member(CONSTANT_METHOD, "java/lang/Math", "pow", "(DD)D"));
+				break;
+		}
+
+		push(-2);
+	}
+
+	/**
+	 * Writes the instructions which load a function, before its argument is
+	 * written.
+	 *
+	 * @param function
+	 *     - The function to call.
+	 */
+	void beginFunction(DoubleUnaryOperator function)
+	{
+		op(ALOAD_0);
+		push(1);
+		op(GETFIELD);
+		u2(code, member(CONSTANT_FIELD, className, "functions", FUNCTIONS_DESCRIPTOR));
+
+		pushInt(functions.size());
+		functions.add(function);
+
+		op(AALOAD);
+		push(-1);
+	}
+
+	/**
+	 * Writes the instructions which call the function loaded by
+	 * {@link #beginFunction(DoubleUnaryOperator)} with the argument on the stack.
+	 */
+	void endFunction()
+	{
+		op(INVOKEINTERFACE);
+		u2(code, member(CONSTANT_INTERFACE_METHOD, "java/util/function/DoubleUnaryOperator", "applyAsDouble",
+				"(D)D"));
+		code.write(3);
+		code.write(0);
+		push(-1);
+	}
+
+	private void pushInt(int value)
+	{
+		if (value <= 5)
+			op(ICONST_0 + value);
+		else if (value <= Byte.MAX_VALUE)
+		{
+			op(BIPUSH);
+			code.write(value);
+		}
+		else if (value <= Short.MAX_VALUE)
+		{
+			op(SIPUSH);
+			u2(code, value);
+		}
+		else
+		{
+			op(LDC_W);
+			u2(code, intConstant(value));
+		}
+
+		push(1);
+	}
+
+	private void op(int opcode)
+	{
+		code.write(opcode);
+	}
+
+	private void push(int slots)
+	{
+		stack += slots;
+		maxStack = Math.max(maxStack, stack);
+	}
+
+	private byte[] toClassFile()
+	{
+		int thisClass = classConstant(className);
+		int superClass = classConstant("java/lang/Object");
+		int interfaceClass = classConstant("java/util/function/ToDoubleFunction");
+		int codeName = utf8("Code");
+
+		// double applyAsDouble(Object variables)
+		ByteArrayOutputStream apply = new ByteArrayOutputStream();
+		apply.write(ALOAD_1);
+		apply.write(CHECKCAST);
+		u2(apply, classConstant("[D"));
+		apply.write(ASTORE_2);
+		byte[] body = code.toByteArray();
+		apply.write(body, 0, body.length);
+		apply.write(DRETURN);
+
+		// Constructor(DoubleUnaryOperator[] functions)
+		ByteArrayOutputStream init = new ByteArrayOutputStream();
+		init.write(ALOAD_0);
+		init.write(INVOKESPECIAL);
+		u2(init, member(CONSTANT_METHOD, "java/lang/Object", "<init>", "()V"));
+		init.write(ALOAD_0);
+		init.write(ALOAD_1);
+		init.write(PUTFIELD);
+		u2(init, member(CONSTANT_FIELD, className, "functions", FUNCTIONS_DESCRIPTOR));
+		init.write(RETURN);
+
+		int initName = utf8("<init>");
+		int initDescriptor = utf8("(" + FUNCTIONS_DESCRIPTOR + ")V");
+		int applyName = utf8("applyAsDouble");
+		int applyDescriptor = utf8("(Ljava/lang/Object;)D");
+		int fieldName = utf8("functions");
+		int fieldDescriptor = utf8(FUNCTIONS_DESCRIPTOR);
+
+		if (poolSize > 0xffff || apply.size() > 0xffff)
+			throw new IllegalStateException("Equation is too large to generate!");
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		u4(out, 0xcafebabe);
+		u2(out, 0); // Minor version
+		u2(out, 52); // Java 8
+		u2(out, poolSize);
+		byte[] constants = pool.toByteArray();
+		out.write(constants, 0, constants.length);
+
+		u2(out, 0x0031); // Public, final, super
+		u2(out, thisClass);
+		u2(out, superClass);
+		u2(out, 1);
+		u2(out, interfaceClass);
+
+		u2(out, 1);
+		u2(out, 0x0012); // Private, final
+		u2(out, fieldName);
+		u2(out, fieldDescriptor);
+		u2(out, 0);
+
+		u2(out, 2);
+		method(out, initName, initDescriptor, codeName, 2, 2, init.toByteArray());
+		method(out, applyName, applyDescriptor, codeName, Math.max(maxStack, 1), 3, apply.toByteArray());
+
+		u2(out, 0);
+		return out.toByteArray();
+	}
+
+	private static void method(ByteArrayOutputStream out, int name, int descriptor, int codeName, int maxStack,
+			int maxLocals, byte[] code)
+	{
+		u2(out, 0x0001); // Public
+		u2(out, name);
+		u2(out, descriptor);
+		u2(out, 1);
+
+		u2(out, codeName);
+		u4(out, 12 + code.length);
+		u2(out, maxStack);
+		u2(out, maxLocals);
+		u4(out, code.length);
+		out.write(code, 0, code.length);
+		u2(out, 0); // Exception table
+		u2(out, 0); // Attributes
+	}
+
+	private int utf8(String value)
+	{
+		Integer index = poolIndices.get("U" + value);
+		if (index != null)
+			return index;
+
+		// All names written here are ASCII, which is the same in modified UTF-8.
+		pool.write(CONSTANT_UTF8);
+		u2(pool, value.length());
+		for (int i = 0; i < value.length(); i++)
+			pool.write(value.charAt(i));
+
+		return addConstant("U" + value, 1);
+	}
+
+	private int classConstant(String name)
+	{
+		Integer index = poolIndices.get("C" + name);
+		if (index != null)
+			return index;
+
+		int nameIndex = utf8(name);
+		pool.write(CONSTANT_CLASS);
+		u2(pool, nameIndex);
+
+		return addConstant("C" + name, 1);
+	}
+
+	private int intConstant(int value)
+	{
+		Integer index = poolIndices.get("I" + value);
+		if (index != null)
+			return index;
+
+		pool.write(CONSTANT_INTEGER);
+		u4(pool, value);
+
+		return addConstant("I" + value, 1);
+	}
+
+	private int doubleConstant(double value)
+	{
+		long bits = Double.doubleToRawLongBits(value);
+		Integer index = poolIndices.get("D" + bits);
+		if (index != null)
+			return index;
+
+		pool.write(CONSTANT_DOUBLE);
+		u4(pool, (int) (bits >>> 32));
+		u4(pool, (int) bits);
+
+		// Doubles take up two entries within the constant pool.
+		return addConstant("D" + bits, 2);
+	}
+
+	private int member(int tag, String owner, String name, String descriptor)
+	{
+		String key = "M" + tag + owner + "." + name + descriptor;
+		Integer index = poolIndices.get(key);
+		if (index != null)
+			return index;
+
+		int ownerIndex = classConstant(owner);
+		int nameAndType = nameAndType(name, descriptor);
+
+		pool.write(tag);
+		u2(pool, ownerIndex);
+		u2(pool, nameAndType);
+
+		return addConstant(key, 1);
+	}
+
+	private int nameAndType(String name, String descriptor)
+	{
+		String key = "N" + name + descriptor;
+		Integer index = poolIndices.get(key);
+		if (index != null)
+			return index;
+
+		int nameIndex = utf8(name);
+		int descriptorIndex = utf8(descriptor);
+
+		pool.write(CONSTANT_NAME_AND_TYPE);
+		u2(pool, nameIndex);
+		u2(pool, descriptorIndex);
+
+		return addConstant(key, 1);
+	}
+
+	private int addConstant(String key, int entries)
+	{
+		int index = poolSize;
+		poolIndices.put(key, index);
+		poolSize += entries;
+		return index;
+	}
+
+	private static void u2(ByteArrayOutputStream out, int value)
+	{
+		out.write(value >>> 8);
+		out.write(value);
+	}
+
+	private static void u4(ByteArrayOutputStream out, int value)
+	{
+		out.write(value >>> 24);
+		out.write(value >>> 16);
+		out.write(value >>> 8);
+		out.write(value);
+	}
+}
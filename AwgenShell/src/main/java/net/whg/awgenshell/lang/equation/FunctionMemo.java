@@ -0,0 +1,221 @@
+package net.whg.awgenshell.lang.equation;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of the most recently used results of a single pure equation
+ * function. Results are remembered by argument and precision, so the same
+ * argument solved with a different precision is solved again. Only number
+ * arguments are remembered, all other arguments are always solved.
+ *
+ * @author TheDudeFromCI
+ * @see IEquationFunction#isPure()
+ */
+public class FunctionMemo
+{
+	/**
+	 * A number argument, along with the precision it is stored with.
+	 *
+	 * @author TheDudeFromCI
+	 */
+	private static class Key
+	{
+		private final Val argument;
+		private final int precision;
+
+		private Key(Val argument)
+		{
+			this.argument = argument;
+
+			if (!argument.isExact())
+				precision = -1;
+			else if (argument.value == null)
+				precision = 0;
+			else
+				precision = argument.value.getContext().getPrecision();
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return argument.hashCode() * 31 + precision;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (!(obj instanceof Key))
+				return false;
+
+			Key other = (Key) obj;
+			return precision == other.precision && argument.equals(other.argument);
+		}
+	}
+
+	private final IEquationFunction function;
+	private final Map<Key, Val> results;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private volatile int capacity;
+
+	/**
+	 * Creates a new function memo.
+	 *
+	 * @param function
+	 *     - The function to remember the results of.
+	 * @param capacity
+	 *     - The maximum number of results to remember.
+	 */
+	FunctionMemo(IEquationFunction function, int capacity)
+	{
+		this.function = function;
+		this.capacity = capacity;
+
+		results = new LinkedHashMap<Key, Val>(16, 0.75f, true)
+		{
+			private static final long serialVersionUID = -2416330734522951283L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Val> eldest)
+			{
+				return size() > FunctionMemo.this.capacity;
+			}
+		};
+	}
+
+	/**
+	 * Solves the function for the given argument, or returns the remembered
+	 * result if this argument was solved recently.
+	 *
+	 * @param x
+	 *     - The argument.
+	 * @return The result of the function.
+	 * @throws EquationParserException
+	 *     - If the function could not be solved for the given argument.
+	 */
+	Val solve(Val x)
+	{
+		if (capacity == 0 || x.type != Val.NUMBER)
+			return function.solve(x);
+
+		Key key = new Key(x);
+		Val result;
+
+		synchronized (results)
+		{
+			result = results.get(key);
+		}
+
+		if (result != null)
+		{
+			hits.increment();
+			return result;
+		}
+
+		misses.increment();
+		result = function.solve(x);
+
+		synchronized (results)
+		{
+			results.put(key, result);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Gets the function this memo remembers the results of.
+	 *
+	 * @return The function.
+	 */
+	public IEquationFunction getFunction()
+	{
+		return function;
+	}
+
+	/**
+	 * Gets the maximum number of results this memo remembers.
+	 *
+	 * @return The capacity.
+	 */
+	public int getCapacity()
+	{
+		return capacity;
+	}
+
+	/**
+	 * Sets the maximum number of results this memo remembers. If the new capacity
+	 * is smaller, all remembered results are forgotten.
+	 *
+	 * @param capacity
+	 *     - The new capacity. If 0, no results are remembered.
+	 */
+	void setCapacity(int capacity)
+	{
+		int old = this.capacity;
+		this.capacity = capacity;
+
+		if (capacity < old)
+			clear();
+	}
+
+	/**
+	 * Gets the number of results currently remembered.
+	 *
+	 * @return The number of results.
+	 */
+	public int getSize()
+	{
+		synchronized (results)
+		{
+			return results.size();
+		}
+	}
+
+	/**
+	 * Gets the number of times a remembered result was used.
+	 *
+	 * @return The number of hits.
+	 */
+	public long getHits()
+	{
+		return hits.sum();
+	}
+
+	/**
+	 * Gets the number of times the function had to be solved, as no result was
+	 * remembered for the argument.
+	 *
+	 * @return The number of misses.
+	 */
+	public long getMisses()
+	{
+		return misses.sum();
+	}
+
+	/**
+	 * Gets the fraction of lookups which used a remembered result.
+	 *
+	 * @return The hit rate, between 0 and 1, or 0 if nothing has been looked up
+	 *     yet.
+	 */
+	public double getHitRate()
+	{
+		long h = hits.sum();
+		long total = h + misses.sum();
+		return total == 0 ? 0 : (double) h / total;
+	}
+
+	/**
+	 * Forgets all remembered results. Does not reset the hit and miss counters.
+	 */
+	public void clear()
+	{
+		synchronized (results)
+		{
+			results.clear();
+		}
+	}
+}
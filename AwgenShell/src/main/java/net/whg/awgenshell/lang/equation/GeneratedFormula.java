@@ -0,0 +1,54 @@
+package net.whg.awgenshell.lang.equation;
+
+import java.util.function.ToDoubleFunction;
+
+/**
+ * A compiled equation which has been generated into a JVM class, which solves
+ * the equation in double precision.
+ *
+ * @author TheDudeFromCI
+ * @see FormulaGenerator
+ */
+final class GeneratedFormula
+{
+	private final String[] variables;
+	private final ToDoubleFunction<double[]> function;
+
+	/**
+	 * Creates a new generated formula.
+	 *
+	 * @param variables
+	 *     - The names of the variables, in the order the generated function takes
+	 *     them.
+	 * @param function
+	 *     - The generated function.
+	 */
+	GeneratedFormula(String[] variables, ToDoubleFunction<double[]> function)
+	{
+		this.variables = variables;
+		this.function = function;
+	}
+
+	/**
+	 * Solves this formula.
+	 *
+	 * @param bindings
+	 *     - The bindings to look up variables from.
+	 * @return The answer, or null if a variable is missing or is not a number, in
+	 *     which case the equation should be evaluated normally instead.
+	 */
+	Val evaluate(EquationBindings bindings)
+	{
+		double[] values = new double[variables.length];
+		for (int i = 0; i < values.length; i++)
+		{
+			Val v = bindings.getValue(variables[i], false);
+			if (v == null || v.type != Val.NUMBER)
+				return null;
+
+			values[i] = v.doubleValue();
+		}
+
+		return Val.ofDouble(function.applyAsDouble(values));
+	}
+}
@@ -0,0 +1,34 @@
+package net.whg.awgenshell.lang.equation;
+
+/**
+ * An equation function which reduces a list, vector, or matrix of real numbers
+ * to a single number, such as their sum. The numbers are read in a single pass
+ * without being kept. When the argument of an aggregate function is a variable,
+ * the equation bindings may stream the numbers of that variable into the
+ * aggregate directly, without creating a list value first.
+ *
+ * @author TheDudeFromCI
+ * @see EquationBindings#aggregate(String, boolean, Aggregate)
+ */
+public interface IAggregateFunction extends IEquationFunction
+{
+	/**
+	 * Gets the result of this function from an aggregate of all numbers within
+	 * the argument.
+	 *
+	 * @param aggregate
+	 *     - The aggregate.
+	 * @return The result.
+	 * @throws EquationParserException
+	 *     - If the aggregate does not contain enough numbers.
+	 */
+	Val result(Aggregate aggregate);
+
+	@Override
+	default Val solve(Val x)
+	{
+		Aggregate aggregate = new Aggregate();
+		aggregate.add(x);
+		return result(aggregate);
+	}
+}
@@ -1,5 +1,7 @@
 package net.whg.awgenshell.lang.equation;
 
+import java.util.function.DoubleUnaryOperator;
+
 /**
  * This interface represents an equation function which takes an input and
  * calculates an output.
@@ -26,4 +28,48 @@ public interface IEquationFunction
 	 *     - If an incorrect input is given.
 	 */
 	Val solve(Val x);
+
+	/**
+	 * Checks if this function is applied to each element of a list or vector
+	 * independently, where solving a list gives the same result as solving each
+	 * element on its own. Element-wise functions may be solved in parallel for
+	 * large lists and vectors. Defaults to false.
+	 *
+	 * @return True if this function is element-wise, false otherwise.
+	 */
+	default boolean isElementWise()
+	{
+		return false;
+	}
+
+	/**
+	 * Checks if this function is pure, where solving the same argument with the
+	 * same precision always gives the same result. Equation solvers remember the
+	 * most recent results of pure functions, so functions which are cheap to
+	 * solve should not declare themselves pure, as looking up a result would cost
+	 * more than solving it again. Defaults to false.
+	 *
+	 * @return True if the results of this function may be remembered, false
+	 *     otherwise.
+	 * @see EquationSolver#setMemoSize(int)
+	 */
+	default boolean isPure()
+	{
+		return false;
+	}
+
+	/**
+	 * Gets this function as a primitive double function, which must give the same
+	 * result as solving a double precision number. Equations which are solved
+	 * often in double precision are generated into bytecode which calls this
+	 * function directly. Defaults to null, in which case equations calling this
+	 * function are never generated.
+	 *
+	 * @return The double precision function, or null if there is none.
+	 * @see EquationSolver#setCompileThreshold(int)
+	 */
+	default DoubleUnaryOperator getDoubleFunction()
+	{
+		return null;
+	}
 }
@@ -0,0 +1,16 @@
+package net.whg.awgenshell.lang.equation;
+
+public class InverseFunction implements IEquationFunction
+{
+	@Override
+	public String getName()
+	{
+		return "inv";
+	}
+
+	@Override
+	public Val solve(Val x)
+	{
+		return Val.inverse(x);
+	}
+}
@@ -0,0 +1,42 @@
+package net.whg.awgenshell.lang.equation;
+
+public class MatrixFunction implements IEquationFunction
+{
+	@Override
+	public String getName()
+	{
+		return "m";
+	}
+
+	@Override
+	public Val solve(Val x)
+	{
+		if (x.type == Val.MATRIX)
+			return x;
+
+		if (x.type == Val.VECTOR)
+			x = new Val(Val.LIST, x);
+
+		if (x.type != Val.LIST || x.size == 0)
+			throw new EquationParserException("Matrices may only be created from vectors of real numbers!");
+
+		int rows = x.size;
+		int columns = x.get(0).size;
+
+		Val[] cells = new Val[rows * columns];
+		for (int i = 0; i < rows; i++)
+		{
+			Val row = x.get(i);
+			if (row.type != Val.VECTOR || row.get(0).type != Val.NUMBER)
+				throw new EquationParserException("Matrices may only be created from vectors of real numbers!");
+
+			if (row.size != columns)
+				throw new EquationParserException("Matrix rows must all be the same length!");
+
+			for (int j = 0; j < columns; j++)
+				cells[i * columns + j] = row.get(j);
+		}
+
+		return Val.matrix(rows, columns, cells);
+	}
+}
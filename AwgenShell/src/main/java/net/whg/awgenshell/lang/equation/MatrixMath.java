@@ -0,0 +1,566 @@
+package net.whg.awgenshell.lang.equation;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * The operations which can be done on matrix values. Matrices which are stored
+ * in double precision are solved using primitive arithmetic, while exact
+ * matrices are solved using the same number operations as all other values, so
+ * integer matrices stay exact for as long as their results fit within a long.
+ * If an operation is given both an exact and a double precision matrix, it is
+ * solved in double precision.
+ *
+ * @author TheDudeFromCI
+ */
+final class MatrixMath
+{
+	/**
+	 * The number of rows and columns within each block of a double precision
+	 * matrix multiplication. Multiplying one block at a time keeps the rows of
+	 * each block within the cache while they are still needed.
+	 */
+	static final int BLOCK_SIZE = 64;
+
+	private MatrixMath()
+	{}
+
+	/**
+	 * Adds two matrices of the same size.
+	 */
+	static Val add(Val a, Val b, EquationContext context)
+	{
+		if (a.type != Val.MATRIX || b.type != Val.MATRIX)
+			throw new EquationParserException("Cannot add the two given value types!");
+
+		if (a.size != b.size || a.getColumns() != b.getColumns())
+			throw new EquationParserException("Cannot add matrices of different sizes!");
+
+		if (a.isExact() && b.isExact())
+		{
+			Val[] x = a.exactCells();
+			Val[] y = b.exactCells();
+			Val[] c = new Val[x.length];
+			for (int i = 0; i < c.length; i++)
+				c[i] = Val.add(x[i], y[i], context);
+
+			return Val.exactMatrix(a.size, a.getColumns(), c);
+		}
+
+		double[] x = a.doubleCells();
+		double[] y = b.doubleCells();
+		double[] c = new double[x.length];
+		for (int i = 0; i < c.length; i++)
+			c[i] = x[i] + y[i];
+
+		return Val.matrix(a.size, a.getColumns(), c);
+	}
+
+	/**
+	 * Subtracts one matrix from another of the same size.
+	 */
+	static Val sub(Val a, Val b, EquationContext context)
+	{
+		if (a.type != Val.MATRIX || b.type != Val.MATRIX)
+			throw new EquationParserException("Cannot subtract the two given value types!");
+
+		if (a.size != b.size || a.getColumns() != b.getColumns())
+			throw new EquationParserException("Cannot subtract matrices of different sizes!");
+
+		if (a.isExact() && b.isExact())
+		{
+			Val[] x = a.exactCells();
+			Val[] y = b.exactCells();
+			Val[] c = new Val[x.length];
+			for (int i = 0; i < c.length; i++)
+				c[i] = Val.sub(x[i], y[i], context);
+
+			return Val.exactMatrix(a.size, a.getColumns(), c);
+		}
+
+		double[] x = a.doubleCells();
+		double[] y = b.doubleCells();
+		double[] c = new double[x.length];
+		for (int i = 0; i < c.length; i++)
+			c[i] = x[i] - y[i];
+
+		return Val.matrix(a.size, a.getColumns(), c);
+	}
+
+	/**
+	 * Multiplies a matrix with another matrix, a vector, or a number. Vectors on
+	 * the right of a matrix are treated as a column, and vectors on the left of a
+	 * matrix are treated as a row. Both result in a vector.
+	 */
+	static Val mul(Val a, Val b, EquationContext context)
+	{
+		if (a.type == Val.MATRIX && b.type == Val.MATRIX)
+			return multiply(a, b, context);
+
+		if (a.type == Val.MATRIX && b.type == Val.VECTOR)
+			return transform(a, b, context);
+
+		if (a.type == Val.VECTOR && b.type == Val.MATRIX)
+			return transform(transpose(b), a, context);
+
+		if (a.type == Val.MATRIX && b.type == Val.NUMBER)
+			return scale(a, b, context);
+
+		if (a.type == Val.NUMBER && b.type == Val.MATRIX)
+			return scale(b, a, context);
+
+		throw new EquationParserException("Cannot multiply the two given value types!");
+	}
+
+	/**
+	 * Divides each cell of a matrix by a number.
+	 */
+	static Val div(Val a, Val b, EquationContext context)
+	{
+		if (a.type != Val.MATRIX || b.type != Val.NUMBER)
+			throw new EquationParserException("Cannot divide the two given value types!");
+
+		if (a.isExact() && b.isExact())
+		{
+			Val[] x = a.exactCells();
+			Val[] c = new Val[x.length];
+			for (int i = 0; i < c.length; i++)
+				c[i] = Val.div(x[i], b, context);
+
+			return Val.exactMatrix(a.size, a.getColumns(), c);
+		}
+
+		double[] x = a.doubleCells();
+		double d = b.doubleValue();
+		double[] c = new double[x.length];
+		for (int i = 0; i < c.length; i++)
+			c[i] = x[i] / d;
+
+		return Val.matrix(a.size, a.getColumns(), c);
+	}
+
+	/**
+	 * Multiplies each cell of a matrix with a number.
+	 */
+	private static Val scale(Val a, Val b, EquationContext context)
+	{
+		if (a.isExact() && b.isExact())
+		{
+			Val[] x = a.exactCells();
+			Val[] c = new Val[x.length];
+			for (int i = 0; i < c.length; i++)
+				c[i] = Val.mul(x[i], b, context);
+
+			return Val.exactMatrix(a.size, a.getColumns(), c);
+		}
+
+		double[] x = a.doubleCells();
+		double d = b.doubleValue();
+		double[] c = new double[x.length];
+		for (int i = 0; i < c.length; i++)
+			c[i] = x[i] * d;
+
+		return Val.matrix(a.size, a.getColumns(), c);
+	}
+
+	/**
+	 * Multiplies two matrices, where the number of columns of the first matrix is
+	 * equal to the number of rows of the second matrix.
+	 */
+	private static Val multiply(Val a, Val b, EquationContext context)
+	{
+		int n = a.size;
+		int m = a.getColumns();
+		int p = b.getColumns();
+
+		if (m != b.size)
+			throw new EquationParserException("Cannot multiply matrices of incompatible sizes!");
+
+		if (a.isExact() && b.isExact())
+		{
+			// Each cell is the dot product of a row and a column, which keeps
+			// integer cells as longs while they fit.
+			Val[] rows = rows(a);
+			Val[] columns = rows(transpose(b));
+
+			Val[] c = new Val[n * p];
+			for (int i = 0; i < n; i++)
+				for (int j = 0; j < p; j++)
+					c[i * p + j] = Val.mul(rows[i], columns[j], context);
+
+			return Val.exactMatrix(n, p, c);
+		}
+
+		return Val.matrix(n, p, multiply(a.doubleCells(), b.doubleCells(), n, m, p));
+	}
+
+	/**
+	 * Multiplies two double precision matrices one block at a time.
+	 *
+	 * @param a
+	 *     - The cells of the first matrix, with n rows and m columns.
+	 * @param b
+	 *     - The cells of the second matrix, with m rows and p columns.
+	 * @return The cells of the resulting matrix, with n rows and p columns.
+	 */
+	static double[] multiply(double[] a, double[] b, int n, int m, int p)
+	{
+		double[] c = new double[n * p];
+
+		for (int i0 = 0; i0 < n; i0 += BLOCK_SIZE)
+		{
+			int i1 = Math.min(i0 + BLOCK_SIZE, n);
+			for (int k0 = 0; k0 < m; k0 += BLOCK_SIZE)
+			{
+				int k1 = Math.min(k0 + BLOCK_SIZE, m);
+				for (int j0 = 0; j0 < p; j0 += BLOCK_SIZE)
+				{
+					int j1 = Math.min(j0 + BLOCK_SIZE, p);
+
+					for (int i = i0; i < i1; i++)
+					{
+						int row = i * p;
+						for (int k = k0; k < k1; k++)
+						{
+							double s = a[i * m + k];
+							int column = k * p;
+
+							for (int j = j0; j < j1; j++)
+								c[row + j] += s * b[column + j];
+						}
+					}
+				}
+			}
+		}
+
+		return c;
+	}
+
+	/**
+	 * Multiplies a matrix with a column vector.
+	 */
+	private static Val transform(Val a, Val v, EquationContext context)
+	{
+		int n = a.size;
+		int m = a.getColumns();
+
+		if (v.get(0).type != Val.NUMBER)
+			throw new EquationParserException("Matrices may only be multiplied with vectors of real numbers!");
+
+		if (v.size != m)
+			throw new EquationParserException("Cannot multiply matrix and vector of incompatible sizes!");
+
+		boolean exact = a.isExact();
+		for (int i = 0; i < m && exact; i++)
+			exact = v.get(i).isExact();
+
+		Val[] result = new Val[n];
+		if (exact)
+		{
+			Val[] rows = rows(a);
+			for (int i = 0; i < n; i++)
+				result[i] = Val.mul(rows[i], v, context);
+
+			return new Val(Val.VECTOR, result);
+		}
+
+		double[] x = a.doubleCells();
+		double[] y = new double[m];
+		for (int i = 0; i < m; i++)
+			y[i] = v.get(i).doubleValue();
+
+		for (int i = 0; i < n; i++)
+		{
+			double s = 0;
+			for (int j = 0; j < m; j++)
+				s += x[i * m + j] * y[j];
+
+			result[i] = Val.ofDouble(s);
+		}
+
+		return new Val(Val.VECTOR, result);
+	}
+
+	/**
+	 * Splits an exact matrix into its rows, as vectors.
+	 */
+	private static Val[] rows(Val a)
+	{
+		Val[] cells = a.exactCells();
+		int m = a.getColumns();
+
+		Val[] rows = new Val[a.size];
+		for (int i = 0; i < rows.length; i++)
+			rows[i] = new Val(Val.VECTOR, Arrays.copyOfRange(cells, i * m, i * m + m));
+
+		return rows;
+	}
+
+	/**
+	 * Swaps the columns and rows of a matrix.
+	 */
+	static Val transpose(Val a)
+	{
+		requireMatrix(a);
+
+		int n = a.size;
+		int m = a.getColumns();
+
+		if (a.isExact())
+		{
+			Val[] x = a.exactCells();
+			Val[] c = new Val[x.length];
+			for (int i = 0; i < n; i++)
+				for (int j = 0; j < m; j++)
+					c[j * n + i] = x[i * m + j];
+
+			return Val.exactMatrix(m, n, c);
+		}
+
+		double[] x = a.doubleCells();
+		double[] c = new double[x.length];
+		for (int i = 0; i < n; i++)
+			for (int j = 0; j < m; j++)
+				c[j * n + i] = x[i * m + j];
+
+		return Val.matrix(m, n, c);
+	}
+
+	/**
+	 * Calculates the determinant of a square matrix. Exact matrices use fraction
+	 * free elimination, so the determinant of an integer matrix is solved without
+	 * leaving the integers. Double precision matrices use elimination with partial
+	 * pivoting.
+	 */
+	static Val determinant(Val a, EquationContext context)
+	{
+		int n = requireSquare(a);
+
+		if (!a.isExact())
+		{
+			double[] x = a.doubleCells().clone();
+			double det = 1;
+
+			for (int k = 0; k < n; k++)
+			{
+				int pivot = k;
+				for (int i = k + 1; i < n; i++)
+					if (Math.abs(x[i * n + k]) > Math.abs(x[pivot * n + k]))
+						pivot = i;
+
+				if (x[pivot * n + k] == 0)
+					return Val.ofDouble(0);
+
+				if (pivot != k)
+				{
+					swapRows(x, k, pivot, n);
+					det = -det;
+				}
+
+				double d = x[k * n + k];
+				det *= d;
+
+				for (int i = k + 1; i < n; i++)
+				{
+					double f = x[i * n + k] / d;
+					for (int j = k + 1; j < n; j++)
+						x[i * n + j] -= f * x[k * n + j];
+				}
+			}
+
+			return Val.ofDouble(det);
+		}
+
+		Val[] x = a.exactCells().clone();
+		Val previous = Val.ONE;
+		boolean negate = false;
+
+		for (int k = 0; k < n - 1; k++)
+		{
+			if (x[k * n + k].isZero())
+			{
+				int pivot = k + 1;
+				while (pivot < n && x[pivot * n + k].isZero())
+					pivot++;
+
+				if (pivot == n)
+					return Val.ZERO;
+
+				swapRows(x, k, pivot, n);
+				negate = !negate;
+			}
+
+			Val d = x[k * n + k];
+			for (int i = k + 1; i < n; i++)
+				for (int j = k + 1; j < n; j++)
+				{
+					Val s = Val.mul(x[i * n + j], d, context);
+					s = Val.sub(s, Val.mul(x[i * n + k], x[k * n + j], context), context);
+					x[i * n + j] = Val.div(s, previous, context);
+				}
+
+			previous = d;
+		}
+
+		Val det = stripZeros(x[n * n - 1]);
+		return negate ? Val.mul(det, Val.NEGATIVE_ONE, context) : det;
+	}
+
+	/**
+	 * Calculates the inverse of a square matrix using Gauss-Jordan elimination.
+	 *
+	 * @throws EquationParserException
+	 *     - If the matrix is not square, or is not invertible.
+	 */
+	static Val inverse(Val a, EquationContext context)
+	{
+		int n = requireSquare(a);
+
+		if (!a.isExact())
+		{
+			double[] x = a.doubleCells().clone();
+			double[] y = new double[n * n];
+			for (int i = 0; i < n; i++)
+				y[i * n + i] = 1;
+
+			for (int k = 0; k < n; k++)
+			{
+				int pivot = k;
+				for (int i = k + 1; i < n; i++)
+					if (Math.abs(x[i * n + k]) > Math.abs(x[pivot * n + k]))
+						pivot = i;
+
+				if (x[pivot * n + k] == 0)
+					throw new EquationParserException("Matrix is not invertible!");
+
+				swapRows(x, k, pivot, n);
+				swapRows(y, k, pivot, n);
+
+				double d = x[k * n + k];
+				for (int j = 0; j < n; j++)
+				{
+					x[k * n + j] /= d;
+					y[k * n + j] /= d;
+				}
+
+				for (int i = 0; i < n; i++)
+				{
+					double f = x[i * n + k];
+					if (i == k || f == 0)
+						continue;
+
+					for (int j = 0; j < n; j++)
+					{
+						x[i * n + j] -= f * x[k * n + j];
+						y[i * n + j] -= f * y[k * n + j];
+					}
+				}
+			}
+
+			return Val.matrix(n, n, y);
+		}
+
+		Val[] x = a.exactCells().clone();
+		Val[] y = new Val[n * n];
+		for (int i = 0; i < n; i++)
+			for (int j = 0; j < n; j++)
+				y[i * n + j] = i == j ? Val.ONE : Val.ZERO;
+
+		for (int k = 0; k < n; k++)
+		{
+			int pivot = k;
+			while (pivot < n && x[pivot * n + k].isZero())
+				pivot++;
+
+			if (pivot == n)
+				throw new EquationParserException("Matrix is not invertible!");
+
+			swapRows(x, k, pivot, n);
+			swapRows(y, k, pivot, n);
+
+			Val d = x[k * n + k];
+			for (int j = 0; j < n; j++)
+			{
+				x[k * n + j] = Val.div(x[k * n + j], d, context);
+				y[k * n + j] = Val.div(y[k * n + j], d, context);
+			}
+
+			for (int i = 0; i < n; i++)
+			{
+				Val f = x[i * n + k];
+				if (i == k || f.isZero())
+					continue;
+
+				for (int j = 0; j < n; j++)
+				{
+					x[i * n + j] = Val.sub(x[i * n + j], Val.mul(f, x[k * n + j], context), context);
+					y[i * n + j] = Val.sub(y[i * n + j], Val.mul(f, y[k * n + j], context), context);
+				}
+			}
+		}
+
+		for (int i = 0; i < y.length; i++)
+			y[i] = stripZeros(y[i]);
+
+		return Val.exactMatrix(n, n, y);
+	}
+
+	/**
+	 * Removes the trailing zeros of the fraction which exact elimination leaves
+	 * behind, such as in 0.600, so results are written the same way as if they had
+	 * been typed in.
+	 */
+	private static Val stripZeros(Val x)
+	{
+		if (x.value == null)
+			return x;
+
+		BigDecimal d = x.value.toBigDecimal().stripTrailingZeros();
+		if (d.scale() < 0)
+			d = d.setScale(0);
+
+		return new Val(x.value.getContext().valueOf(d));
+	}
+
+	private static void requireMatrix(Val a)
+	{
+		if (a.type != Val.MATRIX)
+			throw new EquationParserException("Only matrices are supported here!");
+	}
+
+	private static int requireSquare(Val a)
+	{
+		requireMatrix(a);
+
+		if (a.size != a.getColumns())
+			throw new EquationParserException("Matrix must be square!");
+
+		return a.size;
+	}
+
+	private static void swapRows(double[] x, int a, int b, int n)
+	{
+		if (a == b)
+			return;
+
+		for (int j = 0; j < n; j++)
+		{
+			double t = x[a * n + j];
+			x[a * n + j] = x[b * n + j];
+			x[b * n + j] = t;
+		}
+	}
+
+	private static void swapRows(Val[] x, int a, int b, int n)
+	{
+		if (a == b)
+			return;
+
+		for (int j = 0; j < n; j++)
+		{
+			Val t = x[a * n + j];
+			x[a * n + j] = x[b * n + j];
+			x[b * n + j] = t;
+		}
+	}
+}
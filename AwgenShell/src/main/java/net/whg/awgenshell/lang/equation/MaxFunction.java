@@ -0,0 +1,16 @@
+package net.whg.awgenshell.lang.equation;
+
+public class MaxFunction implements IAggregateFunction
+{
+	@Override
+	public String getName()
+	{
+		return "max";
+	}
+
+	@Override
+	public Val result(Aggregate aggregate)
+	{
+		return aggregate.getMax();
+	}
+}
@@ -0,0 +1,16 @@
+package net.whg.awgenshell.lang.equation;
+
+public class MeanFunction implements IAggregateFunction
+{
+	@Override
+	public String getName()
+	{
+		return "mean";
+	}
+
+	@Override
+	public Val result(Aggregate aggregate)
+	{
+		return aggregate.getMean();
+	}
+}
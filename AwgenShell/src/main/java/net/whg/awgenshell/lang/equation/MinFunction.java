@@ -0,0 +1,16 @@
+package net.whg.awgenshell.lang.equation;
+
+public class MinFunction implements IAggregateFunction
+{
+	@Override
+	public String getName()
+	{
+		return "min";
+	}
+
+	@Override
+	public Val result(Aggregate aggregate)
+	{
+		return aggregate.getMin();
+	}
+}
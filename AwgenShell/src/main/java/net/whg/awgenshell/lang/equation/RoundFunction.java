@@ -1,5 +1,6 @@
 package net.whg.awgenshell.lang.equation;
 
+import java.util.function.DoubleUnaryOperator;
 import ch.obermuhlner.math.big.BigFloat;
 
 public class RoundFunction implements IEquationFunction
@@ -10,6 +11,18 @@ public class RoundFunction implements IEquationFunction
 		return "round";
 	}
 
+	@Override
+	public boolean isElementWise()
+	{
+		return true;
+	}
+
+	@Override
+	public DoubleUnaryOperator getDoubleFunction()
+	{
+		return x -> Math.floor(x + 0.5);
+	}
+
 	@Override
 	public Val solve(Val x)
 	{
@@ -26,8 +39,14 @@ public class RoundFunction implements IEquationFunction
 			throw new EquationParserException(
 					"Only number types, vectors of numbers, or lists of number types are supported here!");
 
-		BigFloat a = x.value;
-		a = a.add(BigFloat.context(128).valueOf(0.5));
+		if (x.isIntegral())
+			return x;
+
+		if (!x.isExact())
+			return Val.ofDouble(Math.floor(x.doubleValue() + 0.5));
+
+		BigFloat a = x.bigValue();
+		a = a.add(EquationContext.of(a).getHalf());
 		a = a.isNegative() ? a.getFractionalPart().isZero() ? a.getIntegralPart() : a.getIntegralPart().subtract(1)
 				: a.getIntegralPart();
 
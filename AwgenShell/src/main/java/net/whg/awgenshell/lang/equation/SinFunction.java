@@ -1,5 +1,6 @@
 package net.whg.awgenshell.lang.equation;
 
+import java.util.function.DoubleUnaryOperator;
 import ch.obermuhlner.math.big.BigFloat;
 
 public class SinFunction implements IEquationFunction
@@ -10,6 +11,24 @@ public class SinFunction implements IEquationFunction
 		return "sin";
 	}
 
+	@Override
+	public boolean isElementWise()
+	{
+		return true;
+	}
+
+	@Override
+	public boolean isPure()
+	{
+		return true;
+	}
+
+	@Override
+	public DoubleUnaryOperator getDoubleFunction()
+	{
+		return Math::sin;
+	}
+
 	@Override
 	public Val solve(Val x)
 	{
@@ -26,6 +45,9 @@ public class SinFunction implements IEquationFunction
 			throw new EquationParserException(
 					"Only number types, vectors of numbers, or lists of number types are supported here!");
 
-		return new Val(BigFloat.sin(x.value));
+		if (!x.isExact())
+			return Val.ofDouble(Math.sin(x.doubleValue()));
+
+		return new Val(BigFloat.sin(x.bigValue()));
 	}
 }
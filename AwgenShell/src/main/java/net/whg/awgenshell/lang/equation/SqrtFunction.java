@@ -1,5 +1,6 @@
 package net.whg.awgenshell.lang.equation;
 
+import java.util.function.DoubleUnaryOperator;
 import ch.obermuhlner.math.big.BigFloat;
 
 public class SqrtFunction implements IEquationFunction
@@ -10,6 +11,24 @@ public class SqrtFunction implements IEquationFunction
 		return "sqrt";
 	}
 
+	@Override
+	public boolean isElementWise()
+	{
+		return true;
+	}
+
+	@Override
+	public boolean isPure()
+	{
+		return true;
+	}
+
+	@Override
+	public DoubleUnaryOperator getDoubleFunction()
+	{
+		return Math::sqrt;
+	}
+
 	@Override
 	public Val solve(Val x)
 	{
@@ -26,6 +45,9 @@ public class SqrtFunction implements IEquationFunction
 			throw new EquationParserException(
 					"Only number types, vectors of numbers, or lists of number types are supported here!");
 
-		return new Val(BigFloat.sqrt(x.value));
+		if (!x.isExact())
+			return Val.ofDouble(Math.sqrt(x.doubleValue()));
+
+		return new Val(BigFloat.sqrt(x.bigValue()));
 	}
 }
@@ -0,0 +1,16 @@
+package net.whg.awgenshell.lang.equation;
+
+public class SumFunction implements IAggregateFunction
+{
+	@Override
+	public String getName()
+	{
+		return "sum";
+	}
+
+	@Override
+	public Val result(Aggregate aggregate)
+	{
+		return aggregate.getSum();
+	}
+}
@@ -0,0 +1,16 @@
+package net.whg.awgenshell.lang.equation;
+
+public class TransposeFunction implements IEquationFunction
+{
+	@Override
+	public String getName()
+	{
+		return "transpose";
+	}
+
+	@Override
+	public Val solve(Val x)
+	{
+		return Val.transpose(x);
+	}
+}
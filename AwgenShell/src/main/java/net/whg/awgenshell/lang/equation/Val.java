@@ -1,5 +1,7 @@
 package net.whg.awgenshell.lang.equation;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Arrays;
 import ch.obermuhlner.math.big.BigFloat;
 
@@ -13,8 +15,8 @@ import ch.obermuhlner.math.big.BigFloat;
 public class Val
 {
 	/**
-	 * This function adds one value to another. Supports Numbers, Vectors, and
-	 * Complex Numbers.
+	 * This function adds one value to another. Supports Numbers, Vectors, Complex
+	 * Numbers, and Matrices.
 	 *
 	 * @param a
 	 *     - The first value
@@ -24,6 +26,18 @@ public class Val
 	 */
 	public static Val add(Val a, Val b)
 	{
+		return add(a, b, CONTEXT);
+	}
+
+	/**
+	 * Same as {@link #add(Val, Val)}, but integers are converted to the given
+	 * precision when the result does not fit within a long.
+	 */
+	static Val add(Val a, Val b, EquationContext context)
+	{
+		if (a.type == MATRIX || b.type == MATRIX)
+			return MatrixMath.add(a, b, context);
+
 		if (a.type != b.type)
 		{
 			if (a.type == VECTOR && (b.type == COMPLEX_NUMBER || b.type == NUMBER))
@@ -39,14 +53,29 @@ public class Val
 		switch (a.type)
 		{
 			case NUMBER:
-				return new Val(a.value.add(b.value));
+				if (a.integral && b.integral)
+				{
+					try
+					{
+						return valueOf(Math.addExact(a.integer, b.integer));
+					}
+					catch (ArithmeticException e)
+					{
+						// Overflow, promote to BigFloat.
+					}
+				}
+
+				if (a.exact && b.exact)
+					return new Val(big(a, b, context).add(big(b, a, context)));
+
+				return ofDouble(a.doubleValue() + b.doubleValue());
 
 			case VECTOR:
 				if (b.type != VECTOR)
 				{
 					Val[] elements = new Val[a.size];
 					for (int i = 0; i < a.size; i++)
-						elements[i] = add(a.get(i), b);
+						elements[i] = add(a.get(i), b, context);
 
 					return new Val(VECTOR, elements);
 				}
@@ -57,7 +86,7 @@ public class Val
 
 					Val[] elements = new Val[a.size];
 					for (int i = 0; i < a.size; i++)
-						elements[i] = add(a.get(i), b.get(i));
+						elements[i] = add(a.get(i), b.get(i), context);
 
 					return new Val(VECTOR, elements);
 				}
@@ -65,8 +94,8 @@ public class Val
 			case COMPLEX_NUMBER:
 				Val[] c = new Val[2];
 
-				c[0] = add(a.get(0), b.get(0));
-				c[1] = add(a.get(1), b.get(1));
+				c[0] = add(a.get(0), b.get(0), context);
+				c[1] = add(a.get(1), b.get(1), context);
 
 				return new Val(COMPLEX_NUMBER, c);
 
@@ -77,7 +106,7 @@ public class Val
 
 	/**
 	 * This function subtracts one value from another. Supports Numbers, Vectors,
-	 * and Complex Numbers.
+	 * Complex Numbers, and Matrices.
 	 *
 	 * @param a
 	 *     - The first value
@@ -87,6 +116,18 @@ public class Val
 	 */
 	public static Val sub(Val a, Val b)
 	{
+		return sub(a, b, CONTEXT);
+	}
+
+	/**
+	 * Same as {@link #sub(Val, Val)}, but integers are converted to the given
+	 * precision when the result does not fit within a long.
+	 */
+	static Val sub(Val a, Val b, EquationContext context)
+	{
+		if (a.type == MATRIX || b.type == MATRIX)
+			return MatrixMath.sub(a, b, context);
+
 		if (a.type != b.type)
 			if (a.type == VECTOR && (b.type == COMPLEX_NUMBER || b.type == NUMBER))
 				;// ALLOW
@@ -100,14 +141,29 @@ public class Val
 		switch (a.type)
 		{
 			case NUMBER:
-				return new Val(a.value.subtract(b.value));
+				if (a.integral && b.integral)
+				{
+					try
+					{
+						return valueOf(Math.subtractExact(a.integer, b.integer));
+					}
+					catch (ArithmeticException e)
+					{
+						// Overflow, promote to BigFloat.
+					}
+				}
+
+				if (a.exact && b.exact)
+					return new Val(big(a, b, context).subtract(big(b, a, context)));
+
+				return ofDouble(a.doubleValue() - b.doubleValue());
 
 			case VECTOR:
 				if (b.type != VECTOR)
 				{
 					Val[] elements = new Val[a.size];
 					for (int i = 0; i < a.size; i++)
-						elements[i] = sub(a.get(i), b);
+						elements[i] = sub(a.get(i), b, context);
 
 					return new Val(VECTOR, elements);
 				}
@@ -118,7 +174,7 @@ public class Val
 
 					Val[] elements = new Val[a.size];
 					for (int i = 0; i < a.size; i++)
-						elements[i] = sub(a.get(i), b.get(i));
+						elements[i] = sub(a.get(i), b.get(i), context);
 
 					return new Val(VECTOR, elements);
 				}
@@ -126,8 +182,8 @@ public class Val
 			case COMPLEX_NUMBER:
 				Val[] c = new Val[2];
 
-				c[0] = sub(a.get(0), b.get(0));
-				c[1] = sub(a.get(1), b.get(1));
+				c[0] = sub(a.get(0), b.get(0), context);
+				c[1] = sub(a.get(1), b.get(1), context);
 
 				return new Val(COMPLEX_NUMBER, c);
 
@@ -137,8 +193,9 @@ public class Val
 	}
 
 	/**
-	 * This function multiplies one value with another. Supports Numbers and Complex
-	 * Numbers.
+	 * This function multiplies one value with another. Supports Numbers, Complex
+	 * Numbers, and Matrices. Multiplying a matrix with a vector treats the vector
+	 * as a column when on the right, or as a row when on the left.
 	 *
 	 * @param a
 	 *     - The first value
@@ -148,6 +205,18 @@ public class Val
 	 */
 	public static Val mul(Val a, Val b)
 	{
+		return mul(a, b, CONTEXT);
+	}
+
+	/**
+	 * Same as {@link #mul(Val, Val)}, but integers are converted to the given
+	 * precision when the result does not fit within a long.
+	 */
+	static Val mul(Val a, Val b, EquationContext context)
+	{
+		if (a.type == MATRIX || b.type == MATRIX)
+			return MatrixMath.mul(a, b, context);
+
 		if (a.type != b.type)
 			if (a.type == VECTOR && (b.type == COMPLEX_NUMBER || b.type == NUMBER))
 				;// ALLOW
@@ -161,14 +230,29 @@ public class Val
 		switch (a.type)
 		{
 			case NUMBER:
-				return new Val(a.value.multiply(b.value));
+				if (a.integral && b.integral)
+				{
+					try
+					{
+						return valueOf(Math.multiplyExact(a.integer, b.integer));
+					}
+					catch (ArithmeticException e)
+					{
+						// Overflow, promote to BigFloat.
+					}
+				}
+
+				if (a.exact && b.exact)
+					return new Val(big(a, b, context).multiply(big(b, a, context)));
+
+				return ofDouble(a.doubleValue() * b.doubleValue());
 
 			case VECTOR:
 				if (b.type != VECTOR)
 				{
 					Val[] elements = new Val[a.size];
 					for (int i = 0; i < a.size; i++)
-						elements[i] = mul(a.get(i), b);
+						elements[i] = mul(a.get(i), b, context);
 
 					return new Val(VECTOR, elements);
 				}
@@ -177,9 +261,12 @@ public class Val
 					if (a.size != b.size)
 						throw new EquationParserException("Cannot multiply vectors of different sizes!");
 
+					if (a.get(0).type == NUMBER && b.get(0).type == NUMBER)
+						return dot(a, b, context);
+
 					Val s = Val.ZERO;
 					for (int i = 0; i < a.size; i++)
-						s = add(s, mul(a.get(i), b.get(i)));
+						s = add(s, mul(a.get(i), b.get(i), context), context);
 
 					return s;
 				}
@@ -190,13 +277,13 @@ public class Val
 				Val b1 = b.get(0);
 				Val b2 = b.get(1);
 
-				Val s1 = mul(a1, b1);
-				Val s2 = mul(a2, b2);
-				Val s3 = sub(s1, s2);
+				Val s1 = mul(a1, b1, context);
+				Val s2 = mul(a2, b2, context);
+				Val s3 = sub(s1, s2, context);
 
-				Val s4 = mul(a1, b2);
-				Val s5 = mul(a2, b1);
-				Val s6 = add(s4, s5);
+				Val s4 = mul(a1, b2, context);
+				Val s5 = mul(a2, b1, context);
+				Val s6 = add(s4, s5, context);
 
 				return new Val(COMPLEX_NUMBER, s3, s6);
 
@@ -206,8 +293,8 @@ public class Val
 	}
 
 	/**
-	 * This function divides one value by another. Supports Numbers and Complex
-	 * Numbers.
+	 * This function divides one value by another. Supports Numbers, Complex
+	 * Numbers, and Matrices divided by Numbers.
 	 *
 	 * @param a
 	 *     - The first value
@@ -217,46 +304,56 @@ public class Val
 	 */
 	public static Val div(Val a, Val b)
 	{
+		return div(a, b, CONTEXT);
+	}
+
+	/**
+	 * Same as {@link #div(Val, Val)}, but integers are converted to the given
+	 * precision when the result does not fit within a long.
+	 */
+	static Val div(Val a, Val b, EquationContext context)
+	{
+		if (a.type == MATRIX || b.type == MATRIX)
+			return MatrixMath.div(a, b, context);
+
 		if (a.type != b.type)
-			throw new EquationParserException("Cannot divide the two given value types!");
+			if (a.type == COMPLEX_NUMBER && b.type == NUMBER)
+				b = new Val(COMPLEX_NUMBER, b, Val.ZERO);
+			else if (a.type == NUMBER && b.type == COMPLEX_NUMBER)
+				a = new Val(COMPLEX_NUMBER, a, Val.ZERO);
+			else
+				throw new EquationParserException("Cannot divide the two given value types!");
 
 		switch (a.type)
 		{
 			case NUMBER:
-				return new Val(a.value.divide(b.value));
+				// Integer division only stays exact as a long if there is no remainder.
+				if (a.integral && b.integral && b.integer != 0 && a.integer % b.integer == 0
+						&& (a.integer != Long.MIN_VALUE || b.integer != -1))
+					return valueOf(a.integer / b.integer);
+
+				if (a.exact && b.exact)
+					return new Val(big(a, b, context).divide(big(b, a, context)));
+
+				return ofDouble(a.doubleValue() / b.doubleValue());
 
 			case VECTOR:
 				throw new EquationParserException("Cannot divide vector values!");
 
 			case COMPLEX_NUMBER:
+			{
+				// (a1 + a2i) / (b1 + b2i) = ((a1b1 + a2b2) + (a2b1 - a1b2)i) / (b1^2 + b2^2)
 				Val a1 = a.get(0);
 				Val a2 = a.get(1);
 				Val b1 = b.get(0);
 				Val b2 = b.get(1);
-				Val c1 = b1;
-				Val c2 = mul(b2, new Val(-1));
-
-				Val t1 = mul(a1, c1);
-				Val t2 = mul(a1, c2);
-				Val t3 = mul(a2, c1);
-				Val t4 = mul(a2, c2);
-
-				Val l1 = mul(b1, c1);
-				Val l2 = mul(b1, c2);
-				Val l3 = mul(b2, c1);
-				Val l4 = mul(b2, c2);
 
-				Val s1 = add(t1, t4);
-				Val s2 = add(t2, t3);
+				Val denominator = add(mul(b1, b1, context), mul(b2, b2, context), context);
+				Val real = div(add(mul(a1, b1, context), mul(a2, b2, context), context), denominator, context);
+				Val imaginary = div(sub(mul(a2, b1, context), mul(a1, b2, context), context), denominator, context);
 
-				Val s3 = add(l1, l2);
-				Val s4 = add(l3, l4);
-				Val s5 = add(s3, s4);
-
-				Val o1 = div(s1, s5);
-				Val o2 = div(s2, s5);
-
-				return new Val(COMPLEX_NUMBER, o1, o2);
+				return new Val(COMPLEX_NUMBER, real, imaginary);
+			}
 
 			default:
 				throw new EquationParserException("Cannot divide list-type values!");
@@ -273,6 +370,15 @@ public class Val
 	 * @return The result of the operation as a new value.
 	 */
 	public static Val pow(Val a, Val b)
+	{
+		return pow(a, b, CONTEXT);
+	}
+
+	/**
+	 * Same as {@link #pow(Val, Val)}, but integers are converted to the given
+	 * precision when the result does not fit within a long.
+	 */
+	static Val pow(Val a, Val b, EquationContext context)
 	{
 		if (a.type != b.type)
 			throw new EquationParserException("Cannot power the two given value types!");
@@ -280,7 +386,22 @@ public class Val
 		switch (a.type)
 		{
 			case NUMBER:
-				return new Val(a.value.pow(b.value));
+				if (a.integral && b.integral && b.integer >= 0)
+				{
+					try
+					{
+						return valueOf(powExact(a.integer, b.integer));
+					}
+					catch (ArithmeticException e)
+					{
+						// Overflow, promote to BigFloat.
+					}
+				}
+
+				if (a.exact && b.exact)
+					return new Val(big(a, b, context).pow(big(b, a, context)));
+
+				return ofDouble(Math.pow(a.doubleValue(), b.doubleValue()));
 
 			case VECTOR:
 				throw new EquationParserException("Cannot power vector values!");
@@ -288,6 +409,9 @@ public class Val
 			case COMPLEX_NUMBER:
 				throw new EquationParserException("Cannot power complex number values!");
 
+			case MATRIX:
+				throw new EquationParserException("Cannot power matrix values!");
+
 			default:
 				throw new EquationParserException("Cannot power list-type values!");
 		}
@@ -303,6 +427,15 @@ public class Val
 	 * @return The result of the operation as a new value.
 	 */
 	public static Val mod(Val a, Val b)
+	{
+		return mod(a, b, CONTEXT);
+	}
+
+	/**
+	 * Same as {@link #mod(Val, Val)}, but integers are converted to the given
+	 * precision when the result does not fit within a long.
+	 */
+	static Val mod(Val a, Val b, EquationContext context)
 	{
 		if (a.type != b.type)
 			throw new EquationParserException("Cannot modulus the two given value types!");
@@ -310,7 +443,13 @@ public class Val
 		switch (a.type)
 		{
 			case NUMBER:
-				return new Val(a.value.remainder(b.value));
+				if (a.integral && b.integral && b.integer != 0)
+					return valueOf(a.integer % b.integer);
+
+				if (a.exact && b.exact)
+					return new Val(big(a, b, context).remainder(big(b, a, context)));
+
+				return ofDouble(a.doubleValue() % b.doubleValue());
 
 			case VECTOR:
 				throw new EquationParserException("Cannot modulus vector values!");
@@ -318,13 +457,147 @@ public class Val
 			case COMPLEX_NUMBER:
 				throw new EquationParserException("Cannot modulus complex number values!");
 
+			case MATRIX:
+				throw new EquationParserException("Cannot modulus matrix values!");
+
 			default:
 				throw new EquationParserException("Cannot modulus list-type values!");
 		}
 	}
 
 	/**
-	 * This function adds an element to the end of a list value.
+	 * Gets the value of an exact number as a BigFloat. Numbers which are stored as
+	 * an integer are converted using the precision of the other operand, if it has
+	 * one, so integers do not raise the precision of an operation. Otherwise, the
+	 * given context is used.
+	 */
+	private static BigFloat big(Val x, Val other, EquationContext context)
+	{
+		if (x.value != null)
+			return x.value;
+
+		if (other.value != null)
+			return other.value.getContext().valueOf(x.integer);
+
+		return context.valueOf(x.integer);
+	}
+
+	/**
+	 * Raises an integer to a non-negative integer power using exponentiation by
+	 * squaring.
+	 *
+	 * @throws ArithmeticException
+	 *     - If the result does not fit within a long.
+	 */
+	private static long powExact(long base, long exponent)
+	{
+		long result = 1;
+		while (true)
+		{
+			if ((exponent & 1) != 0)
+				result = Math.multiplyExact(result, base);
+
+			exponent >>= 1;
+			if (exponent == 0)
+				return result;
+
+			base = Math.multiplyExact(base, base);
+		}
+	}
+
+	/**
+	 * Calculates the dot product of two real vectors of the same size without
+	 * creating a value for each intermediate product.
+	 */
+	private static Val dot(Val a, Val b, EquationContext context)
+	{
+		boolean integral = true;
+		boolean exact = true;
+		for (int i = 0; i < a.size && exact; i++)
+		{
+			integral = integral && a.elements[i].integral && b.elements[i].integral;
+			exact = a.elements[i].exact && b.elements[i].exact;
+		}
+
+		if (integral)
+		{
+			try
+			{
+				long s = 0;
+				for (int i = 0; i < a.size; i++)
+					s = Math.addExact(s, Math.multiplyExact(a.elements[i].integer, b.elements[i].integer));
+
+				return valueOf(s);
+			}
+			catch (ArithmeticException e)
+			{
+				// Overflow, promote to BigFloat.
+			}
+		}
+
+		if (exact)
+		{
+			BigFloat s = big(a.elements[0], b.elements[0], context).multiply(big(b.elements[0], a.elements[0], context));
+			for (int i = 1; i < a.size; i++)
+				s = s.add(big(a.elements[i], b.elements[i], context).multiply(big(b.elements[i], a.elements[i], context)));
+
+			return new Val(s);
+		}
+
+		double s = 0;
+		for (int i = 0; i < a.size; i++)
+			s += a.elements[i].doubleValue() * b.elements[i].doubleValue();
+
+		return ofDouble(s);
+	}
+
+	/**
+	 * Swaps the rows and columns of a matrix.
+	 *
+	 * @param x
+	 *     - The matrix.
+	 * @return The transposed matrix.
+	 * @throws EquationParserException
+	 *     - If the value is not a matrix.
+	 */
+	public static Val transpose(Val x)
+	{
+		return MatrixMath.transpose(x);
+	}
+
+	/**
+	 * Calculates the determinant of a square matrix. The determinant of an integer
+	 * matrix is always exact.
+	 *
+	 * @param x
+	 *     - The matrix.
+	 * @return The determinant, as a number.
+	 * @throws EquationParserException
+	 *     - If the value is not a square matrix.
+	 */
+	public static Val determinant(Val x)
+	{
+		return MatrixMath.determinant(x, CONTEXT);
+	}
+
+	/**
+	 * Calculates the inverse of a square matrix.
+	 *
+	 * @param x
+	 *     - The matrix.
+	 * @return The inverted matrix.
+	 * @throws EquationParserException
+	 *     - If the value is not a square matrix, or the matrix is not invertible.
+	 */
+	public static Val inverse(Val x)
+	{
+		return MatrixMath.inverse(x, CONTEXT);
+	}
+
+	/**
+	 * This function adds an element to the end of a list value. As this copies the
+	 * entire list, {@link Builder} should be used when building lists with many
+	 * elements.
 	 *
 	 * @param list
 	 *     - The list.
@@ -348,7 +621,8 @@ public class Val
 	 * Checks if this value exists within the real number line or not. Numbers will
 	 * always return true. For case of complex numbers, this method will return true
 	 * only is the imaginary value is equal to zero. For vectors, will return true
-	 * if all elements within the vector are real. Lists will always return false.
+	 * if all elements within the vector are real. Matrices will always return
+	 * true, and lists will always return false.
 	 *
 	 * @param x
 	 *     - The value to check.
@@ -356,7 +630,7 @@ public class Val
 	 */
 	public static boolean isReal(Val x)
 	{
-		if (x.type == NUMBER)
+		if (x.type == NUMBER || x.type == MATRIX)
 			return true;
 
 		if (x.type == COMPLEX_NUMBER)
@@ -373,6 +647,91 @@ public class Val
 		return false;
 	}
 
+	/**
+	 * Creates a new number value which is stored in double precision. Operations
+	 * between double precision numbers are done using primitive arithmetic, and
+	 * operations between a double precision number and an exact number result in
+	 * a double precision number.
+	 *
+	 * @param value
+	 *     - The value.
+	 * @return The new number value.
+	 */
+	public static Val ofDouble(double value)
+	{
+		if (value >= CACHE_LOW && value <= CACHE_HIGH)
+		{
+			int i = (int) value;
+			if (i == value && (i != 0 || Double.doubleToRawLongBits(value) == 0))
+				return DOUBLE_CACHE[i - CACHE_LOW];
+		}
+
+		return new Val(null, null, 0, value, DOUBLE_STORAGE, NUMBER);
+	}
+
+	/**
+	 * Gets an exact number value for the given integer. Small integers are cached,
+	 * so this method should be preferred over the constructor for values which
+	 * are likely to be small.
+	 *
+	 * @param value
+	 *     - The value.
+	 * @return The number value.
+	 */
+	public static Val valueOf(long value)
+	{
+		if (value >= CACHE_LOW && value <= CACHE_HIGH)
+			return EXACT_CACHE[(int) value - CACHE_LOW];
+
+		return new Val(value);
+	}
+
+	/**
+	 * Parses an exact number value. Integers which fit within a long are stored as
+	 * a long, so this method should be preferred over the constructor.
+	 *
+	 * @param value
+	 *     - The string to parse into a number value.
+	 * @return The number value.
+	 * @throws NumberFormatException
+	 *     - If the string is not a valid number.
+	 */
+	public static Val valueOf(String value)
+	{
+		return valueOf(value, CONTEXT);
+	}
+
+	/**
+	 * Parses an exact number value. Integers which fit within a long are stored as
+	 * a long, all other numbers are stored with the precision of the given
+	 * context.
+	 *
+	 * @param value
+	 *     - The string to parse into a number value.
+	 * @param context
+	 *     - The precision to parse the number with.
+	 * @return The number value.
+	 * @throws NumberFormatException
+	 *     - If the string is not a valid number.
+	 */
+	public static Val valueOf(String value, EquationContext context)
+	{
+		int start = value.startsWith("-") ? 1 : 0;
+		int length = value.length() - start;
+
+		if (length > 0 && length <= MAX_LONG_DIGITS)
+		{
+			boolean integer = true;
+			for (int i = start; i < value.length() && integer; i++)
+				integer = value.charAt(i) >= '0' && value.charAt(i) <= '9';
+
+			if (integer)
+				return valueOf(Long.parseLong(value));
+		}
+
+		return new Val(context.valueOf(value));
+	}
+
 	// =================================================================================================================
 
 	/**
@@ -399,8 +758,35 @@ public class Val
 	 */
 	public static final int LIST = 3;
 
+	/**
+	 * A matrix of real numbers. The size of a matrix is its number of rows, and
+	 * each element is a row, returned as a vector. Matrices which contain any
+	 * double precision number are stored as a primitive double array. Value always
+	 * returns null.
+	 */
+	public static final int MATRIX = 4;
+
 	// =================================================================================================================
 
+	private static final EquationContext CONTEXT = EquationContext.DEFAULT;
+	private static final int MAX_LONG_DIGITS = 18;
+	private static final byte BIG_FLOAT_STORAGE = 0;
+	private static final byte LONG_STORAGE = 1;
+	private static final byte DOUBLE_STORAGE = 2;
+	private static final int CACHE_LOW = -128;
+	private static final int CACHE_HIGH = 1024;
+	private static final Val[] EXACT_CACHE = new Val[CACHE_HIGH - CACHE_LOW + 1];
+	private static final Val[] DOUBLE_CACHE = new Val[CACHE_HIGH - CACHE_LOW + 1];
+
+	static
+	{
+		for (int i = 0; i < EXACT_CACHE.length; i++)
+		{
+			EXACT_CACHE[i] = new Val(i + CACHE_LOW);
+			DOUBLE_CACHE[i] = new Val(null, null, 0, i + CACHE_LOW, DOUBLE_STORAGE, NUMBER);
+		}
+	}
+
 	/**
 	 * A constant for an empty list value.
 	 */
@@ -409,17 +795,17 @@ public class Val
 	/**
 	 * A constant for a number zero value.
 	 */
-	public static final Val ZERO = new Val(0);
+	public static final Val ZERO = valueOf(0);
 
 	/**
 	 * A constant for a number one value.
 	 */
-	public static final Val ONE = new Val(1);
+	public static final Val ONE = valueOf(1);
 
 	/**
 	 * A constant for a number negative one value.
 	 */
-	public static final Val NEGATIVE_ONE = new Val(-1);
+	public static final Val NEGATIVE_ONE = valueOf(-1);
 
 	/**
 	 * A constant for a complex number zero.
@@ -436,32 +822,62 @@ public class Val
 	 */
 	public static final Val I_COMPLEX = new Val(COMPLEX_NUMBER, ZERO, ONE);
 
+	/**
+	 * The number of significant digits double precision numbers are formatted
+	 * with.
+	 */
+	public static final int DOUBLE_SIGNIFICANT_DIGITS = 15;
+
 	/**
 	 * A constant for the number pi
 	 */
-	public static final Val PI = new Val(3.1415926535897932384626433832795028841971693993751058209749445923078);
+	public static final Val PI = new Val(CONTEXT.getPi());
 
 	/**
 	 * A constant for the numer E.
 	 */
-	public static final Val E = new Val(2.7182818284590452353602874713526624977572470936999595749669676277240);
+	public static final Val E = new Val(CONTEXT.getE());
 
 	// =================================================================================================================
 
 	/**
 	 * The array of elements which is stored within this object. Kepyt private to
-	 * ensure this object stays read-only.
+	 * ensure this object stays read-only. Numbers do not store an element array,
+	 * as their only element is themselves.
 	 */
 	private final Val[] elements;
 
 	/**
 	 * Gets the actual value of this object as a BigFloat. This method returns null
-	 * if this object is not a Number type.
+	 * if this object is not a Number type, or if it is a Number stored in double
+	 * precision or as an integer.
 	 *
 	 * @return The BigFloat value of this object.
+	 * @see #bigValue()
 	 */
 	public final BigFloat value;
 
+	/**
+	 * The value of this object if it is a Number stored as an integer.
+	 */
+	private final long integer;
+
+	/**
+	 * The value of this object if it is a Number stored in double precision.
+	 */
+	private final double number;
+
+	/**
+	 * Whether or not this object is stored using exact precision, either as a
+	 * BigFloat or as an integer.
+	 */
+	private final boolean exact;
+
+	/**
+	 * Whether or not this object is a Number stored as an integer.
+	 */
+	private final boolean integral;
+
 	/**
 	 * Gets the type of this object.
 	 *
@@ -476,6 +892,18 @@ public class Val
 	 */
 	public final int size;
 
+	/**
+	 * The number of columns of this object if it is a Matrix, or 0 otherwise.
+	 */
+	private final int columns;
+
+	/**
+	 * The cells of this object, in row-major order, if it is a Matrix stored in
+	 * double precision. Exact matrices store their cells within the element array
+	 * instead.
+	 */
+	private final double[] cells;
+
 	/**
 	 * Creates a new number value.
 	 *
@@ -484,18 +912,19 @@ public class Val
 	 */
 	public Val(String value)
 	{
-		this(BigFloat.context(128).valueOf(value));
+		this(CONTEXT.valueOf(value));
 	}
 
 	/**
-	 * Creates a new number value.
+	 * Creates a new number value. The value is stored as an integer until an
+	 * operation on it no longer fits within a long.
 	 *
 	 * @param value
 	 *     - The value as a long.
 	 */
 	public Val(long value)
 	{
-		this(BigFloat.context(128).valueOf(value));
+		this(null, null, value, 0, LONG_STORAGE, NUMBER);
 	}
 
 	/**
@@ -506,7 +935,7 @@ public class Val
 	 */
 	public Val(double value)
 	{
-		this(BigFloat.context(128).valueOf(value));
+		this(CONTEXT.valueOf(value));
 	}
 
 	/**
@@ -517,8 +946,7 @@ public class Val
 	 */
 	public Val(BigFloat value)
 	{
-		this(new Val[1], value, NUMBER);
-		elements[0] = this;
+		this(null, value, 0, 0, BIG_FLOAT_STORAGE, NUMBER);
 	}
 
 	/**
@@ -532,7 +960,7 @@ public class Val
 	 */
 	public Val(int type, Val... elements)
 	{
-		this(elements, null, type);
+		this(elements, null, 0, 0, BIG_FLOAT_STORAGE, type);
 	}
 
 	/**
@@ -540,29 +968,49 @@ public class Val
 	 * object types.
 	 *
 	 * @param elements
-	 *     - The elements within this object.
+	 *     - The elements within this object, or null if this is a number.
 	 * @param value
-	 *     - The value as a BigFloat.
+	 *     - The value as a BigFloat, or null if this is not a BigFloat number.
+	 * @param integer
+	 *     - The value of an integer number.
+	 * @param number
+	 *     - The value of a double precision number.
+	 * @param storage
+	 *     - How the value of this number is stored. Ignored if this is not a number.
 	 * @param type
 	 *     - The type of value this value represents.
 	 */
-	private Val(Val[] elements, BigFloat value, int type)
+	private Val(Val[] elements, BigFloat value, long integer, double number, byte storage, int type)
 	{
 		this.elements = elements;
 		this.value = value;
+		this.integer = integer;
+		this.number = number;
 		this.type = type;
-		size = elements.length;
+		columns = 0;
+		cells = null;
+		exact = type != NUMBER || storage != DOUBLE_STORAGE;
+		integral = type == NUMBER && storage == LONG_STORAGE;
 
-		switch (type)
+		if (type == NUMBER && storage == BIG_FLOAT_STORAGE && value == null)
+			throw new EquationParserException("Numbers must have a value!");
+
+		if (type == NUMBER)
 		{
-			case NUMBER:
-				if (elements.length != 1)
-					throw new EquationParserException("Numbers may only contain one element!");
+			if (elements != null)
+				throw new EquationParserException("Numbers may not contain elements!");
 
-				if (value == null)
-					throw new EquationParserException("Numbers may not contain a null value!");
-				break;
+			size = 1;
+			return;
+		}
+
+		if (elements == null)
+			throw new EquationParserException("Only numbers may have no elements!");
+
+		size = elements.length;
 
+		switch (type)
+		{
 			case VECTOR:
 				if (elements.length <= 0)
 					throw new EquationParserException("Vectors must contain at least one element!");
@@ -609,9 +1057,172 @@ public class Val
 		}
 	}
 
+	/**
+	 * Creates a new matrix value. Either the element array or the cell array must
+	 * be given, but not both.
+	 *
+	 * @param rows
+	 *     - The number of rows.
+	 * @param columns
+	 *     - The number of columns.
+	 * @param elements
+	 *     - The exact cells of the matrix in row-major order, or null if the matrix
+	 *     is stored in double precision.
+	 * @param cells
+	 *     - The double precision cells of the matrix in row-major order, or null if
+	 *     the matrix is exact.
+	 */
+	private Val(int rows, int columns, Val[] elements, double[] cells)
+	{
+		this.elements = elements;
+		this.cells = cells;
+		this.columns = columns;
+		value = null;
+		integer = 0;
+		number = 0;
+		type = MATRIX;
+		size = rows;
+		exact = cells == null;
+		integral = false;
+	}
+
+	/**
+	 * Creates a new matrix value from the given cells. If any cell is a double
+	 * precision number, the matrix is stored in double precision.
+	 *
+	 * @param rows
+	 *     - The number of rows.
+	 * @param columns
+	 *     - The number of columns.
+	 * @param cells
+	 *     - The cells of the matrix, in row-major order.
+	 * @return The new matrix value.
+	 * @throws EquationParserException
+	 *     - If the matrix is empty, if the number of cells does not match the size
+	 *     of the matrix, or if any cell is not a number.
+	 */
+	public static Val matrix(int rows, int columns, Val... cells)
+	{
+		if (rows <= 0 || columns <= 0)
+			throw new EquationParserException("Matrices must contain at least one row and column!");
+
+		if (cells.length != rows * columns)
+			throw new EquationParserException("Number of cells does not match the size of the matrix!");
+
+		boolean exact = true;
+		for (Val v : cells)
+		{
+			if (v.type != NUMBER)
+				throw new EquationParserException("Matrices may only contain numbers!");
+
+			exact = exact && v.exact;
+		}
+
+		if (exact)
+			return new Val(rows, columns, cells.clone(), null);
+
+		double[] d = new double[cells.length];
+		for (int i = 0; i < d.length; i++)
+			d[i] = cells[i].doubleValue();
+
+		return new Val(rows, columns, null, d);
+	}
+
+	/**
+	 * Creates a new matrix value which is stored in double precision, without
+	 * copying the given array.
+	 *
+	 * @param rows
+	 *     - The number of rows.
+	 * @param columns
+	 *     - The number of columns.
+	 * @param cells
+	 *     - The cells of the matrix, in row-major order.
+	 * @return The new matrix value.
+	 */
+	static Val matrix(int rows, int columns, double[] cells)
+	{
+		return new Val(rows, columns, null, cells);
+	}
+
+	/**
+	 * Creates a new exact matrix value, without copying the given array.
+	 *
+	 * @param rows
+	 *     - The number of rows.
+	 * @param columns
+	 *     - The number of columns.
+	 * @param cells
+	 *     - The cells of the matrix, in row-major order. Must all be exact numbers.
+	 * @return The new matrix value.
+	 */
+	static Val exactMatrix(int rows, int columns, Val[] cells)
+	{
+		return new Val(rows, columns, cells, null);
+	}
+
+	/**
+	 * Gets the number of columns within this matrix.
+	 *
+	 * @return The number of columns, or 0 if this value is not a Matrix.
+	 */
+	public int getColumns()
+	{
+		return columns;
+	}
+
+	/**
+	 * Gets a single cell of this matrix.
+	 *
+	 * @param row
+	 *     - The row of the cell.
+	 * @param column
+	 *     - The column of the cell.
+	 * @return The number within the cell.
+	 * @throws IndexOutOfBoundsException
+	 *     - If this value is not a Matrix, or the cell is outside of this matrix.
+	 */
+	public Val get(int row, int column)
+	{
+		if (type != MATRIX)
+			throw new IndexOutOfBoundsException("Only matrices contain cells!");
+
+		if (row < 0 || row >= size || column < 0 || column >= columns)
+			throw new IndexOutOfBoundsException("Cell is outside of matrix!");
+
+		int index = row * columns + column;
+		return cells == null ? elements[index] : ofDouble(cells[index]);
+	}
+
+	/**
+	 * Gets the exact cells of this matrix in row-major order, or null if this
+	 * matrix is stored in double precision. The array must not be modified.
+	 */
+	Val[] exactCells()
+	{
+		return cells == null ? elements : null;
+	}
+
+	/**
+	 * Gets the cells of this matrix in row-major order as doubles. The array must
+	 * not be modified.
+	 */
+	double[] doubleCells()
+	{
+		if (cells != null)
+			return cells;
+
+		double[] d = new double[elements.length];
+		for (int i = 0; i < d.length; i++)
+			d[i] = elements[i].doubleValue();
+
+		return d;
+	}
+
 	/**
 	 * Gets an element within this object based on the given index. If this object
-	 * is a Number, getting element 0 will return this object.
+	 * is a Number, getting element 0 will return this object. If this object is a
+	 * Matrix, the row at the given index is returned as a vector.
 	 *
 	 * @param index
 	 *     - The index of the element.
@@ -619,19 +1230,217 @@ public class Val
 	 */
 	public Val get(int index)
 	{
+		if (type == MATRIX)
+		{
+			if (index < 0 || index >= size)
+				throw new IndexOutOfBoundsException("Row is outside of matrix!");
+
+			Val[] row = new Val[columns];
+			for (int i = 0; i < columns; i++)
+				row[i] = get(index, i);
+
+			return new Val(VECTOR, row);
+		}
+
+		if (elements == null)
+		{
+			if (index != 0)
+				throw new IndexOutOfBoundsException("Numbers only contain one element!");
+
+			return this;
+		}
+
 		return elements[index];
 	}
 
+	/**
+	 * Creates a vector which shares the elements of this list, without copying
+	 * them.
+	 *
+	 * @return The vector value.
+	 * @throws EquationParserException
+	 *     - If this list is empty, or the elements of this list are not all numbers
+	 *     or all complex numbers.
+	 */
+	Val toVector()
+	{
+		if (size == 0)
+			throw new EquationParserException("Cannot have zero-length vectors!");
+
+		int firstType = elements[0].type;
+		if (firstType != NUMBER && firstType != COMPLEX_NUMBER)
+			throw new EquationParserException("Vectors may only contain numbers or complex numbers!");
+
+		for (Val v : elements)
+			if (v.type != firstType)
+				throw new EquationParserException("All types within list must match to convert to vector!");
+
+		return new Val(elements, null, 0, 0, BIG_FLOAT_STORAGE, VECTOR);
+	}
+
+	/**
+	 * Converts all numbers within this value which are stored as an integer to the
+	 * given precision.
+	 *
+	 * @param context
+	 *     - The precision to convert to.
+	 * @return The converted value, or this value if there was nothing to convert.
+	 */
+	Val withContext(EquationContext context)
+	{
+		if (type == NUMBER)
+			return integral ? new Val(context.valueOf(integer)) : this;
+
+		if (type == MATRIX && cells != null)
+			return this;
+
+		Val[] converted = null;
+		for (int i = 0; i < elements.length; i++)
+		{
+			Val v = elements[i].withContext(context);
+			if (v == elements[i])
+				continue;
+
+			if (converted == null)
+				converted = elements.clone();
+
+			converted[i] = v;
+		}
+
+		if (converted == null)
+			return this;
+
+		if (type == MATRIX)
+			return new Val(size, columns, converted, null);
+
+		return new Val(converted, null, 0, 0, BIG_FLOAT_STORAGE, type);
+	}
+
+	/**
+	 * Checks if this value is stored using exact precision. Numbers stored in
+	 * double precision return false, all other values return true.
+	 *
+	 * @return True if this value is exact, false otherwise.
+	 */
+	public boolean isExact()
+	{
+		return exact;
+	}
+
+	/**
+	 * Gets the value of this number as a BigFloat, regardless of how it is stored.
+	 *
+	 * @return The BigFloat value of this number, or null if this value is not a
+	 *     Number type.
+	 */
+	public BigFloat bigValue()
+	{
+		if (type != NUMBER)
+			return null;
+
+		if (value != null)
+			return value;
+
+		return integral ? CONTEXT.valueOf(integer) : CONTEXT.valueOf(number);
+	}
+
+	/**
+	 * Gets the value of this number as a double.
+	 *
+	 * @return The double value of this number, or NaN if this value is not a
+	 *     Number type.
+	 */
+	public double doubleValue()
+	{
+		if (type != NUMBER)
+			return Double.NaN;
+
+		if (integral)
+			return integer;
+
+		return exact ? value.toDouble() : number;
+	}
+
+	/**
+	 * Checks if this value is an exact number which is stored as an integer.
+	 * Operations between integers are done using primitive arithmetic for as long
+	 * as the result fits within a long.
+	 *
+	 * @return True if this value is stored as an integer, false otherwise.
+	 */
+	public boolean isIntegral()
+	{
+		return integral;
+	}
+
+	/**
+	 * Gets the value of this number if it is stored as an integer.
+	 *
+	 * @return The integer value, or 0 if this value is not stored as an integer.
+	 * @see #isIntegral()
+	 */
+	long integerValue()
+	{
+		return integer;
+	}
+
+	/**
+	 * Checks if this value is a number, or a complex number, equal to zero.
+	 *
+	 * @return True if this value is zero, false otherwise.
+	 */
+	public boolean isZero()
+	{
+		if (type == COMPLEX_NUMBER)
+			return get(0).isZero() && get(1).isZero();
+
+		if (type != NUMBER)
+			return false;
+
+		if (integral)
+			return integer == 0;
+
+		return exact ? value.isZero() : number == 0;
+	}
+
 	@Override
 	public int hashCode()
 	{
-		final int prime = 31;
-		int result = 1;
-		result = prime * result + Arrays.hashCode(elements);
-		result = prime * result + size;
-		result = prime * result + type;
-		result = prime * result + (value == null ? 0 : value.hashCode());
-		return result;
+		switch (type)
+		{
+			case NUMBER:
+				return hashNumber(doubleValue());
+
+			case COMPLEX_NUMBER:
+				// Complex numbers without an imaginary part are equal to real numbers
+				if (elements[1].isZero())
+					return elements[0].hashCode();
+
+				return 31 * elements[0].hashCode() + elements[1].hashCode();
+
+			case MATRIX:
+			{
+				int result = 31 * size + columns;
+
+				for (int i = 0; i < size * columns; i++)
+					result = 31 * result + (cells == null ? elements[i].hashCode() : hashNumber(cells[i]));
+
+				return result * 31 + type;
+			}
+
+			default:
+				return Arrays.hashCode(elements) * 31 + type;
+		}
+	}
+
+	/**
+	 * Hashes a number by its double precision value, as numbers are equal to each
+	 * other across all storage types whenever their double precision values are
+	 * equal. Negative zero is hashed the same as zero.
+	 */
+	private static int hashNumber(double value)
+	{
+		return value == 0 ? 0 : Double.hashCode(value);
 	}
 
 	@Override
@@ -669,19 +1478,36 @@ public class Val
 				return false;
 		}
 
-		if (type == VECTOR || type == LIST)
+		if (type == VECTOR || type == LIST || type == COMPLEX_NUMBER && other.type == COMPLEX_NUMBER)
 		{
 			if (!Arrays.equals(elements, other.elements))
 				return false;
 		}
 
-		if (value == null)
+		if (type == MATRIX)
 		{
-			if (other.value != null)
+			if (size != other.size || columns != other.columns)
 				return false;
+
+			if (cells != null && other.cells != null)
+				return Arrays.equals(cells, other.cells);
+
+			for (int r = 0; r < size; r++)
+				for (int c = 0; c < columns; c++)
+					if (!get(r, c).equals(other.get(r, c)))
+						return false;
+		}
+
+		if (type == NUMBER && other.type == NUMBER)
+		{
+			if (integral && other.integral)
+				return integer == other.integer;
+
+			if (exact && other.exact)
+				return bigValue().isEqual(other.bigValue());
+
+			return doubleValue() == other.doubleValue();
 		}
-		else if (!value.isEqual(other.value))
-			return false;
 
 		return true;
 	}
@@ -696,96 +1522,132 @@ public class Val
 	 */
 	public String format(boolean comma)
 	{
-		switch (type)
-		{
-			case NUMBER:
-			{
-				StringBuilder sb = new StringBuilder(value.toString());
-
-				if (sb.length() >= 3 && sb.indexOf(".0") == sb.length() - 2)
-					sb.delete(sb.length() - 2, sb.length());
-
-				int dec = sb.indexOf(".");
-				if (dec == -1)
-					dec = sb.length();
-
-				if (comma)
-				{
-					for (int i = dec - 3; i > 0; i -= 3)
-						sb.insert(i, ',');
-				}
-
-				return sb.toString();
-			}
-
-			case VECTOR:
-			{
-				StringBuilder sb = new StringBuilder();
-				sb.append('(');
+		return format(comma ? FormatOptions.COMMAS : FormatOptions.DEFAULT);
+	}
 
-				for (int i = 0; i < size; i++)
-				{
-					if (i > 0)
-						sb.append(", ");
+	/**
+	 * Formats this variable into a readable string format. All nest variables, if
+	 * any, are formatted using the same configuration.
+	 *
+	 * @param options
+	 *     - The options to format this variable with.
+	 * @return The string representation of this variable.
+	 */
+	public String format(FormatOptions options)
+	{
+		StringBuilder sb = new StringBuilder();
 
-					sb.append(get(i).format(comma));
-				}
+		try
+		{
+			formatTo(sb, options);
+		}
+		catch (IOException e)
+		{
+			// A StringBuilder never throws
+			throw new UncheckedIOException(e);
+		}
 
-				sb.append(')');
-				return sb.toString();
-			}
+		return sb.toString();
+	}
 
-			case COMPLEX_NUMBER:
-			{
-				if (get(0).value.isZero() && get(1).value.isZero())
-					return "0";
+	/**
+	 * Writes this variable in a readable string format directly to the given
+	 * output. Lists, vectors, and matrices are written one element at a time,
+	 * without building a string for each element, so large results can be
+	 * streamed straight into a buffer or stream.
+	 *
+	 * @param out
+	 *     - The output to write to.
+	 * @param options
+	 *     - The options to format this variable, and all nested variables, with.
+	 * @throws IOException
+	 *     - If the output could not be written to.
+	 */
+	public void formatTo(Appendable out, FormatOptions options) throws IOException
+	{
+		new ValFormatter(out, options).write(this);
+	}
 
-				StringBuilder sb = new StringBuilder();
+	@Override
+	public String toString()
+	{
+		return format(true);
+	}
 
-				if (!get(0).value.isZero())
-					sb.append(get(0).format(comma));
+	/**
+	 * A growable buffer used to build list and vector values one element at a
+	 * time, without copying the elements for each new element.
+	 *
+	 * @author TheDudeFromCI
+	 */
+	public static class Builder
+	{
+		private static final Val[] EMPTY = new Val[0];
 
-				if (!get(1).value.isZero())
-				{
-					if (sb.length() != 0)
-						sb.append(" + ");
+		private Val[] elements;
+		private int size;
 
-					if (!get(1).equals(Val.ONE))
-						sb.append(get(1).format(comma));
-					sb.append('i');
-				}
+		/**
+		 * Creates a new, empty builder.
+		 */
+		public Builder()
+		{
+			this(8);
+		}
 
-				if (sb.length() == 0)
-					sb.append("0");
+		/**
+		 * Creates a new, empty builder.
+		 *
+		 * @param capacity
+		 *     - The number of elements expected to be added.
+		 */
+		public Builder(int capacity)
+		{
+			elements = new Val[Math.max(capacity, 1)];
+		}
 
-				return sb.toString();
-			}
+		/**
+		 * Adds an element to the end of this builder.
+		 *
+		 * @param v
+		 *     - The element to add.
+		 * @return This builder.
+		 */
+		public Builder add(Val v)
+		{
+			if (size == elements.length)
+				elements = Arrays.copyOf(elements, Math.max(size * 2, 8));
 
-			case LIST:
-			{
-				StringBuilder sb = new StringBuilder();
-				sb.append('[');
+			elements[size++] = v;
+			return this;
+		}
 
-				for (int i = 0; i < size; i++)
-				{
-					if (i > 0)
-						sb.append(", ");
+		/**
+		 * Gets the number of elements which have been added to this builder.
+		 *
+		 * @return The number of elements.
+		 */
+		public int size()
+		{
+			return size;
+		}
 
-					sb.append(get(i).format(comma));
-				}
+		/**
+		 * Creates a value containing all elements within this builder, and clears
+		 * this builder.
+		 *
+		 * @param type
+		 *     - The type of value to create. Should be either a List or a Vector.
+		 * @return The new value.
+		 */
+		public Val build(int type)
+		{
+			Val[] array = size == elements.length ? elements : Arrays.copyOf(elements, size);
 
-				sb.append(']');
-				return sb.toString();
-			}
+			elements = EMPTY;
+			size = 0;
 
-			default:
-				return "0";
+			return new Val(type, array);
 		}
 	}
-
-	@Override
-	public String toString()
-	{
-		return format(true);
-	}
 }
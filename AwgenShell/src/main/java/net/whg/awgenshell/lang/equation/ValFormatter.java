@@ -0,0 +1,283 @@
+package net.whg.awgenshell.lang.equation;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+/**
+ * Writes values as text directly into an output, one character run at a time,
+ * so large lists, vectors, and matrices never need a string for each of their
+ * elements.
+ *
+ * @author TheDudeFromCI
+ * @see Val#formatTo(Appendable, FormatOptions)
+ */
+final class ValFormatter
+{
+	private static final MathContext DOUBLE_CONTEXT = new MathContext(Val.DOUBLE_SIGNIFICANT_DIGITS);
+	private static final BigDecimal PLAIN_LIMIT = BigDecimal.TEN.pow(21);
+
+	private final Appendable out;
+	private final FormatOptions options;
+	private final MathContext precision;
+
+	/**
+	 * Creates a new value formatter.
+	 *
+	 * @param out
+	 *     - The output to write to.
+	 * @param options
+	 *     - The options to format values with.
+	 */
+	ValFormatter(Appendable out, FormatOptions options)
+	{
+		this.out = out;
+		this.options = options;
+
+		precision = options.getPrecision() == 0 ? null : new MathContext(options.getPrecision());
+	}
+
+	/**
+	 * Writes a value, and all of its nested values, to the output.
+	 *
+	 * @param x
+	 *     - The value to write.
+	 * @throws IOException
+	 *     - If the output could not be written to.
+	 */
+	void write(Val x) throws IOException
+	{
+		switch (x.type)
+		{
+			case Val.NUMBER:
+				writeNumber(x);
+				break;
+
+			case Val.VECTOR:
+				writeElements(x, '(', ')');
+				break;
+
+			case Val.MATRIX:
+				writeMatrix(x);
+				break;
+
+			case Val.COMPLEX_NUMBER:
+				writeComplex(x);
+				break;
+
+			case Val.LIST:
+				writeElements(x, '[', ']');
+				break;
+
+			default:
+				out.append('0');
+		}
+	}
+
+	private void writeElements(Val x, char open, char close) throws IOException
+	{
+		out.append(open);
+
+		for (int i = 0; i < x.size; i++)
+		{
+			if (i > 0)
+				out.append(", ");
+
+			write(x.get(i));
+		}
+
+		out.append(close);
+	}
+
+	private void writeMatrix(Val x) throws IOException
+	{
+		out.append('(');
+
+		for (int r = 0; r < x.size; r++)
+		{
+			if (r > 0)
+				out.append(", ");
+
+			out.append('(');
+
+			for (int c = 0; c < x.getColumns(); c++)
+			{
+				if (c > 0)
+					out.append(", ");
+
+				write(x.get(r, c));
+			}
+
+			out.append(')');
+		}
+
+		out.append(')');
+	}
+
+	private void writeComplex(Val x) throws IOException
+	{
+		Val real = x.get(0);
+		Val imaginary = x.get(1);
+
+		if (real.isZero() && imaginary.isZero())
+		{
+			out.append('0');
+			return;
+		}
+
+		if (!real.isZero())
+			write(real);
+
+		if (!imaginary.isZero())
+		{
+			if (!real.isZero())
+				out.append(" + ");
+
+			if (!imaginary.equals(Val.ONE))
+				write(imaginary);
+
+			out.append('i');
+		}
+	}
+
+	private void writeNumber(Val x) throws IOException
+	{
+		if (isNonFinite(x))
+		{
+			out.append(Double.toString(x.doubleValue()));
+			return;
+		}
+
+		if (precision == null && !options.isScientific())
+		{
+			if (x.isIntegral())
+			{
+				if (!options.hasCommas() && out instanceof StringBuilder)
+					((StringBuilder) out).append(x.integerValue());
+				else
+					writeDigits(Long.toString(x.integerValue()));
+			}
+			else if (x.isExact())
+				writeDigits(x.value.toString());
+			else
+				writeDigits(formatDouble(x.doubleValue()));
+
+			return;
+		}
+
+		BigDecimal d;
+		if (x.isIntegral())
+			d = BigDecimal.valueOf(x.integerValue());
+		else if (x.isExact())
+			d = x.value.toBigDecimal();
+		else
+			d = new BigDecimal(x.doubleValue()).round(DOUBLE_CONTEXT);
+
+		if (precision != null)
+			d = d.round(precision);
+
+		if (options.isScientific())
+			writeScientific(d);
+		else
+			writeDigits(plain(d));
+	}
+
+	/**
+	 * Checks if a number is infinite or not a number. These are written the same
+	 * way in every mode, as they have no digits to round or insert commas into.
+	 */
+	private static boolean isNonFinite(Val x)
+	{
+		if (x.isIntegral())
+			return false;
+
+		if (x.isExact())
+			return x.value.isInfinity() || x.value.isNaN();
+
+		return !Double.isFinite(x.doubleValue());
+	}
+
+	/**
+	 * Writes a number as a mantissa with a single integer digit, followed by its
+	 * exponent, such as 1.2345E+6.
+	 */
+	private void writeScientific(BigDecimal d) throws IOException
+	{
+		if (d.signum() == 0)
+		{
+			out.append("0E+0");
+			return;
+		}
+
+		d = d.stripTrailingZeros();
+		String digits = d.unscaledValue().abs().toString();
+		long exponent = (long) digits.length() - 1 - d.scale();
+
+		if (d.signum() < 0)
+			out.append('-');
+
+		out.append(digits.charAt(0));
+
+		if (digits.length() > 1)
+			out.append('.').append(digits, 1, digits.length());
+
+		out.append('E').append(exponent < 0 ? '-' : '+').append(Long.toString(Math.abs(exponent)));
+	}
+
+	/**
+	 * Writes the digits of a formatted number, removing a trailing ".0" and
+	 * inserting commas into the integer part if needed.
+	 */
+	private void writeDigits(String s) throws IOException
+	{
+		int end = s.length();
+		if (end >= 3 && s.endsWith(".0"))
+			end -= 2;
+
+		int point = s.indexOf('.');
+		if (point >= end)
+			point = -1;
+
+		int exponent = s.indexOf('E');
+
+		if (!options.hasCommas())
+		{
+			out.append(s, 0, end);
+			return;
+		}
+
+		int start = s.charAt(0) == '-' ? 1 : 0;
+		int integerEnd = point != -1 ? point : exponent != -1 ? exponent : end;
+
+		out.append(s, 0, start);
+
+		for (int i = start; i < integerEnd; i++)
+		{
+			if (i > start && (integerEnd - i) % 3 == 0)
+				out.append(',');
+
+			out.append(s.charAt(i));
+		}
+
+		out.append(s, integerEnd, end);
+	}
+
+	/**
+	 * Formats a double precision number to at most
+	 * {@link Val#DOUBLE_SIGNIFICANT_DIGITS} significant digits, which hides the
+	 * rounding noise of binary floating point numbers.
+	 */
+	private static String formatDouble(double value)
+	{
+		return plain(new BigDecimal(value).round(DOUBLE_CONTEXT));
+	}
+
+	private static String plain(BigDecimal d)
+	{
+		if (d.signum() == 0)
+			return "0";
+
+		d = d.stripTrailingZeros();
+		return d.abs().compareTo(PLAIN_LIMIT) < 0 ? d.toPlainString() : d.toString();
+	}
+}
@@ -0,0 +1,16 @@
+package net.whg.awgenshell.lang.equation;
+
+public class VarianceFunction implements IAggregateFunction
+{
+	@Override
+	public String getName()
+	{
+		return "var";
+	}
+
+	@Override
+	public Val result(Aggregate aggregate)
+	{
+		return aggregate.getVariance();
+	}
+}
@@ -10,6 +10,9 @@ import net.whg.awgenshell.arg.FormattedStringArgument;
 import net.whg.awgenshell.arg.StringArgument;
 import net.whg.awgenshell.arg.VariableArgument;
 import net.whg.awgenshell.exec.CommandHandler;
+import net.whg.awgenshell.exec.CommandMetrics;
+import net.whg.awgenshell.exec.CommandStats;
+import net.whg.awgenshell.exec.Module;
 import net.whg.awgenshell.exec.ShellEnvironment;
 import net.whg.awgenshell.util.CommandResult;
 
@@ -140,6 +143,7 @@ public class Command
 	private final String commandName;
 	private final ArgumentValue[] arguments;
 	private final CommandHandler command;
+	private CommandStats stats;
 
 	/**
 	 * Creates a new command grammer instance.
@@ -175,6 +179,40 @@ public class Command
 			return new CommandResult("", false, true);
 		}
 
+		CommandMetrics metrics = CommandMetrics.getInstance();
+		if (!metrics.isEnabled())
+			return executeHandler(environment);
+
+		if (stats == null)
+		{
+			Module module = environment.getModule(command);
+			stats = metrics.getCommandStats(module == null ? "none" : module.getName(), command.getName());
+		}
+
+		boolean nested = metrics.enter();
+		long start = System.nanoTime();
+		CommandResult result;
+
+		try
+		{
+			result = executeHandler(environment);
+		}
+		finally
+		{
+			metrics.exit();
+		}
+
+		stats.record(System.nanoTime() - start, !result.isNormalExit(), nested);
+
+		return result;
+	}
+
+	/**
+	 * Executes the command handler of this command, catching any errors it
+	 * throws.
+	 */
+	private CommandResult executeHandler(ShellEnvironment environment)
+	{
 		try
 		{
 			return command.execute(environment, arguments);
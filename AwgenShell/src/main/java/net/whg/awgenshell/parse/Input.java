@@ -110,6 +110,7 @@ public class Input
 
 	private ShellEnvironment env;
 	private List<ExpressionSequence> expressions = new ArrayList<>();
+	private int executionDepth;
 
 	/**
 	 * Creates a new Input grammer instance.
@@ -157,6 +158,30 @@ public class Input
 	 * @return The result of the last expression within this set.
 	 */
 	public CommandResult execute(boolean isDirectCommand)
+	{
+		executionDepth++;
+		try
+		{
+			return executeExpressions(isDirectCommand);
+		}
+		finally
+		{
+			executionDepth--;
+		}
+	}
+
+	/**
+	 * Checks if this input is currently being executed. This is used to avoid
+	 * reentering a shared, cached input while it is still running.
+	 *
+	 * @return True if this input is currently being executed, false otherwise.
+	 */
+	public boolean isExecuting()
+	{
+		return executionDepth > 0;
+	}
+
+	private CommandResult executeExpressions(boolean isDirectCommand)
 	{
 		ExpressionSeperator last = ExpressionSeperator.NORMAL;
 		boolean lastState = true;
@@ -0,0 +1,161 @@
+package net.whg.awgenshell.parse;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded, least-recently-used cache of parsed inputs, keyed by the source
+ * line they were parsed from. Parsed inputs are bound to the commands which
+ * were registered at the time of parsing, so the cache is tagged with a command
+ * registry version and is cleared whenever that version changes.
+ *
+ * @author TheDudeFromCI
+ */
+public class InputCache
+{
+	/**
+	 * The default number of parsed inputs which are kept within a cache.
+	 */
+	public static final int DEFAULT_CAPACITY = 256;
+
+	/**
+	 * The default maximum length of a line that may be stored within a cache.
+	 * Longer lines are still parsed, but never cached.
+	 */
+	public static final int DEFAULT_MAX_LINE_LENGTH = 4096;
+
+	private final Map<String, Input> inputs;
+	private final int maxLineLength;
+	private int registryVersion;
+	private long hits;
+	private long misses;
+
+	/**
+	 * Creates a new input cache with the default capacity and maximum line length.
+	 */
+	public InputCache()
+	{
+		this(DEFAULT_CAPACITY, DEFAULT_MAX_LINE_LENGTH);
+	}
+
+	/**
+	 * Creates a new input cache.
+	 *
+	 * @param capacity
+	 *     - The maximum number of parsed inputs to store before the least recently
+	 *     used input is dropped. A capacity of zero disables caching.
+	 * @param maxLineLength
+	 *     - The maximum length of a line which may be cached.
+	 */
+	public InputCache(int capacity, int maxLineLength)
+	{
+		if (capacity < 0)
+			throw new IllegalArgumentException("Capacity cannot be negative!");
+
+		this.maxLineLength = maxLineLength;
+
+		inputs = new LinkedHashMap<String, Input>(16, 0.75f, true)
+		{
+			private static final long serialVersionUID = -4472693541006542263L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Input> eldest)
+			{
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * Gets the parsed input for the given line, if it is stored within this cache.
+	 * If the given registry version does not match the version this cache was
+	 * filled with, the cache is cleared first.
+	 *
+	 * @param line
+	 *     - The source line.
+	 * @param registryVersion
+	 *     - The current version of the command registry.
+	 * @return The cached input, or null if this line is not cached.
+	 */
+	public Input get(String line, int registryVersion)
+	{
+		if (this.registryVersion != registryVersion)
+		{
+			inputs.clear();
+			this.registryVersion = registryVersion;
+		}
+
+		Input input = inputs.get(line);
+
+		if (input == null)
+			misses++;
+		else
+			hits++;
+
+		return input;
+	}
+
+	/**
+	 * Stores a newly parsed input within this cache. Lines which are longer than
+	 * the maximum line length are ignored.
+	 *
+	 * @param line
+	 *     - The source line.
+	 * @param input
+	 *     - The input which was parsed from the line.
+	 * @param registryVersion
+	 *     - The version of the command registry the input was parsed with.
+	 */
+	public void put(String line, Input input, int registryVersion)
+	{
+		if (line.length() > maxLineLength)
+			return;
+
+		if (this.registryVersion != registryVersion)
+		{
+			inputs.clear();
+			this.registryVersion = registryVersion;
+		}
+
+		inputs.put(line, input);
+	}
+
+	/**
+	 * Removes all parsed inputs from this cache. Hit and miss counters are not
+	 * reset.
+	 */
+	public void clear()
+	{
+		inputs.clear();
+	}
+
+	/**
+	 * Gets the number of parsed inputs currently stored within this cache.
+	 *
+	 * @return The number of cached inputs.
+	 */
+	public int getSize()
+	{
+		return inputs.size();
+	}
+
+	/**
+	 * Gets the number of lookups which found a cached input.
+	 *
+	 * @return The number of cache hits.
+	 */
+	public long getHits()
+	{
+		return hits;
+	}
+
+	/**
+	 * Gets the number of lookups which did not find a cached input.
+	 *
+	 * @return The number of cache misses.
+	 */
+	public long getMisses()
+	{
+		return misses;
+	}
+}
@@ -0,0 +1,81 @@
+package net.whg.awgenshell.perms;
+
+/**
+ * A permission check for a single, fixed permission node which remembers the
+ * result of the last check. The result is tagged with the permissions
+ * collection and the version of that collection it was computed against, so
+ * repeated checks against the same sender are only recomputed after the
+ * sender's permissions are modified.
+ *
+ * @author TheDudeFromCI
+ */
+public class PermissionCheck
+{
+	/**
+	 * An immutable result of a single permission check.
+	 *
+	 * @author TheDudeFromCI
+	 */
+	private static class Snapshot
+	{
+		private final Permissions permissions;
+		private final int version;
+		private final boolean result;
+
+		private Snapshot(Permissions permissions, int version, boolean result)
+		{
+			this.permissions = permissions;
+			this.version = version;
+			this.result = result;
+		}
+	}
+
+	private final PermissionNode node;
+	private volatile Snapshot snapshot;
+
+	/**
+	 * Creates a new permission check.
+	 *
+	 * @param node
+	 *     - The permission node to check for. Must be a literal.
+	 */
+	public PermissionCheck(PermissionNode node)
+	{
+		if (node == null)
+			throw new IllegalArgumentException("Permission node cannot be null!");
+
+		this.node = node;
+	}
+
+	/**
+	 * Gets the permission node this check is testing for.
+	 *
+	 * @return The permission node.
+	 */
+	public PermissionNode getNode()
+	{
+		return node;
+	}
+
+	/**
+	 * Checks if the given permissions collection encapsulates the permission node
+	 * of this check.
+	 *
+	 * @param permissions
+	 *     - The permissions to check.
+	 * @return True if the permission is granted, false otherwise.
+	 * @see Permissions#hasPermission(PermissionNode)
+	 */
+	public boolean test(Permissions permissions)
+	{
+		int version = permissions.getVersion();
+
+		Snapshot s = snapshot;
+		if (s != null && s.permissions == permissions && s.version == version)
+			return s.result;
+
+		boolean result = permissions.hasPermission(node);
+		snapshot = new Snapshot(permissions, version, result);
+		return result;
+	}
+}
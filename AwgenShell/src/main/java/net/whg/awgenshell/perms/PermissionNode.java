@@ -1,5 +1,9 @@
 package net.whg.awgenshell.perms;
 
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
 /**
  * This class represents an immutable single permission node which an indvidual
  * can have. A permission node, represented by a string of alphanumerical words
@@ -10,6 +14,56 @@ package net.whg.awgenshell.perms;
  */
 public class PermissionNode
 {
+	/**
+	 * The maximum number of permission nodes which are kept within the canonical
+	 * node pool at once.
+	 */
+	public static final int MAX_POOL_SIZE = 8192;
+
+	static final String WILDCARD = "*";
+	private static final Map<String, WeakReference<PermissionNode>> POOL = new WeakHashMap<>();
+
+	/**
+	 * Gets the canonical permission node for the given string. Permission nodes
+	 * which are still in use elsewhere are reused instead of being compiled again,
+	 * which makes this the preferred way to create permission nodes for dynamic
+	 * permission checks.
+	 *
+	 * @param node
+	 *     - The permission node string to compile.
+	 * @return The permission node.
+	 * @throws IllegalArgumentException
+	 *     - If the given string is not a valid permission node.
+	 * @see #PermissionNode(String)
+	 */
+	public static PermissionNode of(String node)
+	{
+		synchronized (POOL)
+		{
+			WeakReference<PermissionNode> ref = POOL.get(node);
+			PermissionNode n = ref == null ? null : ref.get();
+
+			if (n != null)
+				return n;
+		}
+
+		PermissionNode n = new PermissionNode(node);
+
+		synchronized (POOL)
+		{
+			WeakReference<PermissionNode> ref = POOL.get(node);
+			PermissionNode existing = ref == null ? null : ref.get();
+
+			if (existing != null)
+				return existing;
+
+			if (POOL.size() < MAX_POOL_SIZE)
+				POOL.put(n.raw, new WeakReference<>(n));
+		}
+
+		return n;
+	}
+
 	private final String raw;
 	private final String[] elements;
 	private final boolean isLiteral;
@@ -48,21 +102,74 @@ public class PermissionNode
 	 *
 	 * @param node
 	 *     - The permission node string to compile.
+	 * @throws IllegalArgumentException
+	 *     - If the given string is not a valid permission node.
 	 */
 	public PermissionNode(String node)
 	{
 		raw = node;
-		validate();
-
-		elements = node.replace("!", "").split("\\.");
-		isLiteral = !(node.contains("*") || node.contains("!"));
 		isBlacklist = node.startsWith("!");
+		elements = compile(node, isBlacklist ? 1 : 0);
+
+		boolean literal = !isBlacklist;
+		for (String e : elements)
+			if (e == WILDCARD)
+				literal = false;
+
+		isLiteral = literal;
 	}
 
-	private void validate()
+	/**
+	 * Validates the given permission node string and splits it into interned
+	 * words.
+	 */
+	private static String[] compile(String node, int start)
 	{
-		if (!raw.matches("\\!?([A-Za-z0-9_\\-]+|\\*)(\\.([A-Za-z0-9_\\-]+|\\*))*"))
-			throw new IllegalArgumentException("Not a valid permission node! '" + raw + "'");
+		int length = node.length();
+		int count = 1;
+
+		int i = start;
+		while (true)
+		{
+			int wordStart = i;
+
+			if (i < length && node.charAt(i) == '*')
+				i++;
+			else
+				while (i < length && isWordChar(node.charAt(i)))
+					i++;
+
+			if (i == wordStart)
+				throw new IllegalArgumentException("Not a valid permission node! '" + node + "'");
+
+			if (i == length)
+				break;
+
+			if (node.charAt(i) != '.')
+				throw new IllegalArgumentException("Not a valid permission node! '" + node + "'");
+
+			i++;
+			count++;
+		}
+
+		String[] elements = new String[count];
+		int wordStart = start;
+		for (int e = 0; e < count; e++)
+		{
+			int end = node.indexOf('.', wordStart);
+			if (end == -1)
+				end = length;
+
+			elements[e] = node.substring(wordStart, end).intern();
+			wordStart = end + 1;
+		}
+
+		return elements;
+	}
+
+	private static boolean isWordChar(char c)
+	{
+		return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_' || c == '-';
 	}
 
 	/**
@@ -76,6 +183,29 @@ public class PermissionNode
 		return isLiteral;
 	}
 
+	/**
+	 * Checks if this permission node is a blacklist node. A permission node is
+	 * considered a blacklist node if it starts with an exclamation mark.
+	 *
+	 * @return True if this permission is a blacklist node, false otherwise.
+	 */
+	public boolean isBlacklist()
+	{
+		return isBlacklist;
+	}
+
+	/**
+	 * Gets the words which make up this permission node, without the blacklist
+	 * marker. Each word is interned, so words can be compared by identity. The
+	 * returned array must not be modified.
+	 *
+	 * @return The words of this permission node.
+	 */
+	String[] getElements()
+	{
+		return elements;
+	}
+
 	/**
 	 * Checks if this permission node encapsulates the permission requirements of
 	 * another node. Encapsulation is considered true if either both permssion nodes
@@ -96,14 +226,14 @@ public class PermissionNode
 
 		for (int i = 0; i < elements.length; i++)
 		{
-			if (elements[i].equals("*"))
+			if (elements[i] == WILDCARD)
 			{
 				if (i == elements.length - 1)
 					return isBlacklist ? PermissionType.BLACKLIST : PermissionType.WHITELIST;
 			}
 			else
 			{
-				if (!elements[i].equals(other.elements[i]))
+				if (i >= other.elements.length || elements[i] != other.elements[i])
 					return PermissionType.NEUTRAL;
 			}
 		}
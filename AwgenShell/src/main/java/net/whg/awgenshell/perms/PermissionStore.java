@@ -0,0 +1,487 @@
+package net.whg.awgenshell.perms;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A collection of permission groups and users which is backed by a file. The
+ * file is made up of sections, where each section starts with a header line
+ * naming a group or a user, followed by one permission node per line. Groups
+ * and users may inheirate from any number of groups by listing them after a
+ * colon. Blank lines and lines starting with # are ignored. <br>
+ * <br>
+ * <code>
+ * group default<br>
+ * lang.*<br>
+ * !lang.exec<br>
+ * <br>
+ * group admin : default<br>
+ * lang.exec<br>
+ * <br>
+ * user TheDudeFromCI : admin, builder<br>
+ * region.12.build
+ * </code><br>
+ * <br>
+ * When the file is reloaded, only the differences to the previously loaded
+ * file are applied to the existing permission collections, so collections
+ * which have not changed are left untouched and references held elsewhere stay
+ * valid. Each group and user name keeps the same permission collection for the
+ * lifetime of the store. If a section is removed from the file, its collection
+ * is emptied, and is filled again if the section comes back.
+ *
+ * @author TheDudeFromCI
+ */
+public class PermissionStore implements Closeable
+{
+	private static final Logger logger = LoggerFactory.getLogger(PermissionStore.class);
+
+	/**
+	 * The time, in milliseconds, the backing file must go without changing before
+	 * it is reloaded by the watcher, so a file which is still being written is not
+	 * loaded half way through.
+	 */
+	public static final long RELOAD_DELAY = 100;
+
+	/**
+	 * A single group or user section, as read from the file.
+	 *
+	 * @author TheDudeFromCI
+	 */
+	private static class Section
+	{
+		private final List<String> parents = new ArrayList<>();
+		private final Set<PermissionNode> nodes = new LinkedHashSet<>();
+	}
+
+	private final Path file;
+	private final Map<String, Permissions> groups = new ConcurrentHashMap<>();
+	private final Map<String, Permissions> users = new ConcurrentHashMap<>();
+	private volatile Map<String, Section> loadedGroups = new HashMap<>();
+	private volatile Map<String, Section> loadedUsers = new HashMap<>();
+	private WatchService watcher;
+
+	/**
+	 * Creates a new permission store and loads the given file.
+	 *
+	 * @param file
+	 *     - The file to load permissions from.
+	 * @throws IOException
+	 *     - If the file could not be read.
+	 */
+	public PermissionStore(Path file) throws IOException
+	{
+		this.file = file;
+		reload();
+	}
+
+	/**
+	 * Gets the file this permission store is backed by.
+	 *
+	 * @return The file.
+	 */
+	public Path getFile()
+	{
+		return file;
+	}
+
+	/**
+	 * Gets the permissions of the group with the given name.
+	 *
+	 * @param name
+	 *     - The name of the group.
+	 * @return The permissions of the group, or null if there is no group with the
+	 *     given name.
+	 */
+	public Permissions getGroup(String name)
+	{
+		return loadedGroups.containsKey(name) ? groups.get(name) : null;
+	}
+
+	/**
+	 * Gets the permissions of the user with the given name.
+	 *
+	 * @param name
+	 *     - The name of the user.
+	 * @return The permissions of the user, or null if there is no user with the
+	 *     given name.
+	 */
+	public Permissions getUser(String name)
+	{
+		return loadedUsers.containsKey(name) ? users.get(name) : null;
+	}
+
+	/**
+	 * Gets the names of all groups within this store.
+	 *
+	 * @return An unmodifiable set of group names.
+	 */
+	public Set<String> getGroupNames()
+	{
+		return Collections.unmodifiableSet(loadedGroups.keySet());
+	}
+
+	/**
+	 * Gets the names of all users within this store.
+	 *
+	 * @return An unmodifiable set of user names.
+	 */
+	public Set<String> getUserNames()
+	{
+		return Collections.unmodifiableSet(loadedUsers.keySet());
+	}
+
+	/**
+	 * Reads the backing file again and applies all changes since the last load.
+	 * Groups and users which were removed from the file lose all of their
+	 * permission nodes and inheiratence, and are no longer listed by this store.
+	 * Their permission collections are kept, and are reused if they are added to
+	 * the file again. <br>
+	 * <br>
+	 * As permissions may be checked by other threads while changes are applied,
+	 * all additions are applied before any removals, and blacklist nodes are added
+	 * first and removed last. This way, a permission which is denied both before
+	 * and after the reload is never granted part way through it.
+	 *
+	 * @throws IOException
+	 *     - If the file could not be read. In this case, no changes are made.
+	 */
+	public synchronized void reload() throws IOException
+	{
+		Map<String, Section> newGroups = new LinkedHashMap<>();
+		Map<String, Section> newUsers = new LinkedHashMap<>();
+		parse(read(), newGroups, newUsers);
+
+		addNodes(groups, loadedGroups, newGroups, true);
+		addNodes(users, loadedUsers, newUsers, true);
+		addNodes(groups, loadedGroups, newGroups, false);
+		addNodes(users, loadedUsers, newUsers, false);
+
+		// Links which are only circular because of stale links are added once the
+		// stale links are gone.
+		addInheritance(groups, loadedGroups, newGroups, false);
+		addInheritance(users, loadedUsers, newUsers, false);
+
+		removeNodes(groups, loadedGroups, newGroups, false);
+		removeNodes(users, loadedUsers, newUsers, false);
+
+		removeStaleInheritance(users, loadedUsers, newUsers);
+		removeStaleInheritance(groups, loadedGroups, newGroups);
+
+		removeNodes(groups, loadedGroups, newGroups, true);
+		removeNodes(users, loadedUsers, newUsers, true);
+
+		addInheritance(groups, loadedGroups, newGroups, true);
+		addInheritance(users, loadedUsers, newUsers, true);
+
+		loadedGroups = newGroups;
+		loadedUsers = newUsers;
+
+		logger.debug("Loaded {} groups and {} users from {}.", newGroups.size(), newUsers.size(), file);
+	}
+
+	private CharBuffer read() throws IOException
+	{
+		return StandardCharsets.UTF_8.newDecoder().decode(ByteBuffer.wrap(Files.readAllBytes(file)));
+	}
+
+	private void parse(CharBuffer text, Map<String, Section> groups, Map<String, Section> users)
+	{
+		Section section = null;
+		int lineNumber = 0;
+		int length = text.length();
+		int pos = 0;
+
+		while (pos < length)
+		{
+			int end = pos;
+			while (end < length && text.charAt(end) != '\n')
+				end++;
+
+			lineNumber++;
+			String line = text.subSequence(pos, end).toString().trim();
+			pos = end + 1;
+
+			if (line.isEmpty() || line.charAt(0) == '#')
+				continue;
+
+			boolean user = line.startsWith("user ");
+			if (user || line.startsWith("group "))
+			{
+				section = parseHeader(line.substring(user ? 5 : 6), user ? users : groups, lineNumber);
+				continue;
+			}
+
+			if (section == null)
+			{
+				logger.warn("Permission node outside of a section in {}, line {}.", file, lineNumber);
+				continue;
+			}
+
+			try
+			{
+				section.nodes.add(PermissionNode.of(line));
+			}
+			catch (IllegalArgumentException e)
+			{
+				logger.warn("Invalid permission node in {}, line {}: '{}'", file, lineNumber, line);
+			}
+		}
+
+		removeUnknownParents(groups, groups);
+		removeUnknownParents(users, groups);
+	}
+
+	private Section parseHeader(String header, Map<String, Section> sections, int lineNumber)
+	{
+		int colon = header.indexOf(':');
+		String name = (colon == -1 ? header : header.substring(0, colon)).trim();
+
+		if (name.isEmpty() || name.indexOf(' ') != -1 || name.indexOf(',') != -1)
+		{
+			logger.warn("Invalid section name in {}, line {}: '{}'", file, lineNumber, name);
+			return null;
+		}
+
+		Section section = sections.get(name);
+		if (section == null)
+			sections.put(name, section = new Section());
+
+		if (colon != -1)
+		{
+			for (String parent : header.substring(colon + 1).split(","))
+			{
+				parent = parent.trim();
+				if (!parent.isEmpty() && !section.parents.contains(parent))
+					section.parents.add(parent);
+			}
+		}
+
+		return section;
+	}
+
+	private void removeUnknownParents(Map<String, Section> sections, Map<String, Section> groups)
+	{
+		for (Map.Entry<String, Section> entry : sections.entrySet())
+		{
+			List<String> parents = entry.getValue().parents;
+			for (int i = parents.size() - 1; i >= 0; i--)
+			{
+				if (groups.containsKey(parents.get(i)))
+					continue;
+
+				logger.warn("{} inheirates from unknown group '{}' in {}.", entry.getKey(), parents.get(i), file);
+				parents.remove(i);
+			}
+		}
+	}
+
+	private void removeStaleInheritance(Map<String, Permissions> perms, Map<String, Section> oldSections,
+			Map<String, Section> newSections)
+	{
+		for (Map.Entry<String, Section> entry : oldSections.entrySet())
+		{
+			Section updated = newSections.get(entry.getKey());
+			Permissions p = perms.get(entry.getKey());
+
+			for (String parent : entry.getValue().parents)
+				if (updated == null || !updated.parents.contains(parent))
+					p.removeInheritance(groups.get(parent));
+		}
+	}
+
+	private void addNodes(Map<String, Permissions> perms, Map<String, Section> oldSections,
+			Map<String, Section> newSections, boolean blacklist)
+	{
+		for (Map.Entry<String, Section> entry : newSections.entrySet())
+		{
+			Permissions p = perms.get(entry.getKey());
+			if (p == null)
+				perms.put(entry.getKey(), p = new Permissions());
+
+			Section old = oldSections.get(entry.getKey());
+			for (PermissionNode node : entry.getValue().nodes)
+				if (node.isBlacklist() == blacklist && (old == null || !old.nodes.contains(node)))
+					p.addPermissionNode(node);
+		}
+	}
+
+	private void removeNodes(Map<String, Permissions> perms, Map<String, Section> oldSections,
+			Map<String, Section> newSections, boolean blacklist)
+	{
+		// Collections of removed sections are emptied rather than removed, as they
+		// may still be held elsewhere, and are reused if the section comes back.
+		for (Map.Entry<String, Section> entry : oldSections.entrySet())
+		{
+			Permissions p = perms.get(entry.getKey());
+			Section updated = newSections.get(entry.getKey());
+
+			for (PermissionNode node : entry.getValue().nodes)
+				if (node.isBlacklist() == blacklist && (updated == null || !updated.nodes.contains(node)))
+					p.removePermissionNode(node);
+		}
+	}
+
+	private void addInheritance(Map<String, Permissions> perms, Map<String, Section> oldSections,
+			Map<String, Section> newSections, boolean warnCircular)
+	{
+		for (Map.Entry<String, Section> entry : newSections.entrySet())
+		{
+			Permissions p = perms.get(entry.getKey());
+			Section old = oldSections.get(entry.getKey());
+			List<String> parents = entry.getValue().parents;
+
+			for (int i = 0; i < parents.size(); i++)
+			{
+				String parent = parents.get(i);
+				if (old != null && old.parents.contains(parent))
+					continue;
+
+				try
+				{
+					p.addInheritance(groups.get(parent));
+				}
+				catch (IllegalArgumentException e)
+				{
+					if (!warnCircular)
+						continue;
+
+					logger.warn("{} cannot inheirate from '{}' in {}, as it would be circular.", entry.getKey(),
+							parent, file);
+					parents.remove(i--);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Starts watching the backing file for changes on a background thread. The
+	 * file is reloaded automatically whenever it is modified. Does nothing if this
+	 * store is already being watched.
+	 *
+	 * @throws IOException
+	 *     - If the file could not be watched.
+	 */
+	public synchronized void watch() throws IOException
+	{
+		if (watcher != null)
+			return;
+
+		Path directory = file.toAbsolutePath().getParent();
+		WatchService service = directory.getFileSystem().newWatchService();
+		directory.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+		watcher = service;
+
+		Thread thread = new Thread(() -> watchLoop(service), "PermissionStore-" + file.getFileName());
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	private void watchLoop(WatchService service)
+	{
+		Path name = file.getFileName();
+
+		try
+		{
+			while (true)
+			{
+				WatchKey key = service.take();
+
+				boolean changed = false;
+				for (WatchEvent<?> event : key.pollEvents())
+					if (event.kind() == StandardWatchEventKinds.OVERFLOW || name.equals(event.context()))
+						changed = true;
+
+				key.reset();
+
+				if (!changed)
+					continue;
+
+				try
+				{
+					awaitStable(service);
+					reload();
+				}
+				catch (IOException e)
+				{
+					logger.error("Failed to reload permissions from " + file + ".", e);
+				}
+			}
+		}
+		catch (InterruptedException | ClosedWatchServiceException e)
+		{
+			// Watching has been stopped.
+		}
+	}
+
+	/**
+	 * Waits until the backing file has gone {@link #RELOAD_DELAY} milliseconds
+	 * without any further events and without its size or modification time
+	 * changing, so editors which truncate the file before writing it, or write it
+	 * in several steps, are only reloaded once they are done.
+	 */
+	private void awaitStable(WatchService service) throws InterruptedException, IOException
+	{
+		long size = -1;
+		long modified = -1;
+
+		while (true)
+		{
+			WatchKey key;
+			while ((key = service.poll(RELOAD_DELAY, TimeUnit.MILLISECONDS)) != null)
+			{
+				key.pollEvents();
+				key.reset();
+			}
+
+			if (!Files.exists(file))
+			{
+				size = -1;
+				continue;
+			}
+
+			long newSize = Files.size(file);
+			long newModified = Files.getLastModifiedTime(file).toMillis();
+
+			if (newSize == size && newModified == modified)
+				return;
+
+			size = newSize;
+			modified = newModified;
+		}
+	}
+
+	/**
+	 * Stops watching the backing file for changes, if it is being watched.
+	 */
+	@Override
+	public synchronized void close() throws IOException
+	{
+		if (watcher == null)
+			return;
+
+		watcher.close();
+		watcher = null;
+	}
+}
@@ -0,0 +1,146 @@
+package net.whg.awgenshell.perms;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compiled, read-only view of a set of permission nodes. Nodes are stored as
+ * a tree of interned path segments, where each tree node is marked with the
+ * permission type of any permission node which ends at that location, so a
+ * literal permission can be checked with a single walk down the tree instead
+ * of comparing it against each permission node in turn.
+ *
+ * @author TheDudeFromCI
+ */
+class PermissionTrie
+{
+	/**
+	 * A single location within the permission tree.
+	 *
+	 * @author TheDudeFromCI
+	 */
+	private static class Node
+	{
+		private Map<String, Node> children;
+		private Node wildcard;
+		private PermissionType exact = PermissionType.NEUTRAL;
+		private PermissionType trailingWildcard = PermissionType.NEUTRAL;
+
+		private Node child(String segment)
+		{
+			if (segment == PermissionNode.WILDCARD)
+			{
+				if (wildcard == null)
+					wildcard = new Node();
+
+				return wildcard;
+			}
+
+			if (children == null)
+				children = new IdentityHashMap<>();
+
+			Node n = children.get(segment);
+			if (n == null)
+				children.put(segment, n = new Node());
+
+			return n;
+		}
+	}
+
+	private final Node root = new Node();
+	private final int version;
+	private final List<PermissionNode> nodes;
+
+	/**
+	 * Compiles a new permission tree.
+	 *
+	 * @param version
+	 *     - The version of the permission collection this tree was compiled from.
+	 * @param nodes
+	 *     - The permission nodes to compile.
+	 */
+	PermissionTrie(int version, Collection<PermissionNode> nodes)
+	{
+		this.version = version;
+		this.nodes = Collections.unmodifiableList(Arrays.asList(nodes.toArray(new PermissionNode[nodes.size()])));
+
+		for (PermissionNode node : this.nodes)
+			add(node);
+	}
+
+	/**
+	 * Gets the version of the permission collection this tree was compiled from.
+	 *
+	 * @return The version.
+	 */
+	int getVersion()
+	{
+		return version;
+	}
+
+	/**
+	 * Gets the permission nodes this tree was compiled from.
+	 *
+	 * @return An unmodifiable list of permission nodes.
+	 */
+	List<PermissionNode> getNodes()
+	{
+		return nodes;
+	}
+
+	private void add(PermissionNode node)
+	{
+		String[] elements = node.getElements();
+		PermissionType type = node.isBlacklist() ? PermissionType.BLACKLIST : PermissionType.WHITELIST;
+
+		boolean trailing = elements[elements.length - 1] == PermissionNode.WILDCARD;
+		int length = trailing ? elements.length - 1 : elements.length;
+
+		Node n = root;
+		for (int i = 0; i < length; i++)
+			n = n.child(elements[i]);
+
+		if (trailing)
+			n.trailingWildcard = n.trailingWildcard.or(type);
+		else
+			n.exact = n.exact.or(type);
+	}
+
+	/**
+	 * Checks how the permission nodes within this tree cover the given literal
+	 * permission node.
+	 *
+	 * @param node
+	 *     - The literal permission node to check.
+	 * @return The combined permission type of all permission nodes which match the
+	 *     given node.
+	 */
+	PermissionType check(PermissionNode node)
+	{
+		return check(root, node.getElements(), 0);
+	}
+
+	private PermissionType check(Node n, String[] elements, int depth)
+	{
+		PermissionType type = n.trailingWildcard;
+
+		if (depth == elements.length)
+			return type.or(n.exact);
+
+		if (n.children != null)
+		{
+			Node child = n.children.get(elements[depth]);
+			if (child != null)
+				type = type.or(check(child, elements, depth + 1));
+		}
+
+		if (type != PermissionType.BLACKLIST && n.wildcard != null)
+			type = type.or(check(n.wildcard, elements, depth + 1));
+
+		return type;
+	}
+}
@@ -1,7 +1,16 @@
 package net.whg.awgenshell.perms;
 
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A collection of permissions that is held by a user.
@@ -10,6 +19,20 @@ import java.util.List;
  */
 public class Permissions
 {
+	/**
+	 * The maximum number of permission checks which are remembered by a single
+	 * permissions collection between modifications.
+	 */
+	public static final int MAX_CACHED_DECISIONS = 1024;
+
+	/**
+	 * All modifications to permission collections, including changes to the
+	 * inheiratence graph, are made while holding this lock.
+	 */
+	private static final Object LOCK = new Object();
+
+	private static final Permissions[] NO_PARENTS = new Permissions[0];
+
 	/**
 	 * A simple static implementation of permissions which encapsulates all
 	 * permissions.
@@ -25,14 +48,38 @@ public class Permissions
 	static
 	{
 		ALL = new Permissions();
-		ALL.addPermissionNode(new PermissionNode("*"));
+		ALL.addPermissionNode(PermissionNode.of("*"));
 
 		LANG = new Permissions();
-		LANG.addPermissionNode(new PermissionNode("lang.*"));
+		LANG.addPermissionNode(PermissionNode.of("lang.*"));
+	}
+
+	/**
+	 * A set of remembered permission check results, which are only valid for a
+	 * single version of a permissions collection.
+	 *
+	 * @author TheDudeFromCI
+	 */
+	private static class DecisionCache
+	{
+		private final int version;
+		private final Map<PermissionNode, PermissionType> decisions = new ConcurrentHashMap<>();
+
+		private DecisionCache(int version)
+		{
+			this.version = version;
+		}
 	}
 
-	private Permissions[] inheirated;
-	private List<PermissionNode> permissionNodes = new ArrayList<>();
+	private final List<Permissions> inheirated = new ArrayList<>();
+	private final List<WeakReference<Permissions>> children = new ArrayList<>();
+	private final List<PermissionNode> permissionNodes = new ArrayList<>();
+	private final Set<PermissionNode> permissionNodeSet = new HashSet<>();
+	private volatile Permissions[] parents = NO_PARENTS;
+	private volatile int version;
+	private volatile int localVersion;
+	private volatile PermissionTrie local;
+	private volatile DecisionCache decisionCache = new DecisionCache(-1);
 
 	/**
 	 * Creates a new permissions collection.
@@ -40,11 +87,13 @@ public class Permissions
 	 * @param inheirated
 	 *     - Allows this permissions object to inheirate permissions dynamically
 	 *     from other permissions groups. This is a live connection, and any future
-	 *     nodes add to those groups are automatically inheirated by this group.
+	 *     nodes add to those groups, or to any groups they inheirate from, are
+	 *     automatically inheirated by this group.
 	 */
 	public Permissions(Permissions... inheirated)
 	{
-		this.inheirated = inheirated;
+		for (Permissions p : inheirated)
+			addInheritance(p);
 	}
 
 	/**
@@ -59,10 +108,15 @@ public class Permissions
 		if (node == null)
 			return;
 
-		if (permissionNodes.contains(node))
-			return;
+		synchronized (LOCK)
+		{
+			if (!permissionNodeSet.add(node))
+				return;
 
-		permissionNodes.add(node);
+			permissionNodes.add(node);
+			localVersion++;
+			invalidate();
+		}
 	}
 
 	/**
@@ -77,7 +131,128 @@ public class Permissions
 		if (node == null)
 			return;
 
-		permissionNodes.remove(node);
+		synchronized (LOCK)
+		{
+			if (permissionNodeSet.remove(node))
+			{
+				permissionNodes.remove(node);
+				localVersion++;
+				invalidate();
+			}
+		}
+	}
+
+	/**
+	 * Makes this permission collection inheirate all permissions from the given
+	 * collection. Does nothing if input is null or is already inheirated
+	 * directly.
+	 *
+	 * @param parent
+	 *     - The permission collection to inheirate from.
+	 * @throws IllegalArgumentException
+	 *     - If the given collection is this collection, or already inheirates from
+	 *     this collection.
+	 */
+	public void addInheritance(Permissions parent)
+	{
+		if (parent == null)
+			return;
+
+		synchronized (LOCK)
+		{
+			if (parent == this || parent.inheritsFrom(this))
+				throw new IllegalArgumentException("Permissions cannot inheirate from themselves!");
+
+			if (inheirated.contains(parent))
+				return;
+
+			inheirated.add(parent);
+			parents = inheirated.toArray(NO_PARENTS);
+			parent.children.add(new WeakReference<>(this));
+			invalidate();
+		}
+	}
+
+	/**
+	 * Stops this permission collection from inheirating permissions from the
+	 * given collection. Does nothing if input is null or is not inheirated
+	 * directly.
+	 *
+	 * @param parent
+	 *     - The permission collection to stop inheirating from.
+	 */
+	public void removeInheritance(Permissions parent)
+	{
+		if (parent == null)
+			return;
+
+		synchronized (LOCK)
+		{
+			if (!inheirated.remove(parent))
+				return;
+
+			parents = inheirated.toArray(NO_PARENTS);
+
+			Iterator<WeakReference<Permissions>> it = parent.children.iterator();
+			while (it.hasNext())
+			{
+				Permissions child = it.next().get();
+				if (child == null || child == this)
+					it.remove();
+			}
+
+			invalidate();
+		}
+	}
+
+	/**
+	 * Checks if this permission collection inheirates from the given collection,
+	 * either directly or through any number of other collections.
+	 *
+	 * @param other
+	 *     - The permission collection to look for.
+	 * @return True if this collection inheirates from the given collection, false
+	 *     otherwise.
+	 */
+	public boolean inheritsFrom(Permissions other)
+	{
+		synchronized (LOCK)
+		{
+			return inheritsFrom(other, Collections.newSetFromMap(new IdentityHashMap<>()));
+		}
+	}
+
+	private boolean inheritsFrom(Permissions other, Set<Permissions> visited)
+	{
+		for (Permissions p : inheirated)
+		{
+			if (p == other)
+				return true;
+
+			if (visited.add(p) && p.inheritsFrom(other, visited))
+				return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Marks this collection and every collection which inheirates from it as
+	 * modified. Must be called while holding the lock.
+	 */
+	private void invalidate()
+	{
+		version++;
+
+		Iterator<WeakReference<Permissions>> it = children.iterator();
+		while (it.hasNext())
+		{
+			Permissions child = it.next().get();
+			if (child == null)
+				it.remove();
+			else
+				child.invalidate();
+		}
 	}
 
 	/**
@@ -88,7 +263,10 @@ public class Permissions
 	 */
 	public int getCount()
 	{
-		return permissionNodes.size();
+		synchronized (LOCK)
+		{
+			return permissionNodes.size();
+		}
 	}
 
 	/**
@@ -100,13 +278,121 @@ public class Permissions
 	 */
 	public PermissionNode getIndex(int index)
 	{
-		return permissionNodes.get(index);
+		synchronized (LOCK)
+		{
+			return permissionNodes.get(index);
+		}
+	}
+
+	/**
+	 * Gets the current version of this permissions collection. The version changes
+	 * whenever a permission node is added to or removed from this collection or
+	 * any of the collections it inheirates from, or when the inheiratence of any
+	 * of those collections changes.
+	 *
+	 * @return The current version.
+	 */
+	public int getVersion()
+	{
+		return version;
+	}
+
+	/**
+	 * Gets all permission nodes which apply to this collection, including all
+	 * inheirated permission nodes. Each node is only listed once, even if it is
+	 * inheirated from multiple collections.
+	 *
+	 * @return An unmodifiable list of effective permission nodes.
+	 */
+	public List<PermissionNode> getEffectivePermissions()
+	{
+		synchronized (LOCK)
+		{
+			Set<PermissionNode> nodes = new LinkedHashSet<>();
+			collectEffective(nodes, Collections.newSetFromMap(new IdentityHashMap<>()));
+			return Collections.unmodifiableList(new ArrayList<>(nodes));
+		}
+	}
+
+	private void collectEffective(Set<PermissionNode> nodes, Set<Permissions> visited)
+	{
+		if (!visited.add(this))
+			return;
+
+		nodes.addAll(permissionNodes);
+		for (Permissions p : inheirated)
+			p.collectEffective(nodes, visited);
+	}
+
+	/**
+	 * Gets the compiled tree of the permission nodes held directly by this
+	 * collection. Inheirated nodes are not copied into this tree, they are checked
+	 * against the trees of the parent collections instead, so collections which
+	 * share a parent also share its tree.
+	 */
+	private PermissionTrie getLocal()
+	{
+		PermissionTrie trie = local;
+		if (trie != null && trie.getVersion() == localVersion)
+			return trie;
+
+		synchronized (LOCK)
+		{
+			trie = local;
+			if (trie != null && trie.getVersion() == localVersion)
+				return trie;
+
+			local = trie = new PermissionTrie(localVersion, permissionNodes);
+			return trie;
+		}
+	}
+
+	/**
+	 * Checks how the permission nodes of this collection, and of all collections
+	 * it inheirates from, cover the given literal node. Results are remembered by
+	 * each collection along the way, so parents shared by many collections only
+	 * check each node once. Each result matches a single version of this
+	 * collection, even while it is being modified by another thread.
+	 */
+	private PermissionType check(PermissionNode node)
+	{
+		while (true)
+		{
+			int v = version;
+			DecisionCache cache = decisionCache;
+			if (cache.version != v)
+				decisionCache = cache = new DecisionCache(v);
+
+			PermissionType cached = cache.decisions.get(node);
+			if (cached != null)
+				return cached;
+
+			PermissionType type = getLocal().check(node);
+			for (Permissions p : parents)
+			{
+				if (type == PermissionType.BLACKLIST)
+					break;
+
+				type = type.or(p.check(node));
+			}
+
+			// If this collection was modified while checking, the local nodes and the
+			// parents may have been read from different versions, so check again.
+			if (version != v)
+				continue;
+
+			if (cache.decisions.size() < MAX_CACHED_DECISIONS)
+				cache.decisions.put(node, type);
+
+			return type;
+		}
 	}
 
 	/**
 	 * Check if this permission node has any permissions which encapsulate the given
 	 * node, checking local and inheirated permissions as needed. Function will
-	 * always return false if input is not a literal node.
+	 * always return false if input is not a literal node. Results are remembered
+	 * until this collection, or any collection it inheirates from, is modified.
 	 *
 	 * @param node
 	 *     - The permission to check for. Must be a literal.
@@ -118,15 +404,6 @@ public class Permissions
 		if (!node.isLiteral())
 			return false;
 
-		PermissionType perm = PermissionType.NEUTRAL;
-
-		for (PermissionNode s : permissionNodes)
-			perm = perm.or(s.matches(node));
-
-		for (Permissions p : inheirated)
-			for (PermissionNode s : p.permissionNodes)
-				perm = perm.or(s.matches(node));
-
-		return perm == PermissionType.WHITELIST;
+		return check(node) == PermissionType.WHITELIST;
 	}
 }
@@ -0,0 +1,200 @@
+package net.whg.awgenshell.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of durations, in nanoseconds, which may be recorded into from
+ * many threads at once without locking. Durations are counted in buckets which
+ * grow with the size of the duration, with 16 buckets for each power of two,
+ * so every duration is kept to within about 6% of its real value while the
+ * histogram stays a fixed size. Each thread records into one of several
+ * stripes, chosen by its thread id, so threads rarely write to the same
+ * memory.
+ *
+ * @author TheDudeFromCI
+ */
+public class LatencyHistogram
+{
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	/**
+	 * The largest duration which can be told apart from longer durations, a little
+	 * over an hour. Longer durations are counted as this value.
+	 */
+	public static final long MAX_TRACKABLE = (1L << 42) - 1;
+
+	private static final int BUCKET_COUNT = (42 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+	private static final int STRIPES = stripeCount();
+
+	private static int stripeCount()
+	{
+		int processors = Runtime.getRuntime().availableProcessors();
+		return Math.min(Integer.highestOneBit(processors * 2 - 1), 8);
+	}
+
+	private final AtomicLongArray[] stripes = new AtomicLongArray[STRIPES];
+	private final LongAdder count = new LongAdder();
+	private final LongAdder total = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	/**
+	 * Creates a new, empty latency histogram.
+	 */
+	public LatencyHistogram()
+	{
+		for (int i = 0; i < STRIPES; i++)
+			stripes[i] = new AtomicLongArray(BUCKET_COUNT);
+	}
+
+	/**
+	 * Gets the bucket a duration is counted in.
+	 */
+	private static int bucketOf(long nanos)
+	{
+		if (nanos < SUB_BUCKETS)
+			return (int) nanos;
+
+		int shift = 63 - Long.numberOfLeadingZeros(nanos) - SUB_BUCKET_BITS;
+		int sub = (int) (nanos >>> shift) & (SUB_BUCKETS - 1);
+		return (shift + 1) * SUB_BUCKETS + sub;
+	}
+
+	/**
+	 * Gets the largest duration which is counted in a bucket.
+	 */
+	private static long highestValueOf(int bucket)
+	{
+		if (bucket < SUB_BUCKETS)
+			return bucket;
+
+		int shift = bucket / SUB_BUCKETS - 1;
+		long sub = bucket % SUB_BUCKETS;
+		return ((SUB_BUCKETS + sub + 1) << shift) - 1;
+	}
+
+	/**
+	 * Records a duration into this histogram.
+	 *
+	 * @param nanos
+	 *     - The duration, in nanoseconds. Negative durations are counted as 0.
+	 */
+	public void record(long nanos)
+	{
+		nanos = Math.max(0, Math.min(nanos, MAX_TRACKABLE));
+
+		int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+		stripes[stripe].incrementAndGet(bucketOf(nanos));
+
+		count.increment();
+		total.add(nanos);
+		max.accumulate(nanos);
+	}
+
+	/**
+	 * Gets the number of durations which have been recorded.
+	 *
+	 * @return The count.
+	 */
+	public long getCount()
+	{
+		return count.sum();
+	}
+
+	/**
+	 * Gets the sum of all durations which have been recorded.
+	 *
+	 * @return The total duration, in nanoseconds.
+	 */
+	public long getTotal()
+	{
+		return total.sum();
+	}
+
+	/**
+	 * Gets the longest duration which has been recorded.
+	 *
+	 * @return The longest duration, in nanoseconds, or 0 if nothing has been
+	 *     recorded.
+	 */
+	public long getMax()
+	{
+		return max.get();
+	}
+
+	/**
+	 * Gets the mean of all durations which have been recorded.
+	 *
+	 * @return The mean duration, in nanoseconds, or 0 if nothing has been
+	 *     recorded.
+	 */
+	public double getMean()
+	{
+		long c = count.sum();
+		return c == 0 ? 0 : (double) total.sum() / c;
+	}
+
+	/**
+	 * Gets the duration which the given percentage of recorded durations are less
+	 * than or equal to. As durations are counted in buckets, the answer is the
+	 * largest duration of the bucket the percentile falls in, but is never more
+	 * than the longest recorded duration.
+	 *
+	 * @param percentile
+	 *     - The percentile, between 0 and 100.
+	 * @return The duration, in nanoseconds, or 0 if nothing has been recorded.
+	 * @throws IllegalArgumentException
+	 *     - If the percentile is not between 0 and 100.
+	 */
+	public long getPercentile(double percentile)
+	{
+		if (!(percentile >= 0 && percentile <= 100))
+			throw new IllegalArgumentException("Percentile must be between 0 and 100!");
+
+		long[] counts = new long[BUCKET_COUNT];
+		long recorded = 0;
+
+		for (AtomicLongArray stripe : stripes)
+		{
+			for (int i = 0; i < BUCKET_COUNT; i++)
+			{
+				long c = stripe.get(i);
+				counts[i] += c;
+				recorded += c;
+			}
+		}
+
+		if (recorded == 0)
+			return 0;
+
+		long target = Math.max(1, (long) Math.ceil(percentile / 100 * recorded));
+		long seen = 0;
+
+		for (int i = 0; i < BUCKET_COUNT; i++)
+		{
+			seen += counts[i];
+
+			if (seen >= target)
+				return Math.min(highestValueOf(i), max.get());
+		}
+
+		return max.get();
+	}
+
+	/**
+	 * Forgets all recorded durations. Durations which are recorded while this
+	 * histogram is being reset may or may not be kept.
+	 */
+	public void reset()
+	{
+		for (AtomicLongArray stripe : stripes)
+			for (int i = 0; i < BUCKET_COUNT; i++)
+				stripe.set(i, 0);
+
+		count.reset();
+		total.reset();
+		max.reset();
+	}
+}
@@ -11,13 +11,21 @@ import net.whg.awgenshell.util.CommandResult;
 
 /**
  * A very simple implementation of a command which can be used to make command
- * templates to reduce much of the redundency of writing new commands.
+ * templates to reduce much of the redundency of writing new commands. The
+ * subcommand matched at each call site is remembered, so repeated executions of
+ * the same parsed command skip template matching and flag parsing whenever the
+ * match could not have been affected by changing argument values. Remembered
+ * call sites also keep the result of their last permission check, which is only
+ * recomputed once the sender's permissions change.
  *
  * @author TheDudeFromCI
  */
 public abstract class BaseCommand implements CommandHandler
 {
+	private static final String NO_PERMISSION = "You do not have permission to preform this action!";
+
 	private final CommandTemplate template;
+	private final InlineCache inlineCache = new InlineCache();
 
 	public BaseCommand(CommandTemplate template)
 	{
@@ -33,11 +41,32 @@ public abstract class BaseCommand implements CommandHandler
 	@Override
 	public CommandResult execute(ShellEnvironment env, ArgumentValue[] args)
 	{
+		InlineCache.Entry cached = inlineCache.get(args);
+		if (cached != null && cached.acquire())
+		{
+			try
+			{
+				CommandSender sender = env.getCommandSender();
+				if (!cached.getPermissions().test(sender.getPermissions()))
+				{
+					sender.println(NO_PERMISSION);
+					return CommandResult.ERROR;
+				}
+
+				return cached.getSubcommand().getExecutor().run(env, cached.getArguments(), cached.getFlags());
+			}
+			finally
+			{
+				cached.release();
+			}
+		}
+
 		CommandSender sender = env.getCommandSender();
 
-		List<InputArgument> parameters = new ArrayList<>();
-		for (ArgumentValue a : args)
-			parameters.add(new InputArgument(a));
+		InputArgument[] inputs = new InputArgument[args.length];
+		List<InputArgument> parameters = new ArrayList<>(args.length);
+		for (int i = 0; i < args.length; i++)
+			parameters.add(inputs[i] = new InputArgument(args[i]));
 
 		SubCommand sub = template.getSubcommand(parameters);
 		if (sub == null)
@@ -46,75 +75,88 @@ public abstract class BaseCommand implements CommandHandler
 			return CommandResult.ERROR;
 		}
 
-		if (!checkPerms(sender, sub))
+		PermissionNode perms = getPermissions(sub);
+		if (!sender.getPermissions().hasPermission(perms))
+		{
+			sender.println(NO_PERMISSION);
 			return CommandResult.ERROR;
+		}
 
-		List<String> unparsedFlags = findFlagArguments(args, parameters);
-		CommandFlag[] flags = parseFlags(unparsedFlags, sub, sender);
+		FlagSet flags = parseFlags(args, parameters, sub, sender);
 		if (flags == null)
 			return CommandResult.ERROR;
 
-		return sub.getExecutor().run(env, parameters.toArray(new InputArgument[parameters.size()]), flags);
+		InputArgument[] params = parameters.toArray(new InputArgument[parameters.size()]);
+		if (cached == null)
+			inlineCache.put(args, inputs, sub, params, flags, perms);
+
+		return sub.getExecutor().run(env, params, flags);
 	}
 
-	private boolean checkPerms(CommandSender sender, SubCommand sub)
+	private PermissionNode getPermissions(SubCommand sub)
 	{
 		PermissionNode perms = sub.getPermissions();
 		if (perms == null)
 			perms = template.getPermissions();
 
-		if (sender.getPermissions().hasPermission(perms))
-			return true;
-
-		sender.println("You do not have permission to preform this action!");
-		return false;
+		return perms;
 	}
 
-	private List<String> findFlagArguments(ArgumentValue[] args, List<InputArgument> parametersList)
+	private FlagSet parseFlags(ArgumentValue[] args, List<InputArgument> parameters, SubCommand sub,
+			CommandSender sender)
 	{
-		List<String> flags = new ArrayList<>();
+		if (parameters.size() == args.length)
+			return FlagSet.EMPTY;
+
+		FlagTable table = sub.getFlagTable();
+		List<CommandFlag> flags = new ArrayList<>();
+
+		String name = null;
+		int ordinal = -1;
+		String[] values = null;
+		int valueCount = 0;
 
 		int j = 0;
 		for (ArgumentValue arg : args)
 		{
-			if (parametersList.get(j).getArgument() == arg)
+			if (j < parameters.size() && parameters.get(j).getArgument() == arg)
+			{
 				j++;
+				continue;
+			}
+
+			String value = arg.getValue();
+
+			if (name == null)
+			{
+				ordinal = table.getOrdinal(value);
+				if (ordinal == -1)
+				{
+					sender.println("Unknown flag! '" + value + "'");
+					return null;
+				}
+
+				name = value;
+				values = new String[table.get(ordinal).getNumberOfValues()];
+				valueCount = 0;
+			}
 			else
-				flags.add(arg.getValue());
-		}
+				values[valueCount++] = value;
 
-		return flags;
-	}
+			if (valueCount == values.length)
+			{
+				flags.add(new CommandFlag(name, ordinal, values));
+				name = null;
+			}
+		}
 
-	private CommandFlag[] parseFlags(List<String> unparsedFlags, SubCommand sub, CommandSender sender)
-	{
-		List<CommandFlag> flags = new ArrayList<>();
-		for (int i = 0; i < unparsedFlags.size(); i++)
+		if (name != null)
 		{
-			CommandFlagTemplate baseFlag = getFlag(sub, unparsedFlags.get(i), sender);
-			if (baseFlag == null)
-				return null;
-
-			String name = unparsedFlags.get(i);
-			String[] values = new String[baseFlag.getNumberOfValues()];
-
-			for (int j = 0; j < values.length; j++)
-				values[j] = unparsedFlags.remove(i + j + 1);
-
-			flags.add(new CommandFlag(name, values));
+			sender.println("Not enough values for flag! '" + name + "'");
+			return null;
 		}
 
-		return flags.toArray(new CommandFlag[flags.size()]);
-	}
-
-	private CommandFlagTemplate getFlag(SubCommand sub, String flag, CommandSender sender)
-	{
-		for (CommandFlagTemplate f : sub.getFlags())
-			if (f.getName().equals(flag))
-				return f;
-
-		sender.println("Unknown flag! '" + flag + "'");
-		return null;
+		return new FlagSet(flags.toArray(new CommandFlag[flags.size()]));
 	}
 
 	@Override
@@ -10,6 +10,7 @@ package net.whg.awgenshell.util.template;
 public class CommandFlag
 {
 	private final String name;
+	private final int ordinal;
 	private final String[] values;
 
 	/**
@@ -22,8 +23,26 @@ public class CommandFlag
 	 *     - An array of all values, in order, for the flag.
 	 */
 	public CommandFlag(String name, String[] values)
+	{
+		this(name, -1, values);
+	}
+
+	/**
+	 * Creates a new command flag obejct with the given name, ordinal and values.
+	 *
+	 * @param name
+	 *     - The name of the flag. All flags should start with a dash and include no
+	 *     spaces.
+	 * @param ordinal
+	 *     - The ordinal of this flag within the flag table of the subcommand, or -1
+	 *     if this flag has no ordinal.
+	 * @param value
+	 *     - An array of all values, in order, for the flag.
+	 */
+	public CommandFlag(String name, int ordinal, String[] values)
 	{
 		this.name = name;
+		this.ordinal = ordinal;
 		this.values = values;
 	}
 
@@ -37,6 +56,17 @@ public class CommandFlag
 		return name;
 	}
 
+	/**
+	 * Gets the ordinal of this flag, which is the index the flag was declared at
+	 * within its subcommand.
+	 *
+	 * @return The ordinal, or -1 if this flag has no ordinal.
+	 */
+	public int getOrdinal()
+	{
+		return ordinal;
+	}
+
 	/**
 	 * Gets the array of values of this flag.
 	 *
@@ -1,12 +1,15 @@
 package net.whg.awgenshell.util.template;
 
+import java.util.ArrayList;
 import java.util.List;
 import net.whg.awgenshell.perms.PermissionNode;
 
 /**
  * A command template is a format for how a command should be laid out including
  * common patterns like named subcommands, wildcard arguments number arguments,
- * etc.
+ * etc. When created, all subcommands are compiled into a dispatch table based
+ * on the number of input arguments each subcommand is able to accept, so only
+ * subcommands which could possibly match are tested.
  *
  * @author TheDudeFromCI
  */
@@ -16,6 +19,8 @@ public class CommandTemplate
 	private final String[] aliases;
 	private final PermissionNode permissions;
 	private final SubCommand[] subcommands;
+	private final SubCommand[][] dispatchTable;
+	private final SubCommand[] unboundedSubcommands;
 
 	/**
 	 * Creates a new command template based on the given subcommands.
@@ -26,6 +31,9 @@ public class CommandTemplate
 	 *     - An array of aliases for this command.
 	 * @param subcommands
 	 *     - The list of subcommands which make up this template.
+	 * @throws IllegalArgumentException
+	 *     - If any of the given subcommands can never be reached because an
+	 *     earlier subcommand is ambiguous with it.
 	 */
 	public CommandTemplate(String name, String[] aliases, PermissionNode permissions, SubCommand[] subcommands)
 	{
@@ -33,6 +41,55 @@ public class CommandTemplate
 		this.aliases = aliases;
 		this.permissions = permissions;
 		this.subcommands = subcommands;
+
+		checkAmbiguity();
+
+		int tableSize = 0;
+		for (SubCommand sub : subcommands)
+		{
+			tableSize = Math.max(tableSize, sub.getMinArguments() + 1);
+
+			if (sub.getMaxArguments() != CommandTemplateArg.UNBOUNDED)
+				tableSize = Math.max(tableSize, sub.getMaxArguments() + 1);
+		}
+
+		dispatchTable = new SubCommand[tableSize][];
+		for (int i = 0; i < tableSize; i++)
+			dispatchTable[i] = compileDispatch(i);
+
+		unboundedSubcommands = compileDispatch(tableSize);
+	}
+
+	private void checkAmbiguity()
+	{
+		for (int i = 0; i < subcommands.length; i++)
+		{
+			SubCommand a = subcommands[i];
+
+			for (int j = i + 1; j < subcommands.length; j++)
+			{
+				SubCommand b = subcommands[j];
+
+				if (a.matchesAnything())
+					throw new IllegalArgumentException("Subcommand '" + b.getPattern() + "' of " + name
+							+ " can never be reached, as '" + a.getPattern() + "' matches all inputs!");
+
+				if (a.getPattern() != null && a.getPattern().equals(b.getPattern()))
+					throw new IllegalArgumentException(
+							"Subcommand pattern '" + b.getPattern() + "' is defined more than once for " + name + "!");
+			}
+		}
+	}
+
+	private SubCommand[] compileDispatch(int argumentCount)
+	{
+		List<SubCommand> list = new ArrayList<>();
+
+		for (SubCommand sub : subcommands)
+			if (sub.getMinArguments() <= argumentCount && sub.getMaxArguments() >= argumentCount)
+				list.add(sub);
+
+		return list.toArray(new SubCommand[list.size()]);
 	}
 
 	/**
@@ -45,7 +102,11 @@ public class CommandTemplate
 	 */
 	public SubCommand getSubcommand(List<InputArgument> args)
 	{
-		for (SubCommand sub : subcommands)
+		int argumentCount = args.size();
+		SubCommand[] candidates =
+				argumentCount < dispatchTable.length ? dispatchTable[argumentCount] : unboundedSubcommands;
+
+		for (SubCommand sub : candidates)
 			if (sub.matches(args))
 				return sub;
 
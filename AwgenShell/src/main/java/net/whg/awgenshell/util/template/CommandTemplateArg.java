@@ -10,6 +10,11 @@ import java.util.List;
  */
 public interface CommandTemplateArg
 {
+	/**
+	 * Used to represent an argument count which has no upper limit.
+	 */
+	int UNBOUNDED = Integer.MAX_VALUE;
+
 	/**
 	 * This function tries to match as many elements from a given set of input
 	 * arguments as this pattern allows.
@@ -60,4 +65,29 @@ public interface CommandTemplateArg
 	{
 		return 0;
 	}
+
+	/**
+	 * Gets the smallest number of input arguments this pattern is able to match.
+	 * This is used to compile the dispatch table of a command template, and must
+	 * never be larger than the true minimum. Defaults to 0.
+	 *
+	 * @return The minimum number of arguments this pattern can match.
+	 */
+	default int getMinArguments()
+	{
+		return 0;
+	}
+
+	/**
+	 * Gets the largest number of input arguments this pattern is able to match, or
+	 * {@link #UNBOUNDED} if there is no limit. This is used to compile the dispatch
+	 * table of a command template, and must never be smaller than the true maximum.
+	 * Defaults to unbounded.
+	 *
+	 * @return The maximum number of arguments this pattern can match.
+	 */
+	default int getMaxArguments()
+	{
+		return UNBOUNDED;
+	}
 }
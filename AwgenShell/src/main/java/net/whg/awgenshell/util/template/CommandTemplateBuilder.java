@@ -65,7 +65,7 @@ public class CommandTemplateBuilder
 	 */
 	public CommandTemplateBuilder perm(String permission)
 	{
-		this.permission = new PermissionNode(permission);
+		this.permission = PermissionNode.of(permission);
 		return this;
 	}
 
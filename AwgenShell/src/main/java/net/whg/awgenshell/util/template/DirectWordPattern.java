@@ -32,4 +32,16 @@ public class DirectWordPattern implements CommandTemplateArg
 
 		return 1;
 	}
+
+	@Override
+	public int getMinArguments()
+	{
+		return 1;
+	}
+
+	@Override
+	public int getMaxArguments()
+	{
+		return 1;
+	}
 }
@@ -18,4 +18,16 @@ public class EndOfLinePattern implements CommandTemplateArg
 
 		return -1;
 	}
+
+	@Override
+	public int getMinArguments()
+	{
+		return 0;
+	}
+
+	@Override
+	public int getMaxArguments()
+	{
+		return 0;
+	}
 }
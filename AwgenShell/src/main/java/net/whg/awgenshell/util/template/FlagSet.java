@@ -0,0 +1,118 @@
+package net.whg.awgenshell.util.template;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * An immutable set of flags which were provided for a subcommand execution.
+ * Flags are indexed by the ordinal assigned to them within the subcommand's
+ * flag table, which is the order they were declared in, so checking for a flag
+ * does not require any string comparisons.
+ *
+ * @author TheDudeFromCI
+ */
+public class FlagSet implements Iterable<CommandFlag>
+{
+	/**
+	 * A constant for a flag set containing no flags.
+	 */
+	public static final FlagSet EMPTY = new FlagSet(new CommandFlag[0]);
+
+	private final CommandFlag[] flags;
+	private final CommandFlag[] byOrdinal;
+	private final long bits;
+
+	/**
+	 * Creates a new flag set from the given flags.
+	 *
+	 * @param flags
+	 *     - The flags, in the order they were provided. Each flag must have an
+	 *     ordinal assigned. If a flag is provided more than once, the last
+	 *     occurrence is used when looking it up by ordinal.
+	 */
+	public FlagSet(CommandFlag[] flags)
+	{
+		this.flags = flags;
+
+		int size = 0;
+		long b = 0;
+		for (CommandFlag flag : flags)
+		{
+			b |= 1L << flag.getOrdinal();
+			size = Math.max(size, flag.getOrdinal() + 1);
+		}
+
+		bits = b;
+		byOrdinal = new CommandFlag[size];
+
+		for (CommandFlag flag : flags)
+			byOrdinal[flag.getOrdinal()] = flag;
+	}
+
+	/**
+	 * Checks if the flag with the given ordinal was provided.
+	 *
+	 * @param ordinal
+	 *     - The ordinal of the flag.
+	 * @return True if the flag was provided, false otherwise.
+	 */
+	public boolean has(int ordinal)
+	{
+		return (bits & 1L << ordinal) != 0;
+	}
+
+	/**
+	 * Gets the flag with the given ordinal.
+	 *
+	 * @param ordinal
+	 *     - The ordinal of the flag.
+	 * @return The flag, or null if the flag was not provided.
+	 */
+	public CommandFlag get(int ordinal)
+	{
+		if (!has(ordinal))
+			return null;
+
+		return byOrdinal[ordinal];
+	}
+
+	/**
+	 * Gets the values of the flag with the given ordinal.
+	 *
+	 * @param ordinal
+	 *     - The ordinal of the flag.
+	 * @return The values of the flag, or null if the flag was not provided.
+	 */
+	public String[] getValues(int ordinal)
+	{
+		CommandFlag flag = get(ordinal);
+		return flag == null ? null : flag.getValues();
+	}
+
+	/**
+	 * Gets a bitset of all provided flags, where each bit index is the ordinal of
+	 * a flag.
+	 *
+	 * @return The bitset of provided flags.
+	 */
+	public long getBits()
+	{
+		return bits;
+	}
+
+	/**
+	 * Gets the number of flags which were provided, including repeated flags.
+	 *
+	 * @return The number of flags.
+	 */
+	public int size()
+	{
+		return flags.length;
+	}
+
+	@Override
+	public Iterator<CommandFlag> iterator()
+	{
+		return Arrays.asList(flags).iterator();
+	}
+}
@@ -0,0 +1,156 @@
+package net.whg.awgenshell.util.template;
+
+/**
+ * A compiled lookup table for the flags of a subcommand. Each flag is assigned
+ * an ordinal based on the order it was declared in, and flag names are placed
+ * into a collision-free hash table so that resolving a flag name only requires
+ * a single string comparison.
+ *
+ * @author TheDudeFromCI
+ */
+public class FlagTable
+{
+	/**
+	 * The maximum number of flags which can be assigned to a single subcommand.
+	 */
+	public static final int MAX_FLAGS = 64;
+
+	private final CommandFlagTemplate[] flags;
+	private final int[] slots;
+	private final int seed;
+	private final int shift;
+
+	/**
+	 * Compiles a new flag table from the given flag templates.
+	 *
+	 * @param flags
+	 *     - The flags, in declaration order. The index of each flag within this
+	 *     array is used as its ordinal.
+	 * @throws IllegalArgumentException
+	 *     - If more than {@link #MAX_FLAGS} flags are given, or if two flags share
+	 *     the same name.
+	 */
+	public FlagTable(CommandFlagTemplate[] flags)
+	{
+		if (flags.length > MAX_FLAGS)
+			throw new IllegalArgumentException("Subcommands cannot have more than " + MAX_FLAGS + " flags!");
+
+		for (int i = 0; i < flags.length; i++)
+			for (int j = i + 1; j < flags.length; j++)
+				if (flags[i].getName().equals(flags[j].getName()))
+					throw new IllegalArgumentException("Flag " + flags[i].getName() + " is defined more than once!");
+
+		this.flags = flags;
+
+		int bits = 1;
+		while (1 << bits < flags.length * 2)
+			bits++;
+
+		int[] table = null;
+		int candidate = 0;
+		for (int attempt = 0; attempt < 2 && table == null; attempt++)
+		{
+			for (int s = 1; s < 256 && table == null; s++)
+			{
+				candidate = 0x9E3779B9 * s;
+				table = fill(flags, candidate, bits, false);
+			}
+
+			if (table == null)
+				bits++;
+		}
+
+		// Only reachable if two flag names share a hash code, fall back to probing.
+		if (table == null)
+			table = fill(flags, candidate, bits, true);
+
+		slots = table;
+		seed = candidate;
+		shift = 32 - bits;
+	}
+
+	private static int[] fill(CommandFlagTemplate[] flags, int seed, int bits, boolean probe)
+	{
+		int[] table = new int[1 << bits];
+		for (int i = 0; i < table.length; i++)
+			table[i] = -1;
+
+		for (int i = 0; i < flags.length; i++)
+		{
+			int slot = flags[i].getName().hashCode() * seed >>> 32 - bits;
+
+			while (table[slot] != -1)
+			{
+				if (!probe)
+					return null;
+
+				slot = slot + 1 & table.length - 1;
+			}
+
+			table[slot] = i;
+		}
+
+		return table;
+	}
+
+	/**
+	 * Gets the ordinal of the flag with the given name.
+	 *
+	 * @param name
+	 *     - The name of the flag, including the dash.
+	 * @return The ordinal of the flag, or -1 if there is no flag with the given
+	 *     name.
+	 */
+	public int getOrdinal(String name)
+	{
+		int slot = name.hashCode() * seed >>> shift;
+
+		while (true)
+		{
+			int ordinal = slots[slot];
+
+			if (ordinal == -1)
+				return -1;
+
+			if (flags[ordinal].getName().equals(name))
+				return ordinal;
+
+			slot = slot + 1 & slots.length - 1;
+		}
+	}
+
+	/**
+	 * Gets the flag template with the given name.
+	 *
+	 * @param name
+	 *     - The name of the flag, including the dash.
+	 * @return The flag template, or null if there is no flag with the given name.
+	 */
+	public CommandFlagTemplate get(String name)
+	{
+		int ordinal = getOrdinal(name);
+		return ordinal == -1 ? null : flags[ordinal];
+	}
+
+	/**
+	 * Gets the flag template with the given ordinal.
+	 *
+	 * @param ordinal
+	 *     - The ordinal of the flag.
+	 * @return The flag template.
+	 */
+	public CommandFlagTemplate get(int ordinal)
+	{
+		return flags[ordinal];
+	}
+
+	/**
+	 * Gets the number of flags within this table.
+	 *
+	 * @return The number of flags.
+	 */
+	public int size()
+	{
+		return flags.length;
+	}
+}
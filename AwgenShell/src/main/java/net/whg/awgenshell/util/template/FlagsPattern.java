@@ -74,10 +74,7 @@ public class FlagsPattern implements CommandTemplateArg
 
 	private CommandFlagTemplate getFlag(String name, SubCommand sub)
 	{
-		for (CommandFlagTemplate flag : sub.getFlags())
-			if (flag.getName().equals(name))
-				return flag;
-		return null;
+		return sub.getFlagTable().get(name);
 	}
 
 	@Override
@@ -104,4 +101,16 @@ public class FlagsPattern implements CommandTemplateArg
 
 		return offset + length - lastFlag;
 	}
+
+	@Override
+	public int getMinArguments()
+	{
+		return 0;
+	}
+
+	@Override
+	public int getMaxArguments()
+	{
+		return UNBOUNDED;
+	}
 }
@@ -17,4 +17,16 @@ public class IndirectCommandPattern implements CommandTemplateArg
 
 		return args.get(offset).isIndirectCommand() ? 1 : -1;
 	}
+
+	@Override
+	public int getMinArguments()
+	{
+		return 1;
+	}
+
+	@Override
+	public int getMaxArguments()
+	{
+		return 1;
+	}
 }
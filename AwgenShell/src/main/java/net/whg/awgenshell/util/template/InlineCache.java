@@ -0,0 +1,145 @@
+package net.whg.awgenshell.util.template;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import net.whg.awgenshell.arg.ArgumentValue;
+import net.whg.awgenshell.perms.PermissionCheck;
+import net.whg.awgenshell.perms.PermissionNode;
+
+/**
+ * A small polymorphic inline cache used by base commands to remember which
+ * subcommand a given call site resolved to. A call site is identified by its
+ * argument array, which is shared across every execution of a parsed command.
+ * An entry is only stored if the match could not have depended on any
+ * arguments whose values may change between executions.
+ *
+ * @author TheDudeFromCI
+ */
+class InlineCache
+{
+	/**
+	 * The number of call sites which may be remembered at once.
+	 */
+	static final int SIZE = 4;
+
+	/**
+	 * A single cached call site.
+	 *
+	 * @author TheDudeFromCI
+	 */
+	static class Entry
+	{
+		private final ArgumentValue[] site;
+		private final SubCommand subcommand;
+		private final InputArgument[] arguments;
+		private final FlagSet flags;
+		private final PermissionCheck permissions;
+		private final AtomicBoolean inUse = new AtomicBoolean();
+
+		private Entry(ArgumentValue[] site, SubCommand subcommand, InputArgument[] arguments, FlagSet flags,
+				PermissionNode permissions)
+		{
+			this.site = site;
+			this.subcommand = subcommand;
+			this.arguments = arguments;
+			this.flags = flags;
+			this.permissions = new PermissionCheck(permissions);
+		}
+
+		/**
+		 * Attempts to claim this entry for a single execution. An entry may only be
+		 * used by one execution at a time, as the input arguments are reused.
+		 *
+		 * @return True if this entry was claimed, false if it is already in use.
+		 */
+		boolean acquire()
+		{
+			if (!inUse.compareAndSet(false, true))
+				return false;
+
+			for (InputArgument arg : arguments)
+				arg.reset();
+
+			return true;
+		}
+
+		/**
+		 * Releases this entry after an execution has finished.
+		 */
+		void release()
+		{
+			inUse.set(false);
+		}
+
+		SubCommand getSubcommand()
+		{
+			return subcommand;
+		}
+
+		InputArgument[] getArguments()
+		{
+			return arguments;
+		}
+
+		FlagSet getFlags()
+		{
+			return flags;
+		}
+
+		PermissionCheck getPermissions()
+		{
+			return permissions;
+		}
+	}
+
+	private final Entry[] entries = new Entry[SIZE];
+	private int nextSlot;
+
+	/**
+	 * Gets the cached entry for the given call site.
+	 *
+	 * @param site
+	 *     - The argument array of the call site.
+	 * @return The cached entry, or null if this call site is not cached.
+	 */
+	Entry get(ArgumentValue[] site)
+	{
+		for (Entry e : entries)
+			if (e != null && e.site == site)
+				return e;
+
+		return null;
+	}
+
+	/**
+	 * Stores the result of a successful subcommand match for the given call site,
+	 * if the match is safe to reuse.
+	 *
+	 * @param site
+	 *     - The argument array of the call site.
+	 * @param inputs
+	 *     - The input arguments which were used while matching, one for each
+	 *     element within the call site.
+	 * @param subcommand
+	 *     - The subcommand which was matched.
+	 * @param parameters
+	 *     - The input arguments which remained after matching, in order.
+	 * @param flags
+	 *     - The flags which were parsed from the pruned arguments.
+	 * @param permissions
+	 *     - The permission node required to run the subcommand.
+	 */
+	void put(ArgumentValue[] site, InputArgument[] inputs, SubCommand subcommand, InputArgument[] parameters,
+			FlagSet flags, PermissionNode permissions)
+	{
+		for (InputArgument input : inputs)
+			if (input.isResolved() && !input.isConstant())
+				return;
+
+		InputArgument[] arguments = new InputArgument[parameters.length];
+		for (int i = 0; i < arguments.length; i++)
+			arguments[i] = new InputArgument(parameters[i].getArgument());
+
+		entries[nextSlot] = new Entry(site, subcommand, arguments, flags, permissions);
+		nextSlot = (nextSlot + 1) % SIZE;
+	}
+}
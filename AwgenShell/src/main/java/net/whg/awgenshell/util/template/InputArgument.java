@@ -2,6 +2,7 @@ package net.whg.awgenshell.util.template;
 
 import net.whg.awgenshell.arg.ArgumentValue;
 import net.whg.awgenshell.arg.CommandArgument;
+import net.whg.awgenshell.arg.StringArgument;
 
 /**
  * An input argument is a wrapper for ArgumentValues to allow for more control
@@ -11,9 +12,17 @@ import net.whg.awgenshell.arg.CommandArgument;
  */
 public class InputArgument
 {
+	private static final int NOT_A_NUMBER = 0;
+	private static final int INTEGER = 1;
+	private static final int FLOAT = 2;
+
 	private final ArgumentValue arg;
 	private final boolean indirectCommand;
 	private String lastValue;
+	private String numberSource;
+	private int numberType;
+	private int intValue;
+	private double doubleValue;
 
 	/**
 	 * Creates a new input argument value.
@@ -73,6 +82,222 @@ public class InputArgument
 		return lastValue = arg.getValue();
 	}
 
+	/**
+	 * Checks if the last known value of this argument is an integer. The value is
+	 * classified without throwing exceptions, and the parsed number is kept until
+	 * the value of this argument changes.
+	 *
+	 * @return True if the value of this argument can be represented as an
+	 *     integer, false otherwise.
+	 */
+	public boolean isInteger()
+	{
+		classify();
+		return numberType == INTEGER;
+	}
+
+	/**
+	 * Checks if the last known value of this argument is a number, either integer
+	 * or floating point.
+	 *
+	 * @return True if the value of this argument can be represented as a number,
+	 *     false otherwise.
+	 */
+	public boolean isNumber()
+	{
+		classify();
+		return numberType != NOT_A_NUMBER;
+	}
+
+	/**
+	 * Gets the last known value of this argument as an integer.
+	 *
+	 * @return The integer value of this argument.
+	 * @throws NumberFormatException
+	 *     - If the value of this argument is not an integer.
+	 */
+	public int getInt()
+	{
+		classify();
+
+		if (numberType != INTEGER)
+			throw new NumberFormatException("For input string: \"" + lastValue + "\"");
+
+		return intValue;
+	}
+
+	/**
+	 * Gets the last known value of this argument as a double.
+	 *
+	 * @return The numeric value of this argument.
+	 * @throws NumberFormatException
+	 *     - If the value of this argument is not a number.
+	 */
+	public double getDouble()
+	{
+		classify();
+
+		if (numberType == NOT_A_NUMBER)
+			throw new NumberFormatException("For input string: \"" + lastValue + "\"");
+
+		return doubleValue;
+	}
+
+	private void classify()
+	{
+		String value = getLast();
+		if (value == numberSource)
+			return;
+
+		numberSource = value;
+
+		if (scanInteger(value))
+		{
+			numberType = INTEGER;
+			doubleValue = intValue;
+			return;
+		}
+
+		if (scanFloat(value))
+		{
+			numberType = FLOAT;
+			doubleValue = Double.parseDouble(value);
+			return;
+		}
+
+		numberType = NOT_A_NUMBER;
+
+		if (!requiresSlowParse(value))
+			return;
+
+		try
+		{
+			doubleValue = Double.parseDouble(value);
+			numberType = FLOAT;
+		}
+		catch (NumberFormatException e)
+		{
+			// Not a number
+		}
+	}
+
+	private boolean scanInteger(String value)
+	{
+		int length = value.length();
+		int i = 0;
+		boolean negative = false;
+
+		if (length > 0 && (value.charAt(0) == '-' || value.charAt(0) == '+'))
+		{
+			negative = value.charAt(0) == '-';
+			i++;
+		}
+
+		if (i == length)
+			return false;
+
+		long n = 0;
+		for (; i < length; i++)
+		{
+			char c = value.charAt(i);
+			if (c < '0' || c > '9')
+				return false;
+
+			n = n * 10 + (c - '0');
+			if (n > (long) Integer.MAX_VALUE + 1)
+				return false;
+		}
+
+		if (negative)
+			n = -n;
+
+		if (n > Integer.MAX_VALUE)
+			return false;
+
+		intValue = (int) n;
+		return true;
+	}
+
+	private boolean scanFloat(String value)
+	{
+		int length = value.length();
+		int i = 0;
+
+		if (i < length && (value.charAt(i) == '-' || value.charAt(i) == '+'))
+			i++;
+
+		int digits = 0;
+		while (i < length && isDigit(value.charAt(i)))
+		{
+			i++;
+			digits++;
+		}
+
+		if (i < length && value.charAt(i) == '.')
+		{
+			i++;
+			while (i < length && isDigit(value.charAt(i)))
+			{
+				i++;
+				digits++;
+			}
+		}
+
+		if (digits == 0)
+			return false;
+
+		if (i < length && (value.charAt(i) == 'e' || value.charAt(i) == 'E'))
+		{
+			i++;
+
+			if (i < length && (value.charAt(i) == '-' || value.charAt(i) == '+'))
+				i++;
+
+			int exponentDigits = 0;
+			while (i < length && isDigit(value.charAt(i)))
+			{
+				i++;
+				exponentDigits++;
+			}
+
+			if (exponentDigits == 0)
+				return false;
+		}
+
+		if (i < length && "fFdD".indexOf(value.charAt(i)) >= 0)
+			i++;
+
+		return i == length;
+	}
+
+	private static boolean isDigit(char c)
+	{
+		return c >= '0' && c <= '9';
+	}
+
+	/**
+	 * Checks if the given value uses any rarely used number formats which are not
+	 * handled by the scanner, such as hexadecimal floats, NaN, Infinity or
+	 * surrounding whitespace.
+	 */
+	private static boolean requiresSlowParse(String value)
+	{
+		if (value.isEmpty())
+			return false;
+
+		if (value.charAt(0) <= ' ' || value.charAt(value.length() - 1) <= ' ')
+			return true;
+
+		for (int i = 0; i < value.length(); i++)
+		{
+			char c = value.charAt(i);
+			if (c == 'N' || c == 'I' || c == 'x' || c == 'X')
+				return true;
+		}
+
+		return false;
+	}
+
 	/**
 	 * Check if this variable represents an indirect command or not.
 	 *
@@ -92,4 +317,34 @@ public class InputArgument
 	{
 		return arg;
 	}
+
+	/**
+	 * Checks if the value of this argument has been read since it was created or
+	 * last reset.
+	 *
+	 * @return True if the value of this argument has been read, false otherwise.
+	 */
+	boolean isResolved()
+	{
+		return lastValue != null;
+	}
+
+	/**
+	 * Checks if the value of this argument can never change between executions.
+	 *
+	 * @return True if this argument is a constant string, false otherwise.
+	 */
+	boolean isConstant()
+	{
+		return arg instanceof StringArgument;
+	}
+
+	/**
+	 * Clears the last known value of this argument, so that it is solved again the
+	 * next time it is used.
+	 */
+	void reset()
+	{
+		lastValue = null;
+	}
 }
@@ -27,26 +27,20 @@ public class NumberPattern implements CommandTemplateArg
 			return -1;
 
 		if (floating)
-		{
-			try
-			{
-				Float.valueOf(a.getLast());
-				return 1;
-			}
-			catch (NumberFormatException e)
-			{
-				return -1;
-			}
-		}
-
-		try
-		{
-			Integer.valueOf(a.getLast());
-			return 1;
-		}
-		catch (NumberFormatException e)
-		{
-			return -1;
-		}
+			return a.isNumber() ? 1 : -1;
+
+		return a.isInteger() ? 1 : -1;
+	}
+
+	@Override
+	public int getMinArguments()
+	{
+		return 1;
+	}
+
+	@Override
+	public int getMaxArguments()
+	{
+		return 1;
 	}
 }
@@ -30,4 +30,24 @@ public class OrPattern implements CommandTemplateArg
 
 		return -1;
 	}
+
+	@Override
+	public int getMinArguments()
+	{
+		int min = UNBOUNDED;
+		for (CommandTemplateArg pattern : patterns)
+			min = Math.min(min, pattern.getMinArguments());
+
+		return min;
+	}
+
+	@Override
+	public int getMaxArguments()
+	{
+		int max = 0;
+		for (CommandTemplateArg pattern : patterns)
+			max = Math.max(max, pattern.getMaxArguments());
+
+		return max;
+	}
 }
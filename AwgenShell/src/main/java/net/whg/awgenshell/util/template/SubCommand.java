@@ -1,7 +1,7 @@
 package net.whg.awgenshell.util.template;
 
-import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 import net.whg.awgenshell.perms.PermissionNode;
 
 /**
@@ -21,8 +21,8 @@ public class SubCommand
 		for (int i = 0; i < args.length; i++)
 			args[i] = compileArg(parts[i]);
 
-		return new SubCommand(args, executor, permission, flags);
-
+		String source = String.join(" ", parts).replace("%*?", "%*");
+		return new SubCommand(source, args, executor, permission, flags);
 	}
 
 	private static CommandTemplateArg compileArg(String word)
@@ -84,6 +84,14 @@ public class SubCommand
 	private final SubCommandExecutor executor;
 	private final PermissionNode permission;
 	private final CommandFlagTemplate[] flags;
+	private final FlagTable flagTable;
+	private final int[] pruneSlots;
+	private final int pruneCount;
+	private final int[] pruned;
+	private final AtomicBoolean prunedInUse = new AtomicBoolean();
+	private final int minArguments;
+	private final int maxArguments;
+	private final String source;
 
 	/**
 	 * Creates a new subcommand with a given of compiled template arguments.
@@ -96,10 +104,48 @@ public class SubCommand
 	public SubCommand(CommandTemplateArg[] pattern, SubCommandExecutor executor, PermissionNode permission,
 			CommandFlagTemplate[] flags)
 	{
+		this(null, pattern, executor, permission, flags);
+	}
+
+	private SubCommand(String source, CommandTemplateArg[] pattern, SubCommandExecutor executor,
+			PermissionNode permission, CommandFlagTemplate[] flags)
+	{
+		this.source = source;
 		this.pattern = pattern;
 		this.executor = executor;
 		this.permission = permission;
 		this.flags = flags;
+		flagTable = new FlagTable(flags);
+
+		pruneSlots = new int[pattern.length];
+		int prunes = 0;
+		for (int i = 0; i < pattern.length; i++)
+			pruneSlots[i] = pattern[i].pruneArgs() ? prunes++ : -1;
+		pruneCount = prunes;
+		pruned = prunes == 0 ? null : new int[prunes * 2];
+
+		int min = 0;
+		int max = CommandTemplateArg.UNBOUNDED;
+		for (int i = 0; i < pattern.length; i++)
+		{
+			min = saturatedAdd(min, pattern[i].getMinArguments());
+
+			if (pattern[i] instanceof EndOfLinePattern && max == CommandTemplateArg.UNBOUNDED)
+			{
+				max = 0;
+				for (int j = 0; j < i; j++)
+					max = saturatedAdd(max, pattern[j].getMaxArguments());
+			}
+		}
+
+		minArguments = min;
+		maxArguments = max;
+	}
+
+	private static int saturatedAdd(int a, int b)
+	{
+		long sum = (long) a + b;
+		return sum >= CommandTemplateArg.UNBOUNDED ? CommandTemplateArg.UNBOUNDED : (int) sum;
 	}
 
 	/**
@@ -111,8 +157,26 @@ public class SubCommand
 	 */
 	public boolean matches(List<InputArgument> args)
 	{
-		List<InputArgument> toPrune = new LinkedList<>();
+		if (pruned == null)
+			return matches(args, null);
+
+		// The pruned ranges are only needed while matching, so a single array is
+		// reused. Matches on other threads, which find it in use, use their own.
+		if (!prunedInUse.compareAndSet(false, true))
+			return matches(args, new int[pruneCount * 2]);
+
+		try
+		{
+			return matches(args, pruned);
+		}
+		finally
+		{
+			prunedInUse.set(false);
+		}
+	}
 
+	private boolean matches(List<InputArgument> args, int[] pruned)
+	{
 		int offset = 0;
 		int lastLength = 0;
 		for (int i = 0; i < pattern.length; i++)
@@ -138,22 +202,83 @@ public class SubCommand
 
 				if (back == 0)
 					return false;
+
+				int slot = pruneSlots[i - 1];
+				if (slot >= 0)
+					pruned[slot * 2 + 1] -= back;
 			}
 
-			if (a.pruneArgs())
-				for (int j = 0; j < out; j++)
-					toPrune.add(args.get(j + offset));
+			int slot = pruneSlots[i];
+			if (slot >= 0)
+			{
+				pruned[slot * 2] = offset;
+				pruned[slot * 2 + 1] = out;
+			}
 
 			offset += out;
 			lastLength = out;
 		}
 
-		for (InputArgument input : toPrune)
-			args.remove(input);
+		for (int slot = pruneCount - 1; slot >= 0; slot--)
+		{
+			int start = pruned[slot * 2];
+			int length = pruned[slot * 2 + 1];
+
+			if (length > 0)
+				args.subList(start, start + length).clear();
+		}
 
 		return true;
 	}
 
+	/**
+	 * Gets the smallest number of input arguments this subcommand can match.
+	 *
+	 * @return The minimum number of input arguments.
+	 */
+	public int getMinArguments()
+	{
+		return minArguments;
+	}
+
+	/**
+	 * Gets the largest number of input arguments this subcommand can match, or
+	 * {@link CommandTemplateArg#UNBOUNDED} if there is no limit.
+	 *
+	 * @return The maximum number of input arguments.
+	 */
+	public int getMaxArguments()
+	{
+		return maxArguments;
+	}
+
+	/**
+	 * Checks if this subcommand matches any possible set of input arguments. Any
+	 * subcommand which comes after this one within a command template can never be
+	 * reached.
+	 *
+	 * @return True if this subcommand always matches, false otherwise.
+	 */
+	public boolean matchesAnything()
+	{
+		for (CommandTemplateArg arg : pattern)
+			if (!(arg instanceof WildcardPattern) || !((WildcardPattern) arg).matchesAnything())
+				return false;
+
+		return true;
+	}
+
+	/**
+	 * Gets the normalized pattern string this subcommand was compiled from, or null
+	 * if this subcommand was not compiled from a pattern string.
+	 *
+	 * @return The pattern string.
+	 */
+	public String getPattern()
+	{
+		return source;
+	}
+
 	/**
 	 * Gets the executor attached to this subcommand.
 	 *
@@ -184,4 +309,14 @@ public class SubCommand
 	{
 		return flags;
 	}
+
+	/**
+	 * Gets the compiled lookup table for the flags of this subcommand.
+	 *
+	 * @return The flag table.
+	 */
+	public FlagTable getFlagTable()
+	{
+		return flagTable;
+	}
 }
@@ -26,7 +26,7 @@ public class SubCommandBuilder
 
 	public SubCommandBuilder permission(String permissionNode)
 	{
-		this.permissionNode = new PermissionNode(permissionNode);
+		this.permissionNode = PermissionNode.of(permissionNode);
 		return this;
 	}
 
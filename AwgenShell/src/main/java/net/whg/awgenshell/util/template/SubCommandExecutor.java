@@ -19,8 +19,9 @@ public interface SubCommandExecutor
 	 * @param args
 	 *     - The input arguments.
 	 * @param flags
-	 *     - All flags provided for this subcommand.
+	 *     - All flags provided for this subcommand, indexed by the order they were
+	 *     declared in.
 	 * @return The command result for this command execution.
 	 */
-	CommandResult run(ShellEnvironment env, InputArgument[] args, CommandFlag[] flags);
+	CommandResult run(ShellEnvironment env, InputArgument[] args, FlagSet flags);
 }
@@ -18,4 +18,16 @@ public class VariablePattern implements CommandTemplateArg
 
 		return args.get(offset).getArgument() instanceof VariableArgument ? 1 : -1;
 	}
+
+	@Override
+	public int getMinArguments()
+	{
+		return 1;
+	}
+
+	@Override
+	public int getMaxArguments()
+	{
+		return 1;
+	}
 }
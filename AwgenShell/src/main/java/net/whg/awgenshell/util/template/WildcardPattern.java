@@ -41,4 +41,27 @@ public class WildcardPattern implements CommandTemplateArg
 
 		return optional ? 1 : 0;
 	}
+
+	@Override
+	public int getMinArguments()
+	{
+		return optional ? 0 : 1;
+	}
+
+	@Override
+	public int getMaxArguments()
+	{
+		return infinite ? UNBOUNDED : 1;
+	}
+
+	/**
+	 * Checks if this wildcard pattern is able to match any number of arguments,
+	 * including zero.
+	 *
+	 * @return True if this pattern matches any input, false otherwise.
+	 */
+	public boolean matchesAnything()
+	{
+		return infinite && optional;
+	}
 }
@@ -28,4 +28,10 @@ public class AppendTest
 	{
 		check("append -s ', ' apples oranges", "apples, oranges");
 	}
+
+	@Test
+	public void repeatedCallSite()
+	{
+		check("for $i, 1, 3 do { append -s : $i x }", "1:x", "2:x", "3:x");
+	}
 }
@@ -1,8 +1,13 @@
 package commands;
 
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.startsWith;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static util.Checks.check;
+import java.lang.ref.WeakReference;
 import org.junit.Test;
 import net.whg.awgenshell.exec.CommandSender;
 import net.whg.awgenshell.exec.ShellEnvironment;
@@ -38,6 +43,8 @@ public class CalcTest
 		checkFormula("10001 / 2", "-f", "5,000.5");
 		checkFormula("2^256", "-f",
 				"115,792,089,237,316,195,423,570,985,008,687,907,853,269,984,665,640,564,039,457,584,007,913,129,639,936");
+		checkFormula("1.50", "1.50");
+		checkFormula("2.50 * 2", "5.00");
 		checkFormula("sqrt(25)", "5");
 		checkFormula("sqrt(16), sqrt(100) + 3, floor(2.5)", "[4, 13, 2]");
 		checkFormula("sqrt(ceil(15.8))", "4");
@@ -57,6 +64,7 @@ public class CalcTest
 		checkFormula("floor(sin(1) * 1000000) / 1000000", "0.84147");
 		checkFormula("floor(cos(1) * 1000000) / 1000000", "0.540302");
 		checkFormula("floor(tan(1) * 1000000) / 1000000", "1.557407");
+		checkFormula("floor(pi * 10^10), floor(e * 10^10)", "[31415926535, 27182818284]");
 	}
 
 	@Test
@@ -69,6 +77,10 @@ public class CalcTest
 		checkFormula("3 + 5i + 3 * 5 + 4i", "18 + 9i");
 		checkFormula("3 + i", "3 + i");
 		checkFormula("(3 + 4i) * 27 + 12i * (1 + i)", "69 + 120i");
+		checkFormula("(1 + 2i) / (3 + 4i)", "0.44 + 0.08i");
+		checkFormula("(3 + 4i) / 2", "1.5 + 2i");
+		checkFormula("2 / i", "-2i");
+		checkFormula("(1 + 2i) / (3 + 4i)", "-d", "0.44 + 0.08i");
 	}
 
 	@Test
@@ -79,6 +91,175 @@ public class CalcTest
 		checkFormula("v(1, 2, 3) * (1 + 3i)", "(1 + 3i, 2 + 6i, 3 + 9i)");
 	}
 
+	@Test
+	public void matrices()
+	{
+		checkFormula("m(v(1, 2), v(3, 4)) * m(v(5, 6), v(7, 8))", "((19, 22), (43, 50))");
+		checkFormula("m(v(0, -1, 0), v(1, 0, 0), v(0, 0, 1)) * v(1, 2, 3)", "(-2, 1, 3)");
+		checkFormula("v(1, 2) * m(v(1, 2), v(3, 4))", "(7, 10)");
+		checkFormula("m(v(1, 2), v(3, 4)) + m(v(1, 1), v(1, 1)) * 2", "((3, 4), (5, 6))");
+		checkFormula("-m(v(1, 2)) / 2", "((-0.5, -1))");
+		checkFormula("transpose(m(v(1, 2, 3), v(4, 5, 6)))", "((1, 4), (2, 5), (3, 6))");
+		checkFormula("det(m(v(1, 2), v(3, 4)))", "-2");
+		checkFormula("det(m(v(0, 2, 1), v(1, 3, 2), v(1, 1, 2)))", "-2");
+		checkFormula("inv(m(v(4, 7), v(2, 6)))", "((0.6, -0.7), (-0.2, 0.4))");
+		checkFormula("m(v(4, 7), v(2, 6)) * inv(m(v(4, 7), v(2, 6)))", "((1, 0), (0, 1))");
+		checkFormula("det(m(v(1, 2), v(3, 4)))", "-d", "-2");
+		checkFormula("inv(m(v(4, 7), v(2, 6)))", "-d", "((0.6, -0.7), (-0.2, 0.4))");
+		checkFormula("m(v(0.5, 0), v(0, 2)) * v(2, 3)", "-d", "(1, 6)");
+		checkFormula("det(m(v(1, 2, 3)))", "Failed to parse equation! Matrix must be square!");
+		checkFormula("inv(m(v(1, 2), v(2, 4)))", "Failed to parse equation! Matrix is not invertible!");
+		checkFormula("m(v(1, 2), v(3))", "Failed to parse equation! Matrix rows must all be the same length!");
+		checkFormula("m(v(1, 2)) * v(1, 2, 3)",
+				"Failed to parse equation! Cannot multiply matrix and vector of incompatible sizes!");
+	}
+
+	@Test
+	public void aggregates()
+	{
+		checkFormula("sum(1, 2, 3, 4)", "10");
+		checkFormula("min(3, -1, 2), max(3, -1, 2)", "[-1, 3]");
+		checkFormula("mean(1, 2, 3, 4)", "2.5");
+		checkFormula("var(2, 4, 4, 4, 5, 5, 7, 9)", "4");
+		checkFormula("sum(v(1, 2), v(3, 4))", "10");
+		checkFormula("sum(0.1, 0.2, 0.3)", "0.6");
+		checkFormula("sum(9223372036854775807, 1)", "9223372036854775808");
+		checkFormula("sum(10^16, 1, -10^16)", "-d", "1");
+		checkFormula("var(1, 2, 3, 4)", "-d", "1.25");
+		checkFormula("sum(1, i)", "Failed to parse equation! Only real numbers may be aggregated!");
+
+		check("$x = append -n 1 2 3 4; calc 'sum($x) / max($x)'", "2.5");
+		check("$x = append -n 0.5 1.5 4; calc -d 'mean($x), min($x)'", "[2, 0.5]");
+		check("$x = set 7; calc 'sum($x)'", "7");
+		check("$x = append -n 1 apple; calc 'sum($x)'", "Failed to parse equation! Variable $x is not a list of numbers!");
+		check("calc 'sum($x)'", "Failed to parse equation! Unknown variable: $x");
+	}
+
+	@Test
+	public void doubleMode()
+	{
+		checkFormula("1+2", "-d", "3");
+		checkFormula("10001 / 2", "-d -f", "5,000.5");
+		checkFormula("1 / 3", "-d", "0.333333333333333");
+		checkFormula("0.1 + 0.2", "-d", "0.3");
+		checkFormula("0.1 + 0.2 - 0.3", "-d", "0.0000000000000000555111512312578");
+		checkFormula("round(9.8, 2.1, -3.49)", "-d", "[10, 2, -3]");
+		checkFormula("(3 + 4i) * 27 + 12i * (1 + i)", "-d", "69 + 120i");
+		checkFormula("v(1, 2, 3) * 3", "-d", "(3, 6, 9)");
+		checkFormula("1.2.3", "-d", "Failed to parse equation! Not a valid number: 1.2.3");
+	}
+
+	@Test
+	public void adaptiveMode()
+	{
+		checkFormula("1+2", "-a", "3");
+		checkFormula("0.1 + 0.2 - 0.3", "-a", "0");
+		checkFormula("2^256", "-a -f",
+				"115,792,089,237,316,195,423,570,985,008,687,907,853,269,984,665,640,564,039,457,584,007,913,129,639,936");
+		checkFormula("12345678901234567 + 1", "-a", "12345678901234568");
+	}
+
+	@Test
+	public void integers()
+	{
+		checkFormula("9223372036854775807 + 1", "9223372036854775808");
+		checkFormula("-9223372036854775807 - 2", "-9223372036854775809");
+		checkFormula("4294967296 * 4294967296", "-f", "18,446,744,073,709,551,616");
+		checkFormula("3^39", "4052555153018976267");
+		checkFormula("3^40", "12157665459056928801");
+		checkFormula("2^-1", "0.5");
+		checkFormula("7 / 2, 8 / 2, -7 % 3", "[3.5, 4, -1]");
+		checkFormula("floor(7), round(-3), ceil(12)", "[7, -3, 12]");
+		checkFormula("v(1, 2, 3) * v(4, 5, 6)", "32");
+		checkFormula("v(4294967296, 1) * v(4294967296, 1)", "18446744073709551617");
+	}
+
+	@Test
+	public void variables()
+	{
+		check("$x = set 4; calc '$x * 2 + 1'", "9");
+		check("$x = set 0.1; calc -d '$x * 3'", "0.3");
+		check("for $i, 1, 3 do { print (calc '$i ^ 2') }", "1", "4", "9");
+		check("calc '$missing + 1'", "Failed to parse equation! Unknown variable: $missing");
+		check("$x = set apple; calc '$x + 1'", "Failed to parse equation! Variable $x is not a number!");
+	}
+
+	@Test
+	public void shellsAreNotKeptAlive() throws InterruptedException
+	{
+		CommandSender sender = mock(CommandSender.class);
+		when(sender.getPermissions()).thenReturn(Permissions.ALL);
+
+		ShellEnvironment shell = new ShellEnvironment(sender);
+		shell.runCommand("$x = set 2; calc '$x + 1'");
+
+		WeakReference<ShellEnvironment> ref = new WeakReference<>(shell);
+		shell = null;
+
+		for (int i = 0; i < 50 && ref.get() != null; i++)
+		{
+			System.gc();
+			Thread.sleep(10);
+		}
+
+		assertNull(ref.get());
+	}
+
+	@Test
+	public void over()
+	{
+		check("$hp = append -n 10 20 30; $armor = append -n 1 2 3; calc -over hp -over armor '$hp * 2 - $armor'",
+				"19\n38\n57");
+		check("$x = append -n 1 2 4; calc -d -over x '1 / $x'", "1\n0.5\n0.25");
+		check("$x = append -n 16 2.25; calc -over x 'sqrt($x) * 2 - $x'", "-8\n0.75");
+		check("$x = append -n 1000 2000; calc -f -over x '$x ^ 2'", "1,000,000\n4,000,000");
+		check("$x = append -n 1 2; $y = set 3; calc -over x -over y '$x + $y'",
+				"Failed to parse equation! All columns must have the same length!");
+		check("$x = append -n 1 apple; calc -over x '$x'",
+				"Failed to parse equation! Variable $x is not a list of numbers!");
+		check("calc -over x '$x'", "Failed to parse equation! Unknown variable: $x");
+		check("$hp = append -n 10 20; $scale = set 3; calc -over hp '$hp * $scale'", "30\n60");
+		check("$hp = append -n 10 20; $scale = set 0.5; calc -d -over hp '$hp * $scale'", "5\n10");
+		check("$hp = append -n 10 20; calc -over hp '$hp * $scale'",
+				"Failed to parse equation! Unknown variable: $scale");
+		check("$hp = append -n 10 20; $scale = set apple; calc -over hp '$hp * $scale'",
+				"Failed to parse equation! Variable $scale is not a number!");
+	}
+
+	@Test
+	public void overNoRows()
+	{
+		CommandSender sender = mock(CommandSender.class);
+		when(sender.getPermissions()).thenReturn(Permissions.ALL);
+
+		ShellEnvironment shell = new ShellEnvironment(sender);
+		shell.getVariable("x").setValue("\n");
+		shell.runCommand("$y = calc -over x '$x * 2'; print $y");
+
+		verify(sender).println("");
+		verify(sender, never()).println(startsWith("Failed"));
+	}
+
+	@Test
+	public void formatting()
+	{
+		checkFormula("pi", "-p 5", "3.1416");
+		checkFormula("1 / 3", "-d -p 3", "0.333");
+		checkFormula("123456789", "-e", "1.23456789E+8");
+		checkFormula("123456789", "-e -p 3", "1.23E+8");
+		checkFormula("0.00012", "-d -e", "1.2E-4");
+		checkFormula("123456780", "-f -p 3", "123,000,000");
+		checkFormula("-123456", "-f", "-123,456");
+		checkFormula("v(1234, -5678), 1000i", "-f", "[(1,234, -5,678), 1,000i]");
+		checkFormula("2^100", "-d -f", "1.26765060022823E+30");
+		checkFormula("1 / 0", "-d -f", "Infinity");
+		checkFormula("-1 / 0", "-a -f", "-Infinity");
+		checkFormula("1 / 0", "-a -p 3", "Infinity");
+		checkFormula("pi", "-p 0", "Failed to parse equation! Not a valid precision: 0");
+
+		check("$x = append -n 1.25 2.5; calc -e -over x '$x * 1000'", "1.25E+3\n2.5E+3");
+	}
+
 	@Test
 	public void brokenFormulas()
 	{
@@ -1,9 +1,28 @@
 package commands;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
 import org.junit.Test;
+import ch.obermuhlner.math.big.BigFloat;
+import net.whg.awgenshell.lang.equation.Aggregate;
+import net.whg.awgenshell.lang.equation.CompiledEquation;
+import net.whg.awgenshell.lang.equation.EquationBindings;
+import net.whg.awgenshell.lang.equation.EquationContext;
+import net.whg.awgenshell.lang.equation.EquationMode;
+import net.whg.awgenshell.lang.equation.EquationParserException;
 import net.whg.awgenshell.lang.equation.EquationSolver;
+import net.whg.awgenshell.lang.equation.FormatOptions;
+import net.whg.awgenshell.lang.equation.FunctionMemo;
+import net.whg.awgenshell.lang.equation.Val;
 import net.whg.awgenshell.lang.equation.IEquationFunction;
 
 public class EquationSolverTest
@@ -31,4 +50,471 @@ public class EquationSolverTest
 
 		assertEquals(count + 1, solver.getFunctionCount());
 	}
+
+	@Test
+	public void compileOnce()
+	{
+		EquationSolver solver = new EquationSolver();
+		CompiledEquation equation = solver.compile("sqrt(16) + 0.1 * 3, 2^10");
+
+		assertEquals("[4.3, 1024]", equation.evaluate(EquationMode.EXACT).format(false));
+		assertEquals("[4.3, 1024]", equation.evaluate(EquationMode.DOUBLE).format(false));
+		assertEquals("[4.3, 1024]", equation.evaluate(EquationMode.ADAPTIVE).format(false));
+	}
+
+	@Test(expected = EquationParserException.class)
+	public void compileUnknownFunction()
+	{
+		new EquationSolver().compile("apple(1)");
+	}
+
+	@Test
+	public void smallNumbersShared()
+	{
+		assertSame(Val.valueOf(12), Val.valueOf(12));
+		assertSame(Val.ofDouble(3), Val.ofDouble(3));
+		assertSame(Val.ONE, Val.ONE.get(0));
+		assertEquals(Double.NEGATIVE_INFINITY, 1 / Val.ofDouble(-0.0).doubleValue(), 0);
+	}
+
+	@Test
+	public void buildLargeList()
+	{
+		Val.Builder builder = new Val.Builder();
+		StringBuilder formula = new StringBuilder();
+
+		for (int i = 0; i < 5000; i++)
+		{
+			builder.add(Val.valueOf(i));
+			formula.append(i == 0 ? "" : ",").append(i);
+		}
+
+		Val list = builder.build(Val.LIST);
+		assertEquals(5000, list.size);
+		assertEquals(list, new EquationSolver().parse(formula.toString()));
+		assertEquals("14", new EquationSolver().parse("v(1, 2, 3) * v(1, 2, 3)").format(false));
+		assertEquals("14", new EquationSolver().parse("v(1, 2, 3) * v(1, 2, 3)", EquationMode.DOUBLE).format(false));
+	}
+
+	@Test
+	public void parallelElements()
+	{
+		EquationSolver sequential = new EquationSolver();
+		EquationSolver parallel = new EquationSolver();
+		parallel.setParallelThreshold(2);
+
+		String[] formulas = {
+				"sqrt(1, 4, 9, 16), round(0.5, 1.5, -2.5)", "v(1, 2, 3) + v(4, 5, 6) - 1", "v(1, 2, 3) * (1 + 3i)",
+				"v(1, 2, 3) * v(4, 5, 6)", "sin(0.1, 0.2, 0.3)"
+		};
+
+		for (String formula : formulas)
+			for (EquationMode mode : EquationMode.values())
+				assertEquals(sequential.parse(formula, mode), parallel.parse(formula, mode));
+	}
+
+	@Test
+	public void parallelElementsFailure()
+	{
+		EquationSolver solver = new EquationSolver();
+		solver.setParallelThreshold(2);
+
+		try
+		{
+			solver.parse("sqrt(1, 2, 3, 4i)");
+			fail();
+		}
+		catch (EquationParserException e)
+		{
+			assertEquals("Only number types, vectors of numbers, or lists of number types are supported here!",
+					e.getMessage());
+		}
+	}
+
+	@Test
+	public void solveColumns()
+	{
+		EquationSolver solver = new EquationSolver();
+		CompiledEquation equation = solver.compile("floor($a * 2 + $b ^ 2) - -1, 3");
+
+		Map<String, double[]> doubles = new HashMap<>();
+		doubles.put("a", new double[] {
+				1, 2.5, -3
+		});
+		doubles.put("b", new double[] {
+				0, 1, 2
+		});
+
+		// Lists are not numbers, so each row fails the same way a single row would.
+		try
+		{
+			solver.solveColumns(equation, doubles);
+			fail();
+		}
+		catch (EquationParserException e)
+		{
+			assertEquals("Each row must result in a single number!", e.getMessage());
+		}
+
+		equation = solver.compile("floor($a * 2 + $b ^ 2) - -1");
+		assertArrayEquals(new double[] {
+				3, 7, -1
+		}, solver.solveColumns(equation, doubles), 0);
+
+		Map<String, BigFloat[]> exact = new HashMap<>();
+		exact.put("a", new BigFloat[] {
+				Val.valueOf(1).bigValue(), new Val("2.5").value, Val.valueOf(-3).bigValue()
+		});
+		exact.put("b", new BigFloat[] {
+				Val.valueOf(0).bigValue(), Val.valueOf(1).bigValue(), Val.valueOf(2).bigValue()
+		});
+
+		BigFloat[] answers = solver.solveExactColumns(equation, exact);
+		assertEquals(3, answers.length);
+		assertEquals("3", new Val(answers[0]).format(false));
+		assertEquals("7", new Val(answers[1]).format(false));
+		assertEquals("-1", new Val(answers[2]).format(false));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void solveColumnsOfDifferentLengths()
+	{
+		Map<String, double[]> columns = new HashMap<>();
+		columns.put("a", new double[2]);
+		columns.put("b", new double[3]);
+
+		EquationSolver solver = new EquationSolver();
+		solver.solveColumns(solver.compile("$a + $b"), columns);
+	}
+
+	@Test
+	public void precision()
+	{
+		EquationSolver solver = new EquationSolver();
+		solver.setPrecision(20);
+
+		assertEquals(20, solver.getPrecision());
+		assertEquals("0.33333333333333333333", solver.parse("1 / 3").format(false));
+		assertEquals("[3.1415926535897932385, 1.4142135623730950488]", solver.parse("pi, sqrt(2)").format(false));
+		assertEquals("[3, -2]", solver.parse("round(2.5, -2.5)").format(false));
+		assertEquals(3.14159265358979, solver.parse("pi", EquationMode.DOUBLE).doubleValue(), 1e-14);
+
+		CompiledEquation equation = solver.compile("1 / 3");
+		solver.setPrecision(30);
+		assertEquals("0.33333333333333333333", equation.evaluate(EquationMode.EXACT).format(false));
+		assertEquals(20, equation.getContext().getPrecision());
+	}
+
+	@Test
+	public void variablesReadAtSolverPrecision()
+	{
+		EquationSolver solver = new EquationSolver();
+		solver.setPrecision(20);
+
+		EquationBindings bindings = new EquationBindings()
+		{
+			@Override
+			public Val getValue(String name, boolean exact)
+			{
+				fail();
+				return null;
+			}
+
+			@Override
+			public Val getValue(String name, boolean exact, EquationContext context)
+			{
+				return Val.valueOf("0.1", context);
+			}
+		};
+
+		Val v = solver.compile("$x / 3").evaluate(bindings, EquationMode.EXACT);
+		assertEquals(20, v.value.getContext().getPrecision());
+	}
+
+	@Test
+	public void constantsAtFullPrecision()
+	{
+		assertSame(EquationContext.of(32), EquationContext.of(32));
+		assertEquals(EquationContext.DEFAULT_PRECISION, Val.PI.value.getContext().getPrecision());
+		assertEquals("3.14159265358979323846264338327950288419716939937510", Val.PI.format(false).substring(0, 52));
+		assertEquals("2.71828182845904523536028747135266249775724709369995", Val.E.format(false).substring(0, 52));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void precisionTooSmall()
+	{
+		new EquationSolver().setPrecision(0);
+	}
+
+	@Test
+	public void functionLookupIgnoresCase()
+	{
+		EquationSolver solver = new EquationSolver();
+
+		assertSame(solver.getFunction("sqrt"), solver.getFunction("SQRT"));
+		assertNull(solver.getFunction("apple"));
+	}
+
+	@Test
+	public void memoizePureFunctions()
+	{
+		EquationSolver solver = new EquationSolver();
+		FunctionMemo memo = solver.getMemo("sin");
+
+		assertEquals(solver.parse("sin(1)"), solver.parse("sin(1), sin(1), sin(2)").get(1));
+		assertEquals(2, memo.getSize());
+		assertEquals(2, memo.getHits());
+		assertEquals(2, memo.getMisses());
+		assertEquals(0.5, memo.getHitRate(), 0);
+
+		// Results are remembered separately for each precision.
+		solver.parse("sin(1)", EquationMode.DOUBLE);
+		solver.setPrecision(20);
+		assertEquals("0.84147098480789650665", solver.parse("sin(1)").format(false));
+		assertEquals(4, memo.getSize());
+
+		solver.setMemoSize(0);
+		solver.parse("sin(1)");
+		assertEquals(0, memo.getSize());
+
+		assertNull(solver.getMemo("floor"));
+		assertNull(solver.getMemo("v"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void memoSizeNegative()
+	{
+		new EquationSolver().setMemoSize(-1);
+	}
+
+	@Test
+	public void blockedMatrixMultiply()
+	{
+		// Large enough to span several blocks, with sizes which are not a multiple of
+		// the block size.
+		int n = 150;
+		int m = 70;
+		int p = 130;
+
+		Val[] a = new Val[n * m];
+		for (int i = 0; i < a.length; i++)
+			a[i] = Val.ofDouble(i % 17 - 8);
+
+		Val[] b = new Val[m * p];
+		for (int i = 0; i < b.length; i++)
+			b[i] = Val.ofDouble(i % 13 * 0.5);
+
+		Val c = Val.mul(Val.matrix(n, m, a), Val.matrix(m, p, b));
+
+		assertEquals(Val.MATRIX, c.type);
+		assertEquals(n, c.size);
+		assertEquals(p, c.getColumns());
+		assertFalse(c.isExact());
+
+		for (int i = 0; i < n; i++)
+			for (int j = 0; j < p; j++)
+			{
+				double s = 0;
+				for (int k = 0; k < m; k++)
+					s += a[i * m + k].doubleValue() * b[k * p + j].doubleValue();
+
+				assertEquals(s, c.get(i, j).doubleValue(), 0);
+			}
+	}
+
+	@Test
+	public void exactMatrixInverse()
+	{
+		Val x = Val.matrix(3, 3, Val.valueOf(1), Val.valueOf(2), Val.valueOf(3), Val.valueOf(0), Val.valueOf(1),
+				Val.valueOf(4), Val.valueOf(5), Val.valueOf(6), Val.valueOf(0));
+		Val inverse = Val.matrix(3, 3, Val.valueOf(-24), Val.valueOf(18), Val.valueOf(5), Val.valueOf(20),
+				Val.valueOf(-15), Val.valueOf(-4), Val.valueOf(-5), Val.valueOf(4), Val.valueOf(1));
+
+		assertEquals(Val.ONE, Val.determinant(x));
+		assertTrue(Val.determinant(x).isIntegral());
+		assertEquals(inverse, Val.inverse(x));
+		assertTrue(Val.inverse(x).get(1, 1).isIntegral());
+		assertEquals(x, Val.transpose(Val.transpose(x)));
+	}
+
+	@Test(expected = EquationParserException.class)
+	public void matrixCellsMismatch()
+	{
+		Val.matrix(2, 2, Val.ONE, Val.ZERO, Val.ONE);
+	}
+
+	@Test
+	public void aggregateStreamsVariables()
+	{
+		EquationBindings bindings = new EquationBindings()
+		{
+			@Override
+			public Val getValue(String name, boolean exact)
+			{
+				fail();
+				return null;
+			}
+
+			@Override
+			public boolean aggregate(String name, boolean exact, Aggregate aggregate)
+			{
+				for (int i = 1; i <= 100000; i++)
+					aggregate.add(Val.valueOf(i));
+
+				return true;
+			}
+		};
+
+		CompiledEquation equation = new EquationSolver().compile("sum($x), mean($x)");
+		assertEquals("[5000050000, 50000.5]", equation.evaluate(bindings, EquationMode.EXACT).format(false));
+	}
+
+	@Test
+	public void compensatedSum()
+	{
+		Aggregate aggregate = new Aggregate();
+		aggregate.add(Val.ONE);
+		for (int i = 0; i < 10000; i++)
+			aggregate.add(1e-16);
+
+		assertEquals(1 + 1e-12, aggregate.getSum().doubleValue(), 0);
+		assertFalse(aggregate.getSum().isExact());
+		assertEquals(10001, aggregate.getCount());
+	}
+
+	@Test(expected = EquationParserException.class)
+	public void aggregateEmpty()
+	{
+		new Aggregate().getMean();
+	}
+
+	@Test
+	public void generateHotFormulas()
+	{
+		EquationSolver solver = new EquationSolver();
+		solver.setCompileThreshold(10);
+
+		EquationSolver interpreter = new EquationSolver();
+		interpreter.setCompileThreshold(0);
+
+		String source = "sin($x) * 2 + sqrt(16) - $y ^ 2 % 7 + round($x) - -$y / 3 + floor(pi * $x) * ceil(cos(1))";
+		CompiledEquation equation = solver.compile(source);
+		CompiledEquation expected = interpreter.compile(source);
+
+		Map<String, Val> values = new HashMap<>();
+		EquationBindings bindings = (name, exact) -> values.get(name);
+
+		for (int i = 0; i < 100; i++)
+		{
+			values.put("x", Val.ofDouble(i * 0.37 - 10));
+			values.put("y", Val.ofDouble(i % 7 - 2.5));
+
+			assertEquals(i >= 10, equation.isGenerated());
+			assertEquals(expected.evaluate(bindings, EquationMode.DOUBLE).doubleValue(),
+					equation.evaluate(bindings, EquationMode.DOUBLE).doubleValue(), 0);
+		}
+
+		assertFalse(expected.isGenerated());
+
+		// Variables which are not numbers are left to the interpreter.
+		values.put("y", Val.EMPTY_LIST);
+		try
+		{
+			equation.evaluate(bindings, EquationMode.DOUBLE);
+			fail();
+		}
+		catch (EquationParserException e)
+		{
+			assertEquals("Cannot power the two given value types!", e.getMessage());
+		}
+	}
+
+	@Test
+	public void generateOnlyDoubleFormulas()
+	{
+		EquationSolver solver = new EquationSolver();
+		solver.setCompileThreshold(1);
+
+		CompiledEquation vector = solver.compile("v($x, 1) * 2");
+		CompiledEquation constant = solver.compile("sqrt(2) * 3");
+		EquationBindings bindings = (name, exact) -> Val.ofDouble(3);
+
+		for (int i = 0; i < 3; i++)
+		{
+			assertEquals("(6, 2)", vector.evaluate(bindings, EquationMode.DOUBLE).format(false));
+			assertEquals("4.24264068711929", constant.evaluate(bindings, EquationMode.DOUBLE).format(false));
+		}
+
+		assertFalse(vector.isGenerated());
+		assertFalse(constant.isGenerated());
+	}
+
+	@Test
+	public void equalValuesHashEqually()
+	{
+		EquationSolver solver = new EquationSolver();
+
+		Val integral = solver.parse("1", EquationMode.EXACT);
+		Val exact = solver.parse("0.5 + 0.5", EquationMode.EXACT);
+		Val real = solver.parse("0.5 + 0.5", EquationMode.DOUBLE);
+
+		assertEquals(integral, exact);
+		assertEquals(integral.hashCode(), exact.hashCode());
+		assertEquals(integral, real);
+		assertEquals(integral.hashCode(), real.hashCode());
+		assertEquals(Val.ofDouble(0).hashCode(), Val.ofDouble(-0.0).hashCode());
+
+		Val complex = solver.parse("1 + 0i", EquationMode.EXACT);
+		assertEquals(integral, complex);
+		assertEquals(integral.hashCode(), complex.hashCode());
+		assertFalse(solver.parse("1 + 2i").equals(solver.parse("1 + 3i")));
+
+		Val matrix = solver.parse("m(v(1, 2), v(3, 4))", EquationMode.EXACT);
+		Val doubleMatrix = solver.parse("m(v(1, 2), v(3, 4))", EquationMode.DOUBLE);
+		assertEquals(matrix, doubleMatrix);
+		assertEquals(matrix.hashCode(), doubleMatrix.hashCode());
+	}
+
+	@Test
+	public void formatLargeList() throws IOException
+	{
+		Val.Builder builder = new Val.Builder(50000);
+		for (int i = 0; i < 50000; i++)
+			builder.add(Val.valueOf(i * 1000L - 25000000L));
+
+		StringBuilder sb = new StringBuilder();
+		builder.build(Val.LIST).formatTo(sb, FormatOptions.COMMAS);
+
+		assertTrue(sb.toString().startsWith("[-25,000,000, -24,999,000, -24,998,000, "));
+		assertTrue(sb.toString().endsWith(", 24,998,000, 24,999,000]"));
+	}
+
+	@Test
+	public void formatOptions()
+	{
+		FormatOptions options = FormatOptions.DEFAULT.withPrecision(4).withScientific(true);
+
+		assertEquals("3.142E+0", Val.PI.format(options));
+		assertEquals("-1.235E-7", Val.ofDouble(-0.00000012345678).format(options));
+		assertEquals("1.5E+3", Val.valueOf(1500).format(FormatOptions.DEFAULT.withScientific(true)));
+		assertEquals("1,234,568", Val.valueOf("1234567.89").format(FormatOptions.COMMAS.withPrecision(7)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void formatPrecisionNegative()
+	{
+		FormatOptions.DEFAULT.withPrecision(-1);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void compileThresholdNegative()
+	{
+		new EquationSolver().setCompileThreshold(-1);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void parallelThresholdTooSmall()
+	{
+		new EquationSolver().setParallelThreshold(0);
+	}
 }
@@ -0,0 +1,37 @@
+package commands;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static util.Checks.check;
+import org.junit.Test;
+import net.whg.awgenshell.exec.CommandSender;
+import net.whg.awgenshell.exec.ShellEnvironment;
+import net.whg.awgenshell.perms.Permissions;
+
+public class ExecTest
+{
+	@Test
+	public void execString()
+	{
+		check("exec 'print hello'", "hello");
+		check("$cmd = set 'print $i'; for $i, 1, 3 do { exec $cmd }", "1", "2", "3");
+	}
+
+	@Test
+	public void repeatedLines_cached()
+	{
+		CommandSender sender = mock(CommandSender.class);
+		when(sender.getPermissions()).thenReturn(Permissions.ALL);
+
+		ShellEnvironment shell = new ShellEnvironment(sender);
+
+		shell.runCommand("for $i, 1, 10 do { exec 'print hi' }");
+
+		verify(sender, times(10)).println("hi");
+		assertEquals(2, shell.getInputCache().getSize());
+		assertEquals(9, shell.getInputCache().getHits());
+	}
+}
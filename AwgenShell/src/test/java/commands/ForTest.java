@@ -13,4 +13,10 @@ public class ForTest
 		check("for $i, 1, 3, 1 do { for $j, 1, 3, 1 do { print $i $j } }", "1 1", "1 2", "1 3", "2 1", "2 2", "2 3",
 				"3 1", "3 2", "3 3");
 	}
+
+	@Test(timeout = 20000)
+	public void changingBounds()
+	{
+		check("for $j, 1, 3 do { for $i, 1, $j do { print $i } }", "1", "1", "2", "1", "2", "3");
+	}
 }
@@ -0,0 +1,158 @@
+package commands;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static util.Checks.check;
+import java.lang.management.ManagementFactory;
+import javax.management.ObjectName;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import net.whg.awgenshell.exec.CommandMetrics;
+import net.whg.awgenshell.exec.CommandSender;
+import net.whg.awgenshell.exec.CommandStats;
+import net.whg.awgenshell.exec.Module;
+import net.whg.awgenshell.exec.ShellEnvironment;
+import net.whg.awgenshell.perms.Permissions;
+import net.whg.awgenshell.util.LatencyHistogram;
+
+public class StatsTest
+{
+	private CommandMetrics metrics = CommandMetrics.getInstance();
+
+	@Before
+	public void enable()
+	{
+		metrics.reset();
+		metrics.setEnabled(true);
+	}
+
+	@After
+	public void disable()
+	{
+		metrics.setEnabled(false);
+		metrics.reset();
+	}
+
+	@Test
+	public void countInvocations()
+	{
+		CommandSender sender = mock(CommandSender.class);
+		when(sender.getPermissions()).thenReturn(Permissions.ALL);
+
+		ShellEnvironment shell = new ShellEnvironment(sender);
+		shell.runCommand("for $i, 1, 5 do { print (calc '$i * 2') }");
+		shell.runCommand("calc '1 +'");
+
+		CommandStats calc = metrics.getCommandStats("lang", "calc");
+		assertEquals(6, calc.getInvocations());
+		assertEquals(1, calc.getErrors());
+		assertEquals(5, metrics.getCommandStats("lang", "print").getInvocations());
+		assertEquals(1, metrics.getCommandStats("lang", "for").getInvocations());
+		assertEquals(2, metrics.getModuleStats("lang").getInvocations());
+		assertTrue(calc.getMaxTime() >= calc.getP50Time());
+	}
+
+	@Test
+	public void aliasesShareMetrics()
+	{
+		check("echo hi; say hi; print hi", "hi", "hi", "hi");
+		assertEquals(3, metrics.getCommandStats("lang", "print").getInvocations());
+	}
+
+	@Test
+	public void moduleCountsTopLevelOnly()
+	{
+		check("for $i, 1, 3 do { $x = set $i }");
+
+		CommandStats forStats = metrics.getCommandStats("lang", "for");
+		CommandStats module = metrics.getModuleStats("lang");
+
+		assertEquals(3, metrics.getCommandStats("lang", "set").getInvocations());
+		assertEquals(1, module.getInvocations());
+		assertEquals(forStats.getTotalTime(), module.getTotalTime());
+	}
+
+	@Test
+	public void defaultModuleName()
+	{
+		assertEquals("default", new Module().getName());
+	}
+
+	@Test
+	public void disabledRecordsNothing()
+	{
+		metrics.setEnabled(false);
+		check("print hi", "hi");
+
+		assertEquals(0, metrics.getCommandStats("lang", "print").getInvocations());
+	}
+
+	@Test
+	public void statsCommand()
+	{
+		CommandSender sender = mock(CommandSender.class);
+		when(sender.getPermissions()).thenReturn(Permissions.ALL);
+
+		ShellEnvironment shell = new ShellEnvironment(sender);
+		shell.runCommand("stats off");
+		shell.runCommand("stats reset");
+		assertFalse(metrics.isEnabled());
+
+		shell.runCommand("stats");
+		verify(sender).println("Command metrics are off. Use 'stats on' to record them.");
+
+		shell.runCommand("stats on");
+		assertTrue(metrics.isEnabled());
+
+		shell.runCommand("stats");
+		verify(sender).println("No commands have been recorded yet.");
+
+		shell.runCommand("stats reset");
+		shell.runCommand("$x = set 1");
+		shell.runCommand("stats -m");
+		verify(sender).println(startsWith("lang: 2 calls, 0 errors, "));
+	}
+
+	@Test
+	public void registeredWithJmx() throws Exception
+	{
+		check("$x = set 1");
+
+		ObjectName name = new ObjectName("net.whg.awgenshell:type=Commands,module=\"lang\",name=\"set\"");
+		assertEquals(1L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Invocations"));
+	}
+
+	@Test
+	public void histogramPercentiles()
+	{
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 1; i <= 1000; i++)
+			histogram.record(i * 1000L);
+
+		assertEquals(1000, histogram.getCount());
+		assertEquals(1000000, histogram.getMax());
+		assertEquals(500500, histogram.getMean(), 0);
+		assertEquals(500000, histogram.getPercentile(50), 500000 * 0.07);
+		assertEquals(990000, histogram.getPercentile(99), 990000 * 0.07);
+		assertEquals(1000000, histogram.getPercentile(100));
+
+		histogram.record(7);
+		assertEquals(7, histogram.getPercentile(0));
+
+		histogram.reset();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getPercentile(50));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void histogramPercentileOutOfRange()
+	{
+		new LatencyHistogram().getPercentile(101);
+	}
+}
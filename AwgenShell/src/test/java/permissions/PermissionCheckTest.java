@@ -0,0 +1,36 @@
+package permissions;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import net.whg.awgenshell.perms.PermissionCheck;
+import net.whg.awgenshell.perms.PermissionNode;
+import net.whg.awgenshell.perms.Permissions;
+
+public class PermissionCheckTest
+{
+	@Test
+	public void revokedPermission_fail()
+	{
+		Permissions parent = new Permissions();
+		parent.addPermissionNode(new PermissionNode("lang.*"));
+		Permissions perms = new Permissions(parent);
+
+		PermissionCheck check = new PermissionCheck(new PermissionNode("lang.set"));
+		assertTrue(check.test(perms));
+		assertTrue(check.test(perms));
+
+		parent.removePermissionNode(new PermissionNode("lang.*"));
+		assertFalse(check.test(perms));
+	}
+
+	@Test
+	public void differentSenders()
+	{
+		PermissionCheck check = new PermissionCheck(new PermissionNode("lang.set"));
+
+		assertTrue(check.test(Permissions.LANG));
+		assertFalse(check.test(new Permissions()));
+		assertTrue(check.test(Permissions.ALL));
+	}
+}
@@ -1,6 +1,8 @@
 package permissions;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
 import org.junit.Test;
 import net.whg.awgenshell.perms.PermissionNode;
 import net.whg.awgenshell.perms.PermissionType;
@@ -87,4 +89,32 @@ public class PermissionNodeTest
 
 		assertEquals(PermissionType.NEUTRAL, node1.matches(node2));
 	}
+
+	@Test
+	public void pooledNodes_same()
+	{
+		PermissionNode node1 = PermissionNode.of("region." + 12 + ".build");
+		PermissionNode node2 = PermissionNode.of("region." + 12 + ".build");
+
+		assertSame(node1, node2);
+		assertEquals(PermissionType.WHITELIST, node1.matches(new PermissionNode("region.12.build")));
+	}
+
+	@Test
+	public void invalidNodes_fail()
+	{
+		String[] invalid = {"", "!", "a.", ".a", "a..b", "a!b", "a.*b", "**", "a b", "!!a"};
+
+		for (String node : invalid)
+		{
+			try
+			{
+				PermissionNode.of(node);
+				fail("Expected invalid node: '" + node + "'");
+			}
+			catch (IllegalArgumentException e)
+			{
+			}
+		}
+	}
 }
@@ -0,0 +1,192 @@
+package permissions;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import net.whg.awgenshell.perms.PermissionNode;
+import net.whg.awgenshell.perms.PermissionStore;
+import net.whg.awgenshell.perms.Permissions;
+
+public class PermissionStoreTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path write(Path file, String... lines) throws IOException
+	{
+		return Files.write(file, String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void loadFile() throws IOException
+	{
+		Path file = write(folder.newFile().toPath(), "# Comment", "group default", "lang.*", "!lang.exec", "",
+				"group admin : default", "  lang.exec", "", "user bob : admin", "region.12.build");
+
+		try (PermissionStore store = new PermissionStore(file))
+		{
+			Permissions bob = store.getUser("bob");
+
+			assertTrue(bob.hasPermission(PermissionNode.of("region.12.build")));
+			assertTrue(bob.hasPermission(PermissionNode.of("lang.set")));
+			assertFalse(store.getGroup("default").hasPermission(PermissionNode.of("lang.exec")));
+			assertNull(store.getUser("alice"));
+		}
+	}
+
+	@Test
+	public void reload_appliesChanges() throws IOException
+	{
+		Path file = write(folder.newFile().toPath(), "group default", "lang.*", "group other", "a.b", "user bob",
+				"region.12.build", "user alice : default");
+
+		try (PermissionStore store = new PermissionStore(file))
+		{
+			Permissions bob = store.getUser("bob");
+			Permissions other = store.getGroup("other");
+			int otherVersion = other.getVersion();
+
+			write(file, "group default", "lang.*", "group other", "a.b", "user bob : default", "region.13.build");
+			store.reload();
+
+			assertSame(bob, store.getUser("bob"));
+			assertEquals(otherVersion, other.getVersion());
+			assertTrue(bob.hasPermission(PermissionNode.of("region.13.build")));
+			assertFalse(bob.hasPermission(PermissionNode.of("region.12.build")));
+			assertTrue(bob.hasPermission(PermissionNode.of("lang.set")));
+			assertNull(store.getUser("alice"));
+		}
+	}
+
+	@Test
+	public void reload_removedSectionKeepsInstance() throws IOException
+	{
+		Path file = write(folder.newFile().toPath(), "group default", "lang.*", "user bob : default", "a.b");
+
+		try (PermissionStore store = new PermissionStore(file))
+		{
+			Permissions bob = store.getUser("bob");
+			Permissions group = store.getGroup("default");
+
+			write(file, "group default", "lang.*");
+			store.reload();
+
+			assertNull(store.getUser("bob"));
+			assertFalse(bob.hasPermission(PermissionNode.of("a.b")));
+			assertFalse(bob.hasPermission(PermissionNode.of("lang.set")));
+
+			write(file, "");
+			store.reload();
+
+			assertFalse(group.hasPermission(PermissionNode.of("lang.set")));
+			assertTrue(store.getGroupNames().isEmpty());
+
+			write(file, "group default", "lang.*", "user bob : default", "a.b");
+			store.reload();
+
+			assertSame(bob, store.getUser("bob"));
+			assertSame(group, store.getGroup("default"));
+			assertTrue(bob.hasPermission(PermissionNode.of("a.b")));
+			assertTrue(bob.hasPermission(PermissionNode.of("lang.set")));
+		}
+	}
+
+	@Test
+	public void watch_reloadsChangedFile() throws Exception
+	{
+		Path file = write(folder.newFile().toPath(), "group default", "a");
+
+		try (PermissionStore store = new PermissionStore(file))
+		{
+			Permissions group = store.getGroup("default");
+			store.watch();
+
+			write(file, "group default", "a", "b");
+
+			long deadline = System.currentTimeMillis() + 10000;
+			while (!group.hasPermission(PermissionNode.of("b")) && System.currentTimeMillis() < deadline)
+				Thread.sleep(20);
+
+			assertTrue(group.hasPermission(PermissionNode.of("b")));
+			assertSame(group, store.getGroup("default"));
+		}
+	}
+
+	@Test
+	public void circularInheritance_ignored() throws IOException
+	{
+		Path file = write(folder.newFile().toPath(), "group a : b", "x", "group b : a", "y");
+
+		try (PermissionStore store = new PermissionStore(file))
+		{
+			assertTrue(store.getGroup("a").hasPermission(PermissionNode.of("y")));
+			assertFalse(store.getGroup("b").hasPermission(PermissionNode.of("x")));
+		}
+	}
+
+	@Test
+	public void reload_swapsInheritance() throws IOException
+	{
+		Path file = write(folder.newFile().toPath(), "group a : b", "x", "group b", "y");
+
+		try (PermissionStore store = new PermissionStore(file))
+		{
+			write(file, "group a", "x", "group b : a", "y");
+			store.reload();
+
+			assertTrue(store.getGroup("b").hasPermission(PermissionNode.of("x")));
+			assertFalse(store.getGroup("a").hasPermission(PermissionNode.of("y")));
+		}
+	}
+
+	@Test
+	public void reload_neverGrantsDeniedNode() throws Exception
+	{
+		Path file = folder.newFile().toPath();
+		String[] inherited = {"group deny", "!lang.exec", "user bob : deny", "lang.*"};
+		String[] local = {"group deny", "!lang.exec", "user bob", "lang.*", "!lang.exec"};
+		write(file, inherited);
+
+		try (PermissionStore store = new PermissionStore(file))
+		{
+			Permissions bob = store.getUser("bob");
+			PermissionNode exec = PermissionNode.of("lang.exec");
+			AtomicBoolean done = new AtomicBoolean();
+			AtomicBoolean granted = new AtomicBoolean();
+
+			Thread checker = new Thread(() ->
+			{
+				while (!done.get())
+					if (bob.hasPermission(exec))
+						granted.set(true);
+			});
+			checker.start();
+
+			try
+			{
+				for (int i = 0; i < 2000 && !granted.get(); i++)
+				{
+					write(file, i % 2 == 0 ? local : inherited);
+					store.reload();
+				}
+			}
+			finally
+			{
+				done.set(true);
+				checker.join();
+			}
+
+			assertFalse(granted.get());
+		}
+	}
+}
@@ -1,5 +1,6 @@
 package permissions;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import org.junit.Test;
@@ -68,4 +69,108 @@ public class PermissionsGroupTest
 
 		assertFalse(perms.hasPermission(new PermissionNode("red.green.blue")));
 	}
+
+	@Test
+	public void inheiratedBlacklist_false()
+	{
+		Permissions parent = new Permissions();
+		parent.addPermissionNode(new PermissionNode("!red.green"));
+
+		Permissions perms = new Permissions(parent);
+		perms.addPermissionNode(new PermissionNode("red.*"));
+
+		assertTrue(perms.hasPermission(new PermissionNode("red.blue")));
+		assertFalse(perms.hasPermission(new PermissionNode("red.green")));
+	}
+
+	@Test
+	public void middleWildcard_pass()
+	{
+		Permissions perms = new Permissions();
+		perms.addPermissionNode(new PermissionNode("a.*.c"));
+
+		assertTrue(perms.hasPermission(new PermissionNode("a.b.c")));
+		assertFalse(perms.hasPermission(new PermissionNode("a.b")));
+		assertFalse(perms.hasPermission(new PermissionNode("a.b.c.d")));
+	}
+
+	@Test
+	public void modifiedAfterCheck_updatesResult()
+	{
+		Permissions parent = new Permissions();
+		Permissions perms = new Permissions(parent);
+		PermissionNode node = new PermissionNode("a.b");
+
+		assertFalse(perms.hasPermission(node));
+
+		parent.addPermissionNode(new PermissionNode("a.*"));
+		assertTrue(perms.hasPermission(node));
+
+		perms.addPermissionNode(new PermissionNode("!a.b"));
+		assertFalse(perms.hasPermission(node));
+
+		perms.removePermissionNode(new PermissionNode("!a.b"));
+		assertTrue(perms.hasPermission(node));
+	}
+
+	@Test
+	public void deepInheritance_pass()
+	{
+		Permissions root = new Permissions();
+		Permissions middle = new Permissions(root);
+		Permissions perms = new Permissions(middle);
+
+		root.addPermissionNode(new PermissionNode("a.*"));
+		assertTrue(perms.hasPermission(new PermissionNode("a.b")));
+
+		middle.addPermissionNode(new PermissionNode("!a.b"));
+		assertFalse(perms.hasPermission(new PermissionNode("a.b")));
+
+		perms.removeInheritance(middle);
+		assertFalse(perms.hasPermission(new PermissionNode("a.c")));
+	}
+
+	@Test
+	public void effectivePermissions_deduplicated()
+	{
+		Permissions root = new Permissions();
+		root.addPermissionNode(new PermissionNode("a.b"));
+
+		Permissions left = new Permissions(root);
+		left.addPermissionNode(new PermissionNode("a.b"));
+		Permissions right = new Permissions(root);
+
+		Permissions perms = new Permissions(left, right);
+		perms.addPermissionNode(new PermissionNode("c"));
+
+		assertEquals(2, perms.getEffectivePermissions().size());
+	}
+
+	@Test
+	public void sharedParent_blacklistedByOneChild()
+	{
+		Permissions root = new Permissions();
+		root.addPermissionNode(new PermissionNode("a.*"));
+
+		Permissions left = new Permissions(root);
+		Permissions right = new Permissions(root);
+		left.addPermissionNode(new PermissionNode("!a.b"));
+
+		assertFalse(left.hasPermission(new PermissionNode("a.b")));
+		assertTrue(right.hasPermission(new PermissionNode("a.b")));
+
+		root.removePermissionNode(new PermissionNode("a.*"));
+		assertFalse(right.hasPermission(new PermissionNode("a.b")));
+		assertEquals(1, left.getEffectivePermissions().size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void circularInheritance_fail()
+	{
+		Permissions a = new Permissions();
+		Permissions b = new Permissions(a);
+		Permissions c = new Permissions(b);
+
+		a.addInheritance(c);
+	}
 }
@@ -1,7 +1,11 @@
 package templates;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import java.util.ArrayList;
@@ -12,10 +16,14 @@ import net.whg.awgenshell.arg.StringArgument;
 import net.whg.awgenshell.arg.Variable;
 import net.whg.awgenshell.arg.VariableArgument;
 import net.whg.awgenshell.util.template.CommandTemplate;
+import net.whg.awgenshell.util.template.CommandTemplateArg;
+import net.whg.awgenshell.util.template.CommandFlagTemplate;
 import net.whg.awgenshell.util.template.CommandTemplateBuilder;
+import net.whg.awgenshell.util.template.FlagTable;
 import net.whg.awgenshell.util.template.InputArgument;
 import net.whg.awgenshell.util.template.SubCommand;
 import net.whg.awgenshell.util.template.SubCommandExecutor;
+import net.whg.awgenshell.util.template.WildcardPattern;
 
 public class CommandTemplateTest
 {
@@ -71,6 +79,43 @@ public class CommandTemplateTest
 		assertNull(getSubCommand(template, "*"));
 	}
 
+	@Test
+	public void matchesFloat()
+	{
+		SubCommandExecutor exe = mock(SubCommandExecutor.class);
+		CommandTemplate template = new CommandTemplateBuilder().subcommand("%#f %n", exe).finishSubCommand().build();
+
+		assertNotNull(getSubCommand(template, "2.5"));
+		assertNotNull(getSubCommand(template, "-1e3"));
+		assertNotNull(getSubCommand(template, ".5"));
+		assertNotNull(getSubCommand(template, "7"));
+		assertNotNull(getSubCommand(template, "NaN"));
+
+		assertNull(getSubCommand(template, "abc"));
+		assertNull(getSubCommand(template, "1..2"));
+		assertNull(getSubCommand(template, "."));
+		assertNull(getSubCommand(template, "1e"));
+	}
+
+	@Test
+	public void typedValues()
+	{
+		InputArgument a = new InputArgument(new StringArgument("42"));
+		InputArgument b = new InputArgument(new StringArgument("-2.5"));
+		InputArgument c = new InputArgument(new StringArgument("3000000000"));
+
+		assertTrue(a.isInteger());
+		assertEquals(42, a.getInt());
+		assertEquals(42.0, a.getDouble(), 0);
+
+		assertFalse(b.isInteger());
+		assertTrue(b.isNumber());
+		assertEquals(-2.5, b.getDouble(), 0);
+
+		assertFalse(c.isInteger());
+		assertEquals(3000000000.0, c.getDouble(), 0);
+	}
+
 	@Test
 	public void matchesAnyNumberOfArgs()
 	{
@@ -83,4 +128,91 @@ public class CommandTemplateTest
 		assertNotNull(getSubCommand(template, "-1.654", "", "3"));
 		assertNotNull(getSubCommand(template, "$red", "2", "$blue", "{}", "{}"));
 	}
+
+	@Test
+	public void matchesByArgumentCount()
+	{
+		SubCommandExecutor exe1 = mock(SubCommandExecutor.class);
+		SubCommandExecutor exe2 = mock(SubCommandExecutor.class);
+		SubCommandExecutor exe3 = mock(SubCommandExecutor.class);
+		CommandTemplate template = new CommandTemplateBuilder().subcommand("%* %n", exe1).finishSubCommand()
+				.subcommand("%* %* %n", exe2).finishSubCommand().subcommand("%* %* %* %**", exe3).finishSubCommand()
+				.build();
+
+		assertSame(exe1, getSubCommand(template, "a").getExecutor());
+		assertSame(exe2, getSubCommand(template, "a", "b").getExecutor());
+		assertSame(exe3, getSubCommand(template, "a", "b", "c").getExecutor());
+		assertSame(exe3, getSubCommand(template, "a", "b", "c", "d", "e").getExecutor());
+		assertNull(getSubCommand(template));
+	}
+
+	@Test
+	public void prunesFlags()
+	{
+		SubCommandExecutor exe = mock(SubCommandExecutor.class);
+		CommandTemplate template =
+				new CommandTemplateBuilder().subcommand("%- %**", exe).flag("-s", 1).finishSubCommand().build();
+
+		List<InputArgument> args = new ArrayList<>();
+		args.add(new InputArgument(new StringArgument("-s")));
+		args.add(new InputArgument(new StringArgument(",")));
+		args.add(new InputArgument(new StringArgument("a")));
+
+		assertNotNull(template.getSubcommand(args));
+		assertEquals(1, args.size());
+		assertEquals("a", args.get(0).getLast());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void duplicatePattern_fail()
+	{
+		SubCommandExecutor exe = mock(SubCommandExecutor.class);
+		new CommandTemplateBuilder().subcommand("%# %n", exe).finishSubCommand().subcommand("%# %n", exe)
+				.finishSubCommand().build();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void unreachablePattern_fail()
+	{
+		SubCommandExecutor exe = mock(SubCommandExecutor.class);
+		new CommandTemplateBuilder().subcommand("%**", exe).finishSubCommand().subcommand("hello", exe)
+				.finishSubCommand().build();
+	}
+
+	@Test
+	public void optionalWildcardMinArguments()
+	{
+		SubCommandExecutor exe = mock(SubCommandExecutor.class);
+		SubCommand sub = new SubCommand(new CommandTemplateArg[] {
+			new WildcardPattern(false, true), new WildcardPattern(false, false)
+		}, exe, null, new CommandFlagTemplate[0]);
+
+		assertEquals(1, sub.getMinArguments());
+		assertEquals(0, new WildcardPattern(false, true).getMinArguments());
+		assertEquals(0, new WildcardPattern(true, true).getMinArguments());
+		assertEquals(1, new WildcardPattern(true, false).getMinArguments());
+	}
+
+	@Test
+	public void flagTable()
+	{
+		FlagTable table = new FlagTable(new CommandFlagTemplate[] {
+			new CommandFlagTemplate("-a", 0), new CommandFlagTemplate("-b", 1), new CommandFlagTemplate("-Aa", 0),
+			new CommandFlagTemplate("-BB", 2)
+		});
+
+		assertEquals(0, table.getOrdinal("-a"));
+		assertEquals(1, table.getOrdinal("-b"));
+		assertEquals(2, table.getOrdinal("-Aa"));
+		assertEquals(3, table.getOrdinal("-BB"));
+		assertEquals(-1, table.getOrdinal("-c"));
+		assertEquals(2, table.get("-BB").getNumberOfValues());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void duplicateFlag_fail()
+	{
+		SubCommandExecutor exe = mock(SubCommandExecutor.class);
+		new CommandTemplateBuilder().subcommand("%- %n", exe).flag("-a", 0).flag("-a", 1).finishSubCommand().build();
+	}
 }